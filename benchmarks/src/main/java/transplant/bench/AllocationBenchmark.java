@@ -0,0 +1,77 @@
+package transplant.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import transplant.Matching;
+import transplant.PriorityScorer;
+import transplant.TransplantGraph;
+import transplant.WeightedMatcher;
+
+/**
+ * This class benchmarks the two weighted allocation solvers on the same square
+ * graphs, about 30% dense with the generated population, to find where the
+ * Hungarian algorithm stops beating the auction. WeightedMatcher.allocate picks
+ * the Hungarian algorithm only below that crossover.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AllocationBenchmark {
+    @Param({"100", "250", "500", "1000", "2000"})
+    public int size;
+
+    private TransplantGraph graph;
+    private WeightedMatcher matcher;
+
+    /**
+     * It builds the graph and the matcher's view of it.
+     */
+    @Setup
+    public void setUp() {
+        graph = Population.graph(size, size, 1);
+        matcher = new WeightedMatcher(graph, new PriorityScorer());
+    }
+
+    /**
+     * It measures the Hungarian algorithm.
+     *
+     * @return the allocation
+     */
+    @Benchmark
+    public Matching hungarian() {
+        return matcher.hungarian();
+    }
+
+    /**
+     * It measures the auction bidding on one thread.
+     *
+     * @return the allocation
+     */
+    @Benchmark
+    public Matching auctionSequential() {
+        return matcher.auction(1);
+    }
+
+    /**
+     * It measures the auction bidding on every processor.
+     *
+     * @return the allocation
+     */
+    @Benchmark
+    public Matching auctionParallel() {
+        return matcher.auction(Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,88 @@
+package transplant.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import transplant.Patient;
+import transplant.TransplantGraph;
+
+/**
+ * This class benchmarks building a whole graph from the same population in three
+ * ways: adding each donor and recipient in turn, so every add connects its patient
+ * to the compatible classes, and one bulk add whose matrix is rebuilt on one thread
+ * or on every processor. Each invocation builds a fresh graph, so it runs as a
+ * single shot. At 100000 patients per side the matrix, kept both row-wise and
+ * column-wise, takes 2.5 GB, hence the larger heap.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class BuildBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private List<Patient> donors;
+    private List<Patient> recipients;
+
+    /**
+     * It generates the population. Adding a standalone patient only sets its ID,
+     * which every build assigns identically, so the same patients serve each one.
+     */
+    @Setup
+    public void setUp() {
+        donors = Population.donors(size, 1);
+        recipients = Population.recipients(size, 2);
+    }
+
+    /**
+     * It measures building the graph with repeated addDonor and addRecipient calls.
+     *
+     * @return the graph
+     */
+    @Benchmark
+    public TransplantGraph repeatedAdds() {
+        TransplantGraph graph = new TransplantGraph();
+        for (Patient p : donors)
+            graph.addDonor(p);
+        for (Patient p : recipients)
+            graph.addRecipient(p);
+        return graph;
+    }
+
+    /**
+     * It measures building the graph with one addAll rebuilt on one thread.
+     *
+     * @return the graph
+     */
+    @Benchmark
+    public TransplantGraph addAllSequential() {
+        TransplantGraph graph = new TransplantGraph();
+        graph.addAll(donors, recipients, 1);
+        return graph;
+    }
+
+    /**
+     * It measures building the graph with one addAll rebuilt on every processor.
+     *
+     * @return the graph
+     */
+    @Benchmark
+    public TransplantGraph addAllParallel() {
+        TransplantGraph graph = new TransplantGraph();
+        graph.addAll(donors, recipients, Runtime.getRuntime().availableProcessors());
+        return graph;
+    }
+}
@@ -0,0 +1,105 @@
+package transplant.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import transplant.GraphSnapshot;
+import transplant.TransplantGraph;
+
+/**
+ * This class benchmarks getting a whole graph in and out: building it from txt
+ * files, and round trips through the binary snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({"10000", "50000"})
+    public int size;
+
+    private Path directory;
+    private String donorFile;
+    private String recipientFile;
+    private String snapshotFile;
+    private TransplantGraph graph;
+
+    /**
+     * It writes the txt files and a snapshot of a generated population.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("transplant-bench");
+        donorFile = directory.resolve("donors.txt").toString();
+        recipientFile = directory.resolve("recipients.txt").toString();
+        snapshotFile = directory.resolve("transplant.snap").toString();
+        Population.write(Population.donors(size, 1), Path.of(donorFile));
+        Population.write(Population.recipients(size, 2), Path.of(recipientFile));
+        graph = TransplantGraph.buildFromFiles(donorFile, recipientFile);
+        GraphSnapshot.save(graph, snapshotFile);
+    }
+
+    /**
+     * It deletes the files written for the trial.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * It measures parsing both txt files and building the compatibility matrix.
+     *
+     * @return the graph
+     * @throws IOException if an I/O error occurs
+     */
+    @Benchmark
+    public TransplantGraph buildFromFiles() throws IOException {
+        return TransplantGraph.buildFromFiles(donorFile, recipientFile);
+    }
+
+    /**
+     * It measures writing a snapshot.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Benchmark
+    public void snapshotSave() throws IOException {
+        GraphSnapshot.save(graph, snapshotFile);
+    }
+
+    /**
+     * It measures loading a snapshot.
+     *
+     * @return the graph
+     * @throws IOException if an I/O error occurs
+     */
+    @Benchmark
+    public TransplantGraph snapshotLoad() throws IOException {
+        return GraphSnapshot.load(snapshotFile);
+    }
+}
@@ -0,0 +1,68 @@
+package transplant.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import transplant.HopcroftKarp;
+import transplant.Matching;
+import transplant.TransplantGraph;
+
+/**
+ * This class benchmarks whole-graph computations: a maximum matching from scratch,
+ * and rebuilding the compatibility matrix on one thread and on every processor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchBenchmark {
+    @Param({"10000", "50000"})
+    public int size;
+
+    private TransplantGraph graph;
+
+    /**
+     * It builds the graph.
+     */
+    @Setup
+    public void setUp() {
+        graph = Population.graph(size, size, 1);
+    }
+
+    /**
+     * It measures a maximum matching with Hopcroft-Karp.
+     *
+     * @return the matching
+     */
+    @Benchmark
+    public Matching hopcroftKarp() {
+        return HopcroftKarp.match(graph);
+    }
+
+    /**
+     * It measures rebuilding the compatibility matrix on one thread.
+     */
+    @Benchmark
+    public void rebuildSequential() {
+        graph.rebuildConnections(1);
+    }
+
+    /**
+     * It measures rebuilding the compatibility matrix on every processor.
+     */
+    @Benchmark
+    public void rebuildParallel() {
+        graph.rebuildConnections(Runtime.getRuntime().availableProcessors());
+    }
+}
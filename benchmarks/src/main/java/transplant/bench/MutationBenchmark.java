@@ -0,0 +1,166 @@
+package transplant.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import transplant.Patient;
+import transplant.TransplantGraph;
+
+/**
+ * This class benchmarks adding and removing single patients on a populated
+ * graph. Each invocation adds or removes a batch of patients, and an untimed
+ * per-invocation setup restores the graph to its starting size, so every
+ * measured operation sees the same graph. Scores are per patient.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MutationBenchmark {
+    private static final int BATCH = 1000;
+
+    /**
+     * This class holds a populated graph and a batch of extra patients.
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+        @Param({"10000", "50000"})
+        public int size;
+
+        TransplantGraph graph;
+        List<Patient> donors;
+        List<Patient> recipients;
+
+        /**
+         * It builds the graph and the batch of patients to add and remove, whose
+         * names differ from everyone already in the graph.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            graph = Population.graph(size, size, 1);
+            donors = Population.donors(BATCH, 3);
+            recipients = Population.recipients(BATCH, 4);
+            for (Patient p : donors)
+                p.setName("Walk-in " + p.getName());
+            for (Patient p : recipients)
+                p.setName("Walk-in " + p.getName());
+        }
+    }
+
+    /**
+     * This class removes any batch left in the graph before each add invocation.
+     */
+    @State(Scope.Thread)
+    public static class AddBatch extends Batch {
+
+        /**
+         * It removes the batch added by the previous invocation.
+         */
+        @Setup(Level.Invocation)
+        public void removeBatch() {
+            if (graph.getNumDonors() > size) {
+                for (Patient p : donors)
+                    graph.removeDonorByID(p.getID());
+            }
+            if (graph.getNumRecipients() > size) {
+                for (Patient p : recipients)
+                    graph.removeRecipientByID(p.getID());
+            }
+        }
+    }
+
+    /**
+     * This class puts the batch into the graph before each remove invocation.
+     */
+    @State(Scope.Thread)
+    public static class RemoveBatch extends Batch {
+
+        /**
+         * It adds the batch removed by the previous invocation.
+         */
+        @Setup(Level.Invocation)
+        public void addBatch() {
+            if (graph.getNumDonors() == size) {
+                for (Patient p : donors)
+                    graph.addDonor(p);
+            }
+            if (graph.getNumRecipients() == size) {
+                for (Patient p : recipients)
+                    graph.addRecipient(p);
+            }
+        }
+    }
+
+    /**
+     * It measures addDonor.
+     *
+     * @param batch the graph and donors to add
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addDonor(AddBatch batch) {
+        for (Patient p : batch.donors)
+            batch.graph.addDonor(p);
+    }
+
+    /**
+     * It measures addRecipient.
+     *
+     * @param batch the graph and recipients to add
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addRecipient(AddBatch batch) {
+        for (Patient p : batch.recipients)
+            batch.graph.addRecipient(p);
+    }
+
+    /**
+     * It measures removing donors by ID.
+     *
+     * @param batch the graph and donors to remove
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void removeDonor(RemoveBatch batch) {
+        for (Patient p : batch.donors)
+            batch.graph.removeDonorByID(p.getID());
+    }
+
+    /**
+     * It measures removing recipients by ID.
+     *
+     * @param batch the graph and recipients to remove
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void removeRecipient(RemoveBatch batch) {
+        for (Patient p : batch.recipients)
+            batch.graph.removeRecipientByID(p.getID());
+    }
+
+    /**
+     * It measures removing donors by name, which goes through the name index.
+     *
+     * @param batch the graph and donors to remove
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void removeDonorByName(RemoveBatch batch) {
+        for (Patient p : batch.donors)
+            batch.graph.removeDonor(p.getName());
+    }
+}
@@ -0,0 +1,138 @@
+package transplant.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import transplant.BloodType;
+import transplant.OffHeapStorage;
+import transplant.Patient;
+import transplant.TransplantGraph;
+
+/**
+ * This class generates synthetic donor and recipient populations for the
+ * benchmarks. Blood types follow their frequency in the US population, and organs
+ * follow the mix of the US waiting list for recipients and of transplanted organs
+ * for donors, so compatibility classes are as unevenly sized as in practice. A
+ * given seed always produces the same population.
+ */
+public final class Population {
+    private static final BloodType[] BLOOD_TYPES = {
+        BloodType.O_POS, BloodType.A_POS, BloodType.B_POS, BloodType.O_NEG,
+        BloodType.A_NEG, BloodType.AB_POS, BloodType.B_NEG, BloodType.AB_NEG
+    };
+    private static final int[] BLOOD_TYPE_WEIGHTS = {374, 357, 85, 66, 63, 34, 15, 6};
+    private static final String[] ORGANS = {"Kidney", "Liver", "Heart", "Lung", "Pancreas", "Intestine"};
+    private static final int[] DONATED_ORGAN_WEIGHTS = {570, 230, 100, 70, 20, 10};
+    private static final int[] NEEDED_ORGAN_WEIGHTS = {850, 90, 30, 10, 15, 5};
+
+    private Population() {
+    }
+
+    /**
+     * It generates donors.
+     *
+     * @param n the number of donors
+     * @param seed the random seed
+     * @return the donors, with IDs 0 to n - 1
+     */
+    public static List<Patient> donors(int n, long seed) {
+        Random random = new Random(seed);
+        List<Patient> donors = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            donors.add(new Patient(k, "Donor " + k, 18 + random.nextInt(53),
+                    ORGANS[pick(random, DONATED_ORGAN_WEIGHTS)], BLOOD_TYPES[pick(random, BLOOD_TYPE_WEIGHTS)], true));
+        }
+        return donors;
+    }
+
+    /**
+     * It generates recipients with urgency levels and waiting times.
+     *
+     * @param n the number of recipients
+     * @param seed the random seed
+     * @return the recipients, with IDs 0 to n - 1
+     */
+    public static List<Patient> recipients(int n, long seed) {
+        Random random = new Random(seed);
+        List<Patient> recipients = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            Patient p = new Patient(k, "Recipient " + k, 1 + random.nextInt(80),
+                    ORGANS[pick(random, NEEDED_ORGAN_WEIGHTS)], BLOOD_TYPES[pick(random, BLOOD_TYPE_WEIGHTS)], false);
+            p.setUrgency(random.nextInt(4));
+            p.setWaitingDays(random.nextInt(2000));
+            recipients.add(p);
+        }
+        return recipients;
+    }
+
+    /**
+     * It builds a graph over generated donors and recipients.
+     *
+     * @param donors the number of donors
+     * @param recipients the number of recipients
+     * @param seed the random seed
+     * @return the populated TransplantGraph
+     */
+    public static TransplantGraph graph(int donors, int recipients, long seed) {
+        return graph(donors, recipients, seed, false);
+    }
+
+    /**
+     * It builds a graph over generated donors and recipients, on the Java heap or
+     * in direct memory outside it.
+     *
+     * @param donors the number of donors
+     * @param recipients the number of recipients
+     * @param seed the random seed
+     * @param offHeap true to keep the graph outside the Java heap
+     * @return the populated TransplantGraph
+     */
+    public static TransplantGraph graph(int donors, int recipients, long seed, boolean offHeap) {
+        TransplantGraph graph = offHeap ? OffHeapStorage.allocate() : new TransplantGraph();
+        graph.addAll(donors(donors, seed), recipients(recipients, seed + 1));
+        return graph;
+    }
+
+    /**
+     * It writes patients to a txt file in the format read by buildFromFiles.
+     *
+     * @param patients the donors or recipients
+     * @param file the file to write
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(List<Patient> patients, Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Patient p : patients) {
+                out.write(p.getID() + ", " + p.getName() + ", " + p.getAge() + ", " + p.getOrgan() + ", "
+                        + p.getBloodType().getType());
+                if (!p.isDonor())
+                    out.write(", " + p.getUrgency() + ", " + p.getWaitingDays());
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * It picks an index with probability proportional to its weight.
+     *
+     * @param random the source of randomness
+     * @param weights the weights
+     * @return the picked index
+     */
+    private static int pick(Random random, int[] weights) {
+        int total = 0;
+        for (int weight : weights)
+            total += weight;
+        int r = random.nextInt(total);
+        for (int k = 0; ; k++) {
+            r -= weights[k];
+            if (r < 0)
+                return k;
+        }
+    }
+}
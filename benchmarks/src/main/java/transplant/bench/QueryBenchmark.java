@@ -0,0 +1,210 @@
+package transplant.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import transplant.BloodType;
+import transplant.BloodTypeComparator;
+import transplant.CandidateRanker;
+import transplant.NumConnectionsComparator;
+import transplant.OrganComparator;
+import transplant.Patient;
+import transplant.PatientQuery;
+import transplant.ScarcityScorer;
+import transplant.TransplantGraph;
+
+/**
+ * This class benchmarks read-only queries on a populated graph: connection counts
+ * and lookups, top-k candidate ranking, sorting the recipients with each
+ * comparator the driver offers, and filtering them by attribute, with the graph on
+ * the Java heap and off it. Sorts work on a fresh copy of the list each time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+    @Param({"10000", "50000"})
+    public int size;
+
+    @Param({"heap", "offheap"})
+    public String storage;
+
+    private TransplantGraph graph;
+    private Patient[] patients;
+    private List<Patient> recipients;
+    private CandidateRanker ranker;
+    private PatientQuery filter;
+    private int cursor;
+
+    /**
+     * It builds the graph and lists its patients in a shuffled order, so that
+     * successive lookups do not walk memory in ID order.
+     */
+    @Setup
+    public void setUp() {
+        graph = Population.graph(size, size, 1, "offheap".equals(storage));
+        List<Patient> all = new ArrayList<>(graph.getDonors());
+        all.addAll(graph.getRecipients());
+        Collections.shuffle(all, new Random(5));
+        patients = all.toArray(new Patient[0]);
+        recipients = graph.getRecipients();
+        ranker = new CandidateRanker(10, new ScarcityScorer(graph));
+        filter = PatientQuery.organ("Kidney")
+                .and(PatientQuery.bloodType(BloodType.B_NEG).or(PatientQuery.bloodType(BloodType.B_POS)))
+                .and(PatientQuery.ageBetween(18, 40)).and(PatientQuery.unconnected().not());
+    }
+
+    /**
+     * It advances to the next patient in shuffled order.
+     *
+     * @return the patient
+     */
+    private Patient next() {
+        if (++cursor == patients.length)
+            cursor = 0;
+        return patients[cursor];
+    }
+
+    /**
+     * It measures getNumConnections.
+     *
+     * @return the count
+     */
+    @Benchmark
+    public int getNumConnections() {
+        return graph.getNumConnections(next());
+    }
+
+    /**
+     * It measures isConnected between two patients in shuffled order.
+     *
+     * @return true if connected
+     */
+    @Benchmark
+    public boolean isConnected() {
+        int donor = next().getID();
+        return graph.isConnected(donor, next().getID());
+    }
+
+    /**
+     * It measures finding the ten best recipients for a donor.
+     *
+     * @return the number of candidates found
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int topCandidates() {
+        return ranker.rankRecipients(graph, next().getID());
+    }
+
+    /**
+     * It measures sorting recipients by ID.
+     *
+     * @return the sorted list
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Patient> sortByID() {
+        List<Patient> sorted = new ArrayList<>(recipients);
+        Collections.shuffle(sorted, new Random(7));
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * It measures sorting recipients with the NumConnectionsComparator.
+     *
+     * @return the sorted list
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Patient> sortByNumConnectionsComparator() {
+        List<Patient> sorted = new ArrayList<>(recipients);
+        sorted.sort(new NumConnectionsComparator(graph));
+        return sorted;
+    }
+
+    /**
+     * It measures the counting sort by number of connections.
+     *
+     * @return the sorted list
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Patient> sortByNumConnections() {
+        return graph.sortByNumConnections(recipients);
+    }
+
+    /**
+     * It measures sorting recipients with the BloodTypeComparator.
+     *
+     * @return the sorted list
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Patient> sortByBloodType() {
+        List<Patient> sorted = new ArrayList<>(recipients);
+        sorted.sort(new BloodTypeComparator());
+        return sorted;
+    }
+
+    /**
+     * It measures sorting recipients with the OrganComparator.
+     *
+     * @return the sorted list
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Patient> sortByOrgan() {
+        List<Patient> sorted = new ArrayList<>(recipients);
+        sorted.sort(new OrganComparator());
+        return sorted;
+    }
+
+    /**
+     * It measures counting the kidney recipients of blood type B aged 18 to 40
+     * with a compatible donor through the bitmap indexes.
+     *
+     * @return the count
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int filterIndexed() {
+        return graph.countRecipients(filter);
+    }
+
+    /**
+     * It measures counting the same recipients as filterIndexed by checking every
+     * recipient in turn.
+     *
+     * @return the count
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int filterScan() {
+        int count = 0;
+        for (Patient p : recipients) {
+            BloodType type = p.getBloodType();
+            if (p.getOrgan().equals("Kidney") && (type == BloodType.B_NEG || type == BloodType.B_POS)
+                    && p.getAge() >= 18 && p.getAge() <= 40 && graph.getNumConnections(p) > 0)
+                count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * This interface stores donor-recipient compatibility as packed bit rows, one per
+ * donor, plus a transposed column per recipient, and maintains the number of set
+ * bits in each. HeapAdjacencyMatrix keeps the bits in Java arrays, and
+ * OffHeapAdjacencyMatrix keeps them in memory outside the Java heap, optionally
+ * mapped from files.
+ */
+public interface AdjacencyMatrix {
+
+    /**
+     * It appends an empty donor row.
+     *
+     * @return the index of the new row
+     */
+    int addRow();
+
+    /**
+     * It appends an empty recipient column.
+     *
+     * @return the index of the new column
+     */
+    int addColumn();
+
+    /**
+     * It empties the matrix and resizes it to the given number of rows and
+     * columns, for bulk builds that then fill it with orRow and orColumn.
+     *
+     * @param numRows the number of donor rows
+     * @param numCols the number of recipient columns
+     */
+    void reset(int numRows, int numCols);
+
+    /**
+     * It clears every connection of the given donor row.
+     *
+     * @param donor the row to clear
+     */
+    void clearRow(int donor);
+
+    /**
+     * It clears every connection of the given recipient column.
+     *
+     * @param recipient the column to clear
+     */
+    void clearColumn(int recipient);
+
+    /**
+     * An accessor which gets the number of donor rows.
+     *
+     * @return the number of rows
+     */
+    int getNumRows();
+
+    /**
+     * An accessor which gets the number of recipient columns.
+     *
+     * @return the number of columns
+     */
+    int getNumColumns();
+
+    /**
+     * It marks the donor and recipient as compatible.
+     *
+     * @param donor the donor row
+     * @param recipient the recipient column
+     */
+    void set(int donor, int recipient);
+
+    /**
+     * It marks the donor as compatible with every recipient in the given set.
+     *
+     * @param donor the donor row
+     * @param recipients the bitset of recipient columns
+     */
+    void connectRow(int donor, long[] recipients);
+
+    /**
+     * It marks the recipient as compatible with every donor in the given set.
+     *
+     * @param recipient the recipient column
+     * @param donors the bitset of donor rows
+     */
+    void connectColumn(int recipient, long[] donors);
+
+    /**
+     * It ORs a set of recipients into a donor row word by word, without touching
+     * the transposed columns. It is meant for bulk builds that also fill every
+     * column with orColumn, and may run concurrently for different rows.
+     *
+     * @param donor the row to fill
+     * @param recipients a bitset of recipient columns
+     */
+    void orRow(int donor, long[] recipients);
+
+    /**
+     * It ORs a set of donors into a recipient column word by word, without
+     * touching the rows. It is the counterpart of orRow for bulk builds.
+     *
+     * @param recipient the column to fill
+     * @param donors a bitset of donor rows
+     */
+    void orColumn(int recipient, long[] donors);
+
+    /**
+     * It marks the donor and recipient as incompatible.
+     *
+     * @param donor the donor row
+     * @param recipient the recipient column
+     */
+    void clear(int donor, int recipient);
+
+    /**
+     * It checks whether the donor and recipient are compatible.
+     *
+     * @param donor the donor row
+     * @param recipient the recipient column
+     * @return true if compatible, otherwise false
+     */
+    boolean get(int donor, int recipient);
+
+    /**
+     * It counts the recipients compatible with the given donor.
+     *
+     * @param donor the donor row
+     * @return the number of set bits in the row
+     */
+    int rowCount(int donor);
+
+    /**
+     * It counts the donors compatible with the given recipient.
+     *
+     * @param recipient the recipient column
+     * @return the number of set bits in the column
+     */
+    int columnCount(int recipient);
+
+    /**
+     * It copies the connection count of every donor row.
+     *
+     * @return the counts indexed by donor row
+     */
+    int[] rowCounts();
+
+    /**
+     * It copies the connection count of every recipient column.
+     *
+     * @return the counts indexed by recipient column
+     */
+    int[] columnCounts();
+
+    /**
+     * It finds the next recipient compatible with the given donor.
+     *
+     * @param donor the donor row
+     * @param from the recipient index to start searching from
+     * @return the next compatible recipient, or -1 if there is none
+     */
+    int nextInRow(int donor, int from);
+
+    /**
+     * An accessor which gets the packed words of a donor row, which may be shorter
+     * than the number of columns. The array may be shared, so callers must not
+     * modify it.
+     *
+     * @param donor the donor row
+     * @return the row words
+     */
+    long[] rowWords(int donor);
+
+    /**
+     * It finds the next donor compatible with the given recipient.
+     *
+     * @param recipient the recipient column
+     * @param from the donor index to start searching from
+     * @return the next compatible donor, or -1 if there is none
+     */
+    int nextInColumn(int recipient, int from);
+
+    /**
+     * It forces any file-backed storage to disk. By default there is none.
+     */
+    default void force() {
+    }
+}
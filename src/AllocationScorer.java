@@ -0,0 +1,31 @@
+/**
+ * This interface scores how desirable it is to give a donor's organ to a compatible
+ * recipient, so weighted matching engines can prefer clinically better allocations.
+ */
+@FunctionalInterface
+public interface AllocationScorer {
+
+    /**
+     * It scores the allocation of the donor's organ to the recipient. It is only
+     * called for compatible pairs.
+     *
+     * @param donor the donor Patient
+     * @param recipient the recipient Patient
+     * @return the score, which must be positive; higher is better
+     */
+    int score(Patient donor, Patient recipient);
+
+    /**
+     * It scores the allocation of a donor's organ to a recipient, both given by ID.
+     * By default it scores views of the two patients; scorers that only read a few
+     * attributes override it to read the graph's columns directly.
+     *
+     * @param graph the TransplantGraph both patients belong to
+     * @param donorID the donor's ID
+     * @param recipientID the recipient's ID
+     * @return the score, which must be positive; higher is better
+     */
+    default int score(TransplantGraph graph, int donorID, int recipientID) {
+        return score(graph.getDonor(donorID), graph.getRecipient(recipientID));
+    }
+}
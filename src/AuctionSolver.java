@@ -0,0 +1,273 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * This class solves a sparse maximum-weight bipartite assignment with the auction
+ * algorithm. Persons bid for objects along the edges of a compressed row list,
+ * and any person may stay unassigned at a value of zero, as may any object.
+ *
+ * <p>Bidding runs in ε-scaling phases that shrink ε down to one unit. Once every
+ * person is settled in a phase, a reverse auction with the same ε lowers the
+ * prices of objects left unassigned, which the asymmetric problem needs for an
+ * optimal result; running it every phase keeps prices near equilibrium, so the
+ * final one-unit pass stays short. With integer weights scaled by at least
+ * n + 1, the final assignment is optimal.
+ * The bidding phase is either Gauss-Seidel, one person at a time, or Jacobi,
+ * where every unassigned person bids against the same prices in parallel and the
+ * highest bid per object wins.</p>
+ */
+public class AuctionSolver {
+    private static final int SCALING_FACTOR = 8;
+    private final int n;
+    private final int m;
+    private final int[] start;
+    private final int[] targets;
+    private final long[] values;
+    private final int[] rstart;
+    private final int[] sources;
+    private final long[] rvalues;
+    private final long[] price;
+    private final int[] owner;
+    private final int[] assigned;
+    private final long[] worth;
+    private final int[] bidTarget;
+    private final long[] bidAmount;
+    private final IntStack unassigned;
+
+    /**
+     * Constructs an AuctionSolver for n persons and m objects, where the edges of
+     * person a are targets[start[a]] to targets[start[a + 1] - 1] with the matching
+     * entries of values. It also builds the transposed edge list used by the
+     * reverse auction.
+     *
+     * @param m the number of objects
+     * @param start the offset of each person's first edge, of length n + 1
+     * @param targets the object of each edge
+     * @param values the non-negative weight of each edge
+     */
+    public AuctionSolver(int m, int[] start, int[] targets, long[] values) {
+        this.n = start.length - 1;
+        this.m = m;
+        this.start = start;
+        this.targets = targets;
+        this.values = values;
+        rstart = new int[m + 1];
+        for (int target : targets)
+            rstart[target + 1]++;
+        for (int b = 0; b < m; b++)
+            rstart[b + 1] += rstart[b];
+        sources = new int[targets.length];
+        rvalues = new long[targets.length];
+        int[] fill = Arrays.copyOf(rstart, m);
+        for (int a = 0; a < n; a++) {
+            for (int e = start[a]; e < start[a + 1]; e++) {
+                int slot = fill[targets[e]]++;
+                sources[slot] = a;
+                rvalues[slot] = values[e];
+            }
+        }
+        price = new long[m];
+        owner = new int[m];
+        assigned = new int[n];
+        worth = new long[n];
+        bidTarget = new int[n];
+        bidAmount = new long[n];
+        unassigned = new IntStack();
+    }
+
+    /**
+     * It solves the assignment.
+     *
+     * @param parallelism the number of worker threads for Jacobi bidding, or one
+     *                    for Gauss-Seidel bidding
+     * @return the object assigned to each person, or -1
+     */
+    public int[] solve(int parallelism) {
+        long maxValue = 0;
+        for (long value : values)
+            maxValue = Math.max(maxValue, value);
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            for (long eps = Math.max(1, maxValue / SCALING_FACTOR); ; eps = Math.max(1, eps / SCALING_FACTOR)) {
+                Arrays.fill(owner, -1);
+                Arrays.fill(assigned, -1);
+                for (int a = n - 1; a >= 0; a--) {
+                    if (start[a + 1] > start[a])
+                        unassigned.push(a);
+                }
+                if (pool == null)
+                    gaussSeidel(eps);
+                else
+                    jacobi(eps, pool);
+                lowerUnassignedPrices(eps);
+                if (eps == 1)
+                    break;
+            }
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+        return assigned.clone();
+    }
+
+    /**
+     * It lets unassigned persons bid one at a time until all are settled.
+     *
+     * @param eps the minimum bid increment
+     */
+    private void gaussSeidel(long eps) {
+        while (!unassigned.isEmpty()) {
+            int a = unassigned.pop();
+            bid(a, eps);
+            if (bidTarget[a] >= 0) {
+                int evicted = award(a, bidTarget[a], bidAmount[a]);
+                if (evicted >= 0)
+                    unassigned.push(evicted);
+            }
+        }
+    }
+
+    /**
+     * It lets every unassigned person bid at once against the same prices, in
+     * parallel on the pool, then awards each object to its highest bidder.
+     *
+     * @param eps the minimum bid increment
+     * @param pool the pool to compute bids on
+     */
+    private void jacobi(long eps, ForkJoinPool pool) {
+        int[] bidders = new int[n];
+        long[] bestBid = new long[m];
+        int[] bestBidder = new int[m];
+        Arrays.fill(bestBidder, -1);
+        while (!unassigned.isEmpty()) {
+            int count = unassigned.size();
+            for (int k = 0; k < count; k++)
+                bidders[k] = unassigned.pop();
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(k -> bid(bidders[k], eps))).join();
+            for (int k = 0; k < count; k++) {
+                int a = bidders[k];
+                int b = bidTarget[a];
+                if (b < 0)
+                    continue;
+                if (bestBidder[b] < 0 || bidAmount[a] > bestBid[b]) {
+                    if (bestBidder[b] >= 0)
+                        unassigned.push(bestBidder[b]);
+                    bestBid[b] = bidAmount[a];
+                    bestBidder[b] = a;
+                } else {
+                    unassigned.push(a);
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                int b = bidTarget[bidders[k]];
+                if (b >= 0 && bestBidder[b] == bidders[k]) {
+                    int evicted = award(bidders[k], b, bestBid[b]);
+                    if (evicted >= 0)
+                        unassigned.push(evicted);
+                    bestBidder[b] = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * It computes one person's bid: the object with the best value at current
+     * prices, and the price that leaves it eps worse than the second-best option.
+     * A target of -1 means staying unassigned is best, which stays true for the
+     * rest of the phase since prices only rise.
+     *
+     * @param a the person
+     * @param eps the minimum bid increment
+     */
+    private void bid(int a, long eps) {
+        int best = -1;
+        long bestValue = 0;
+        long bestWorth = 0;
+        long second = 0;
+        for (int e = start[a]; e < start[a + 1]; e++) {
+            long value = values[e] - price[targets[e]];
+            if (value > bestValue) {
+                second = bestValue;
+                bestValue = value;
+                best = e;
+                bestWorth = values[e];
+            } else if (value > second) {
+                second = value;
+            }
+        }
+        bidTarget[a] = best < 0 ? -1 : targets[best];
+        bidAmount[a] = bestWorth - second + eps;
+        if (best >= 0)
+            worth[a] = bestWorth;
+    }
+
+    /**
+     * It assigns a person to an object at the given price, evicting the object's
+     * previous owner.
+     *
+     * @param a the person
+     * @param b the object
+     * @param amount the new price of the object
+     * @return the evicted person, or -1 if there was none
+     */
+    private int award(int a, int b, long amount) {
+        price[b] = amount;
+        int evicted = owner[b];
+        owner[b] = a;
+        assigned[a] = b;
+        if (evicted >= 0)
+            assigned[evicted] = -1;
+        return evicted;
+    }
+
+    /**
+     * It runs the reverse auction: each unassigned object with a positive price
+     * either draws the person for whom it is best by more than eps, freeing that
+     * person's previous object, or drops its price to zero.
+     *
+     * @param eps the minimum price decrement
+     */
+    private void lowerUnassignedPrices(long eps) {
+        long[] profit = new long[n];
+        for (int a = 0; a < n; a++)
+            profit[a] = assigned[a] >= 0 ? worth[a] - price[assigned[a]] : 0;
+        IntStack pending = new IntStack();
+        for (int b = 0; b < m; b++) {
+            if (owner[b] < 0 && price[b] > 0)
+                pending.push(b);
+        }
+        while (!pending.isEmpty()) {
+            int b = pending.pop();
+            int best = -1;
+            long bestValue = Long.MIN_VALUE;
+            long second = Long.MIN_VALUE;
+            for (int e = rstart[b]; e < rstart[b + 1]; e++) {
+                long value = rvalues[e] - profit[sources[e]];
+                if (value > bestValue) {
+                    second = bestValue;
+                    bestValue = value;
+                    best = e;
+                } else if (value > second) {
+                    second = value;
+                }
+            }
+            if (best < 0 || bestValue - eps <= 0) {
+                price[b] = 0;
+                continue;
+            }
+            int a = sources[best];
+            price[b] = second == Long.MIN_VALUE ? 0 : Math.max(0, second - eps);
+            profit[a] = rvalues[best] - price[b];
+            worth[a] = rvalues[best];
+            int previous = assigned[a];
+            assigned[a] = b;
+            owner[b] = a;
+            if (previous >= 0) {
+                owner[previous] = -1;
+                if (price[previous] > 0)
+                    pending.push(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.Arrays;
+
+/**
+ * This class provides static helpers for treating a long[] as a packed bitset,
+ * 64 bits per word, where words past the end of the array read as zero.
+ */
+public final class Bits {
+    private static final int ADDRESS_BITS = 6;
+
+    private Bits() {
+    }
+
+    /**
+     * It returns the number of long words needed to hold the given number of bits.
+     *
+     * @param numBits the number of bits
+     * @return the number of words
+     */
+    public static int wordsFor(int numBits) {
+        return (numBits + 63) >>> ADDRESS_BITS;
+    }
+
+    /**
+     * It checks whether the given bit is set.
+     *
+     * @param words the bitset words
+     * @param bit the bit index
+     * @return true if set, otherwise false
+     */
+    public static boolean get(long[] words, int bit) {
+        int w = bit >>> ADDRESS_BITS;
+        return w < words.length && (words[w] & (1L << bit)) != 0;
+    }
+
+    /**
+     * It sets the given bit, growing the array if needed.
+     *
+     * @param words the bitset words
+     * @param bit the bit index
+     * @return the (possibly reallocated) bitset words
+     */
+    public static long[] set(long[] words, int bit) {
+        int w = bit >>> ADDRESS_BITS;
+        if (w >= words.length)
+            words = Arrays.copyOf(words, Math.max(w + 1, words.length * 2));
+        words[w] |= 1L << bit;
+        return words;
+    }
+
+    /**
+     * It clears the given bit.
+     *
+     * @param words the bitset words
+     * @param bit the bit index
+     */
+    public static void clear(long[] words, int bit) {
+        int w = bit >>> ADDRESS_BITS;
+        if (w < words.length)
+            words[w] &= ~(1L << bit);
+    }
+
+    /**
+     * It counts the set bits.
+     *
+     * @param words the bitset words
+     * @return the number of set bits
+     */
+    public static int cardinality(long[] words) {
+        int count = 0;
+        for (long word : words)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * It finds the first set bit at or after the given index.
+     *
+     * @param words the bitset words
+     * @param from the index to start searching from
+     * @return the index of the next set bit, or -1 if there is none
+     */
+    public static int nextSetBit(long[] words, int from) {
+        int w = from >>> ADDRESS_BITS;
+        if (w >= words.length)
+            return -1;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0)
+                return (w << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+            if (++w == words.length)
+                return -1;
+            word = words[w];
+        }
+    }
+
+    /**
+     * It ORs one bitset into another.
+     *
+     * @param into the bitset to add to, which may be replaced by a longer one
+     * @param bits the bitset to add, or null for none
+     * @return the (possibly reallocated) union
+     */
+    public static long[] or(long[] into, long[] bits) {
+        if (bits == null)
+            return into;
+        if (into.length < bits.length)
+            into = Arrays.copyOf(into, bits.length);
+        for (int w = 0; w < bits.length; w++)
+            into[w] |= bits[w];
+        return into;
+    }
+
+    /**
+     * It ANDs one bitset into another, in place.
+     *
+     * @param into the bitset to keep the common bits of
+     * @param bits the bitset to intersect with
+     * @return the intersection, which is into
+     */
+    public static long[] and(long[] into, long[] bits) {
+        int common = Math.min(into.length, bits.length);
+        for (int w = 0; w < common; w++)
+            into[w] &= bits[w];
+        Arrays.fill(into, common, into.length, 0);
+        return into;
+    }
+
+    /**
+     * It clears from one bitset the bits set in another, in place.
+     *
+     * @param into the bitset to clear bits of
+     * @param bits the bits to clear
+     * @return the difference, which is into
+     */
+    public static long[] andNot(long[] into, long[] bits) {
+        int common = Math.min(into.length, bits.length);
+        for (int w = 0; w < common; w++)
+            into[w] &= ~bits[w];
+        return into;
+    }
+
+    /**
+     * It lists the set bits in ascending order.
+     *
+     * @param words the bitset words
+     * @return the indexes of the set bits
+     */
+    public static int[] toArray(long[] words) {
+        int[] bits = new int[cardinality(words)];
+        int n = 0;
+        for (int w = 0; w < words.length; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1)
+                bits[n++] = (w << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+        }
+        return bits;
+    }
+}
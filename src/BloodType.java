@@ -1,23 +1,121 @@
-import java.io.Serializable;
-
 /**
- * This class represents a BloodType and provides compatibility checks
- * according to standard transfusion rules.
+ * This enum represents the eight ABO/Rh blood types and provides compatibility checks
+ * according to standard transfusion rules. Each type has a one-byte code whose bits
+ * record the Rh factor (bit 0), the A antigen (bit 1) and the B antigen (bit 2), and
+ * compatibility is answered from a precomputed bitmask table indexed by that code.
  */
-public class BloodType implements Serializable {
-    private String type;
+public enum BloodType {
+    O_NEG("O-"), O_POS("O+"), A_NEG("A-"), A_POS("A+"),
+    B_NEG("B-"), B_POS("B+"), AB_NEG("AB-"), AB_POS("AB+");
+
+    private static final BloodType[] BY_CODE = values();
+    private static final int[] DONORS_FOR = new int[BY_CODE.length];
+    private static final int[] RECIPIENTS_FOR = new int[BY_CODE.length];
+
+    static {
+        for (int r = 0; r < BY_CODE.length; r++) {
+            for (int d = 0; d < BY_CODE.length; d++) {
+                // A donor is compatible when it carries no antigen the recipient lacks.
+                if ((d & ~r) == 0) {
+                    DONORS_FOR[r] |= 1 << d;
+                    RECIPIENTS_FOR[d] |= 1 << r;
+                }
+            }
+        }
+    }
+
+    private final String type;
+
+    /**
+     * Constructs a BloodType with its display code.
+     *
+     * @param type the blood type code (e.g., "A+", "O-", "AB+")
+     */
+    BloodType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * It parses a blood type code, ignoring case and surrounding whitespace. A code
+     * without an Rh sign (e.g., "A") is treated as Rh positive.
+     *
+     * @param type the blood type code (e.g., "A", "O-", "ab+")
+     * @return the matching BloodType
+     * @throws IllegalArgumentException if the code is not a valid blood type
+     */
+    public static BloodType parse(String type) {
+        String t = type.trim().toUpperCase();
+        int end = t.length();
+        int code = 1;
+        if (end > 0 && (t.charAt(end - 1) == '+' || t.charAt(end - 1) == '-')) {
+            code = t.charAt(end - 1) == '+' ? 1 : 0;
+            end--;
+        }
+        switch (t.substring(0, end).trim()) {
+            case "O":  break;
+            case "A":  code |= 2; break;
+            case "B":  code |= 4; break;
+            case "AB": code |= 6; break;
+            default:   throw new IllegalArgumentException("Invalid blood type: " + type);
+        }
+        return BY_CODE[code];
+    }
+
+    /**
+     * It parses an ASCII blood type code held in a byte range, with the same rules
+     * as parse but without creating a String.
+     *
+     * @param bytes the buffer holding the code
+     * @param from the index of the first byte
+     * @param to the index after the last byte
+     * @return the blood type code, or -1 if the bytes are not a valid blood type
+     */
+    public static int parseCode(byte[] bytes, int from, int to) {
+        while (from < to && (bytes[from] & 0xFF) <= ' ')
+            from++;
+        while (to > from && (bytes[to - 1] & 0xFF) <= ' ')
+            to--;
+        int code = 1;
+        if (to > from && (bytes[to - 1] == '+' || bytes[to - 1] == '-')) {
+            code = bytes[to - 1] == '+' ? 1 : 0;
+            to--;
+            while (to > from && (bytes[to - 1] & 0xFF) <= ' ')
+                to--;
+        }
+        int first = to > from ? bytes[from] | 0x20 : 0;
+        int second = to - from > 1 ? bytes[from + 1] | 0x20 : 0;
+        if (to - from == 1 && first == 'o')
+            return code;
+        if (to - from == 1 && first == 'a')
+            return code | 2;
+        if (to - from == 1 && first == 'b')
+            return code | 4;
+        if (to - from == 2 && first == 'a' && second == 'b')
+            return code | 6;
+        return -1;
+    }
 
     /**
-     * Constructs a BloodType by normalizing the given type string to uppercase.
+     * It returns the BloodType with the given one-byte code.
      *
-     * @param type the blood type code (e.g., "A", "O", "AB", "B")
+     * @param code the blood type code
+     * @return the matching BloodType
      */
-    public BloodType(String type) {
-        this.type = type.toUpperCase();
+    public static BloodType fromCode(byte code) {
+        return BY_CODE[code];
     }
 
     /**
-     * An accessor which gets the blood type code.
+     * An accessor which gets the one-byte code of this blood type.
+     *
+     * @return the blood type code
+     */
+    public byte getCode() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * An accessor which gets the blood type display code.
      *
      * @return the blood type string
      */
@@ -26,12 +124,23 @@ public class BloodType implements Serializable {
     }
 
     /**
-     * A mutator which sets the blood type code, normalizing to uppercase.
+     * It returns a bitmask of the donor codes compatible with the given recipient code.
+     *
+     * @param recipient the recipient’s blood type code
+     * @return the bitmask with bit d set for each compatible donor code d
+     */
+    public static int donorsFor(byte recipient) {
+        return DONORS_FOR[recipient];
+    }
+
+    /**
+     * It returns a bitmask of the recipient codes compatible with the given donor code.
      *
-     * @param type the new blood type code
+     * @param donor the donor’s blood type code
+     * @return the bitmask with bit r set for each compatible recipient code r
      */
-    public void setType(String type) {
-        this.type = type.toUpperCase();
+    public static int recipientsFor(byte donor) {
+        return RECIPIENTS_FOR[donor];
     }
 
     /**
@@ -42,14 +151,27 @@ public class BloodType implements Serializable {
      * @return true if compatible according to transfusion rules, otherwise false
      */
     public static boolean isCompatible(BloodType recipient, BloodType donor) {
-        String r = recipient.getType();
-        String d = donor.getType();
-        switch (r) {
-            case "O":  return d.equals("O");
-            case "A":  return d.equals("O") || d.equals("A");
-            case "B":  return d.equals("O") || d.equals("B");
-            case "AB": return d.equals("O") || d.equals("A") || d.equals("B") || d.equals("AB");
-            default:   return false;
-        }
+        return isCompatible(recipient.getCode(), donor.getCode());
+    }
+
+    /**
+     * It checks whether the donor’s blood type code is compatible with the recipient’s.
+     *
+     * @param recipient the recipient’s blood type code
+     * @param donor the donor’s blood type code
+     * @return true if compatible according to transfusion rules, otherwise false
+     */
+    public static boolean isCompatible(byte recipient, byte donor) {
+        return (DONORS_FOR[recipient] & (1 << donor)) != 0;
+    }
+
+    /**
+     * It returns the blood type display code.
+     *
+     * @return the blood type string
+     */
+    @Override
+    public String toString() {
+        return type;
     }
 }
@@ -1,7 +1,8 @@
 import java.util.Comparator;
 
 /**
- * This comparator orders Patients by their blood type string lexicographically.
+ * This comparator orders Patients by their blood type code: O, A, B, then AB,
+ * with Rh negative before Rh positive, and patients of the same blood type by ID.
  */
 public class BloodTypeComparator implements Comparator<Patient> {
 
@@ -10,10 +11,11 @@ public class BloodTypeComparator implements Comparator<Patient> {
      *
      * @param p1 the first patient
      * @param p2 the second patient
-     * @return negative if p1’s blood type precedes p2’s, zero if equal, positive if follows
+     * @return negative if p1’s blood type precedes p2’s, zero if both have the same ID, positive if follows
      */
     @Override
     public int compare(Patient p1, Patient p2) {
-        return p1.getBloodType().getType().compareTo(p2.getBloodType().getType());
+        int order = Byte.compare(p1.getBloodCode(), p2.getBloodCode());
+        return order != 0 ? order : Integer.compare(p1.getID(), p2.getID());
     }
 }
@@ -0,0 +1,192 @@
+/**
+ * This class answers "who are the best k candidates for this patient" queries,
+ * such as the top ten recipients for a newly available donor. It walks only the
+ * patient's compatible row or column of the matrix, scores each candidate with an
+ * AllocationScorer, and keeps the best k in a bounded min-heap of primitive arrays,
+ * so a query takes O(c log k) time for c compatible candidates and allocates
+ * nothing once the ranker is built. Ties are broken in favor of the lower ID.
+ *
+ * <p>A ranker holds the results of its last query and is reused across queries,
+ * so it must not be shared between threads.</p>
+ */
+public class CandidateRanker {
+    private final AllocationScorer scorer;
+    private final int[] heapIDs;
+    private final long[] heapScores;
+    private int size;
+
+    /**
+     * Constructs a CandidateRanker that keeps up to k candidates. Its arrays are
+     * sized for k up front, so callers taking k from users should first cap it at
+     * the number of patients that could be ranked.
+     *
+     * @param k the number of candidates to keep
+     * @param scorer the scorer for compatible pairs
+     * @throws IllegalArgumentException if k is less than 1
+     */
+    public CandidateRanker(int k, AllocationScorer scorer) {
+        if (k < 1)
+            throw new IllegalArgumentException("k must be at least 1");
+        this.scorer = scorer;
+        heapIDs = new int[k];
+        heapScores = new long[k];
+    }
+
+    /**
+     * It ranks the recipients compatible with a donor.
+     *
+     * @param graph the TransplantGraph to search
+     * @param donorID the donor's ID
+     * @return the number of candidates found, at most k
+     */
+    public int rankRecipients(TransplantGraph graph, int donorID) {
+        size = 0;
+        if (!graph.hasDonor(donorID))
+            return 0;
+        for (int j = graph.nextCompatibleRecipient(donorID, 0); j >= 0; j = graph.nextCompatibleRecipient(donorID, j + 1))
+            offer(j, scorer.score(graph, donorID, j));
+        return sortDescending();
+    }
+
+    /**
+     * It ranks the donors compatible with a recipient.
+     *
+     * @param graph the TransplantGraph to search
+     * @param recipientID the recipient's ID
+     * @return the number of candidates found, at most k
+     */
+    public int rankDonors(TransplantGraph graph, int recipientID) {
+        size = 0;
+        if (!graph.hasRecipient(recipientID))
+            return 0;
+        for (int i = graph.nextCompatibleDonor(recipientID, 0); i >= 0; i = graph.nextCompatibleDonor(recipientID, i + 1))
+            offer(i, scorer.score(graph, i, recipientID));
+        return sortDescending();
+    }
+
+    /**
+     * An accessor which gets the number of candidates found by the last query.
+     *
+     * @return the number of candidates
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * An accessor which gets a candidate of the last query by rank.
+     *
+     * @param rank the rank, from 0 for the best candidate
+     * @return the candidate's ID
+     */
+    public int getID(int rank) {
+        return heapIDs[rank];
+    }
+
+    /**
+     * An accessor which gets the score of a candidate of the last query by rank.
+     *
+     * @param rank the rank, from 0 for the best candidate
+     * @return the candidate's score
+     */
+    public long getScore(int rank) {
+        return heapScores[rank];
+    }
+
+    /**
+     * It offers a candidate to the heap, which keeps the worst kept candidate at
+     * its root so a better one can replace it.
+     *
+     * @param id the candidate's ID
+     * @param score the candidate's score
+     */
+    private void offer(int id, long score) {
+        if (size < heapIDs.length) {
+            heapIDs[size] = id;
+            heapScores[size] = score;
+            siftUp(size++);
+        } else if (worse(heapIDs[0], heapScores[0], id, score)) {
+            heapIDs[0] = id;
+            heapScores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * It sorts the heap in place from best to worst by repeatedly moving the
+     * worst candidate to the end.
+     *
+     * @return the number of candidates
+     */
+    private int sortDescending() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        return size;
+    }
+
+    /**
+     * It moves an entry up the heap until its parent is no better.
+     *
+     * @param k the entry's index
+     */
+    private void siftUp(int k) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (!worse(heapIDs[k], heapScores[k], heapIDs[parent], heapScores[parent]))
+                return;
+            swap(k, parent);
+            k = parent;
+        }
+    }
+
+    /**
+     * It moves an entry down the heap until neither child is worse.
+     *
+     * @param k the entry's index
+     * @param end the number of entries in the heap
+     */
+    private void siftDown(int k, int end) {
+        while (true) {
+            int child = 2 * k + 1;
+            if (child >= end)
+                return;
+            if (child + 1 < end && worse(heapIDs[child + 1], heapScores[child + 1], heapIDs[child], heapScores[child]))
+                child++;
+            if (!worse(heapIDs[child], heapScores[child], heapIDs[k], heapScores[k]))
+                return;
+            swap(k, child);
+            k = child;
+        }
+    }
+
+    /**
+     * It checks whether one candidate ranks below another: a lower score, or an
+     * equal score and a higher ID.
+     *
+     * @param id the first candidate's ID
+     * @param score the first candidate's score
+     * @param otherID the second candidate's ID
+     * @param otherScore the second candidate's score
+     * @return true if the first candidate ranks below the second
+     */
+    private static boolean worse(int id, long score, int otherID, long otherScore) {
+        return score < otherScore || (score == otherScore && id > otherID);
+    }
+
+    /**
+     * It swaps two heap entries.
+     *
+     * @param a the first index
+     * @param b the second index
+     */
+    private void swap(int a, int b) {
+        int id = heapIDs[a];
+        heapIDs[a] = heapIDs[b];
+        heapIDs[b] = id;
+        long score = heapScores[a];
+        heapScores[a] = heapScores[b];
+        heapScores[b] = score;
+    }
+}
@@ -0,0 +1,251 @@
+import java.util.Arrays;
+
+/**
+ * This class groups donor and recipient IDs into compatibility classes keyed by
+ * organ code and then blood type code. Since compatibility depends only on that pair, a new
+ * patient can be connected to whole classes of the opposite side at once instead
+ * of being compared against every patient individually.
+ */
+public class CompatibilityIndex {
+    private static final int NUM_BLOOD_TYPES = BloodType.values().length;
+    private long[][][] donorClasses;
+    private long[][][] recipientClasses;
+    private long version;
+
+    /**
+     * Default constructor which initializes an empty index.
+     */
+    public CompatibilityIndex() {
+        donorClasses = new long[0][][];
+        recipientClasses = new long[0][][];
+    }
+
+    /**
+     * It adds a donor to the class for its organ and blood type.
+     *
+     * @param id the donor ID
+     * @param organ the donor's organ code
+     * @param bloodCode the donor's blood type code
+     */
+    public void addDonor(int id, int organ, byte bloodCode) {
+        donorClasses = add(donorClasses, id, organ, bloodCode);
+        version++;
+    }
+
+    /**
+     * It adds a recipient to the class for its organ and blood type.
+     *
+     * @param id the recipient ID
+     * @param organ the recipient's organ code
+     * @param bloodCode the recipient's blood type code
+     */
+    public void addRecipient(int id, int organ, byte bloodCode) {
+        recipientClasses = add(recipientClasses, id, organ, bloodCode);
+        version++;
+    }
+
+    /**
+     * It removes a donor from the class for its organ and blood type.
+     *
+     * @param id the donor ID
+     * @param organ the donor's organ code
+     * @param bloodCode the donor's blood type code
+     */
+    public void removeDonor(int id, int organ, byte bloodCode) {
+        remove(donorClasses, id, organ, bloodCode);
+        version++;
+    }
+
+    /**
+     * It removes a recipient from the class for its organ and blood type.
+     *
+     * @param id the recipient ID
+     * @param organ the recipient's organ code
+     * @param bloodCode the recipient's blood type code
+     */
+    public void removeRecipient(int id, int organ, byte bloodCode) {
+        remove(recipientClasses, id, organ, bloodCode);
+        version++;
+    }
+
+    /**
+     * An accessor which gets the number of changes made to the classes, so
+     * anything derived from them can tell when it is stale.
+     *
+     * @return the number of adds and removes so far
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * An accessor which gets the number of organ codes the classes of one side
+     * cover. Every organ code with members is below this bound.
+     *
+     * @param isDonor true for the donor classes, false for the recipients
+     * @return the number of organ codes
+     */
+    public int getNumOrganCodes(boolean isDonor) {
+        return (isDonor ? donorClasses : recipientClasses).length;
+    }
+
+    /**
+     * An accessor which gets the members of one class as a bitset of patient IDs.
+     * The array is shared with the index, so callers must not modify it.
+     *
+     * @param isDonor true for a donor class, false for a recipient class
+     * @param organ the organ code
+     * @param bloodCode the blood type code
+     * @return the member bitset, or null if the class has never had members
+     */
+    public long[] getMembers(boolean isDonor, int organ, byte bloodCode) {
+        long[][] byBloodType = classOf(isDonor ? donorClasses : recipientClasses, organ);
+        return byBloodType == null ? null : byBloodType[bloodCode];
+    }
+
+    /**
+     * It counts the patients of the other side a member of a class is connected
+     * to, which is the same for every member of the class.
+     *
+     * @param isDonor true for a donor class, false for a recipient class
+     * @param organ the organ code
+     * @param bloodCode the blood type code
+     * @return the number of connections of every member
+     */
+    public int getDegree(boolean isDonor, int organ, byte bloodCode) {
+        int mask = isDonor ? BloodType.recipientsFor(bloodCode) : BloodType.donorsFor(bloodCode);
+        int degree = 0;
+        for (; mask != 0; mask &= mask - 1) {
+            long[] members = getMembers(!isDonor, organ, (byte) Integer.numberOfTrailingZeros(mask));
+            if (members != null)
+                degree += Bits.cardinality(members);
+        }
+        return degree;
+    }
+
+    /**
+     * It connects a donor to every recipient class it is compatible with.
+     *
+     * @param id the donor ID
+     * @param organ the donor's organ code
+     * @param bloodCode the donor's blood type code
+     * @param connections the matrix to update
+     */
+    public void connectDonor(int id, int organ, byte bloodCode, AdjacencyMatrix connections) {
+        long[][] byBloodType = classOf(recipientClasses, organ);
+        if (byBloodType == null)
+            return;
+        int mask = BloodType.recipientsFor(bloodCode);
+        for (; mask != 0; mask &= mask - 1) {
+            long[] members = byBloodType[Integer.numberOfTrailingZeros(mask)];
+            if (members != null)
+                connections.connectRow(id, members);
+        }
+    }
+
+    /**
+     * It connects a recipient to every donor class it is compatible with.
+     *
+     * @param id the recipient ID
+     * @param organ the recipient's organ code
+     * @param bloodCode the recipient's blood type code
+     * @param connections the matrix to update
+     */
+    public void connectRecipient(int id, int organ, byte bloodCode, AdjacencyMatrix connections) {
+        long[][] byBloodType = classOf(donorClasses, organ);
+        if (byBloodType == null)
+            return;
+        int mask = BloodType.donorsFor(bloodCode);
+        for (; mask != 0; mask &= mask - 1) {
+            long[] members = byBloodType[Integer.numberOfTrailingZeros(mask)];
+            if (members != null)
+                connections.connectColumn(id, members);
+        }
+    }
+
+    /**
+     * It fills a donor's row with every recipient class it is compatible with,
+     * leaving the columns to fillRecipientColumn. Used for bulk builds.
+     *
+     * @param id the donor ID
+     * @param organ the donor's organ code
+     * @param bloodCode the donor's blood type code
+     * @param connections the matrix to fill
+     */
+    public void fillDonorRow(int id, int organ, byte bloodCode, AdjacencyMatrix connections) {
+        long[][] byBloodType = classOf(recipientClasses, organ);
+        if (byBloodType == null)
+            return;
+        int mask = BloodType.recipientsFor(bloodCode);
+        for (; mask != 0; mask &= mask - 1) {
+            long[] members = byBloodType[Integer.numberOfTrailingZeros(mask)];
+            if (members != null)
+                connections.orRow(id, members);
+        }
+    }
+
+    /**
+     * It fills a recipient's column with every donor class it is compatible with,
+     * leaving the rows to fillDonorRow. Used for bulk builds.
+     *
+     * @param id the recipient ID
+     * @param organ the recipient's organ code
+     * @param bloodCode the recipient's blood type code
+     * @param connections the matrix to fill
+     */
+    public void fillRecipientColumn(int id, int organ, byte bloodCode, AdjacencyMatrix connections) {
+        long[][] byBloodType = classOf(donorClasses, organ);
+        if (byBloodType == null)
+            return;
+        int mask = BloodType.donorsFor(bloodCode);
+        for (; mask != 0; mask &= mask - 1) {
+            long[] members = byBloodType[Integer.numberOfTrailingZeros(mask)];
+            if (members != null)
+                connections.orColumn(id, members);
+        }
+    }
+
+    /**
+     * It adds a patient's ID to its class within the given side.
+     *
+     * @param classes the classes of one side, indexed by organ code
+     * @param id the patient ID
+     * @param organ the patient's organ code
+     * @param code the patient's blood type code
+     * @return the (possibly reallocated) classes
+     */
+    private static long[][][] add(long[][][] classes, int id, int organ, byte code) {
+        if (organ >= classes.length)
+            classes = Arrays.copyOf(classes, organ + 1);
+        if (classes[organ] == null)
+            classes[organ] = new long[NUM_BLOOD_TYPES][];
+        long[][] byBloodType = classes[organ];
+        byBloodType[code] = Bits.set(byBloodType[code] == null ? new long[0] : byBloodType[code], id);
+        return classes;
+    }
+
+    /**
+     * It gets the classes for one organ within the given side.
+     *
+     * @param classes the classes of one side, indexed by organ code
+     * @param organ the organ code
+     * @return the member bitsets indexed by blood type code, or null if there are none
+     */
+    private static long[][] classOf(long[][][] classes, int organ) {
+        return organ < classes.length ? classes[organ] : null;
+    }
+
+    /**
+     * It removes a patient's ID from its class within the given side.
+     *
+     * @param classes the classes of one side, indexed by organ code
+     * @param id the patient ID
+     * @param organ the patient's organ code
+     * @param code the patient's blood type code
+     */
+    private static void remove(long[][][] classes, int id, int organ, byte code) {
+        long[][] byBloodType = classOf(classes, organ);
+        if (byBloodType != null && byBloodType[code] != null)
+            Bits.clear(byBloodType[code], id);
+    }
+}
@@ -0,0 +1,421 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class makes a TransplantGraph safe to share between several operators,
+ * such as intake clerks adding and removing patients from their own threads.
+ *
+ * <p>Changes are serialized under the write mode of a StampedLock, so listeners
+ * such as an IncrementalMatcher or a WriteAheadLog see them one at a time. They are
+ * not striped per organ because patient IDs and the compatibility matrix are shared
+ * by every organ. Point reads such as isConnected and getNumConnections run as
+ * optimistic reads that take no lock at all and are retried under the read lock
+ * only if a change overlapped them. Listings and multi-step queries run under the
+ * read lock, so any number of them proceed together and always see a graph between
+ * two changes. The Patients they return are standalone copies taken under the
+ * lock, so they stay readable while other threads change the graph. A StampedLock
+ * lets new readers in while a writer waits, so overlapping long reads could keep
+ * writers out indefinitely; a writer therefore holds a turnstile while it waits
+ * for the write lock, and readers pass through the turnstile before taking the
+ * read lock, so they queue behind it.</p>
+ *
+ * <p>When a WriteAheadLog is attached, each change is appended to it under the
+ * lock but forced to disk after the lock is released, so writers waiting on the
+ * disk do not hold up others and concurrent changes share one fsync.</p>
+ */
+public class ConcurrentTransplantGraph {
+    private final TransplantGraph graph;
+    private final StampedLock lock = new StampedLock();
+    private final ReentrantLock turnstile = new ReentrantLock();
+    private volatile WriteAheadLog log;
+
+    /**
+     * Constructs a ConcurrentTransplantGraph over a graph, which must not be used
+     * directly afterwards.
+     *
+     * @param graph the TransplantGraph to guard
+     */
+    public ConcurrentTransplantGraph(TransplantGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * It attaches an open WriteAheadLog for the graph, so each change is durable
+     * before the call making it returns.
+     *
+     * @param log the log, already listening to the graph
+     */
+    public void attachLog(WriteAheadLog log) {
+        long stamp = writeLock();
+        try {
+            log.setSyncOnCommit(false);
+            this.log = log;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * It checkpoints the attached log under the write lock, so no change lands in
+     * the snapshot while it is being written. It does nothing if no log is attached.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void checkpoint() throws IOException {
+        long stamp = writeLock();
+        try {
+            if (log != null)
+                log.checkpoint();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * It adds a donor and returns the ID it was assigned.
+     *
+     * @param p the Patient to add as donor
+     * @return the donor's ID
+     */
+    public int addDonor(Patient p) {
+        return write(g -> g.addDonor(p));
+    }
+
+    /**
+     * It adds a recipient and returns the ID it was assigned.
+     *
+     * @param p the Patient to add as recipient
+     * @return the recipient's ID
+     */
+    public int addRecipient(Patient p) {
+        return write(g -> g.addRecipient(p));
+    }
+
+    /**
+     * It adds many donors and recipients at once.
+     *
+     * @param newDonors the donors to add
+     * @param newRecipients the recipients to add
+     */
+    public void addAll(List<Patient> newDonors, List<Patient> newRecipients) {
+        write(g -> {
+            g.addAll(newDonors, newRecipients);
+            return null;
+        });
+    }
+
+    /**
+     * It removes the donor with the given ID.
+     *
+     * @param id the donor ID to remove
+     * @return true if a donor was removed, false if the ID was not in use
+     */
+    public boolean removeDonorByID(int id) {
+        return write(g -> g.removeDonorByID(id));
+    }
+
+    /**
+     * It removes the recipient with the given ID.
+     *
+     * @param id the recipient ID to remove
+     * @return true if a recipient was removed, false if the ID was not in use
+     */
+    public boolean removeRecipientByID(int id) {
+        return write(g -> g.removeRecipientByID(id));
+    }
+
+    /**
+     * It links a recipient with a willing donor for paired donation.
+     *
+     * @param recipientID the recipient's ID
+     * @param donorID the donor's ID
+     * @return true if both patients exist and were linked, otherwise false
+     */
+    public boolean linkPair(int recipientID, int donorID) {
+        return write(g -> g.linkPair(recipientID, donorID));
+    }
+
+    /**
+     * It removes the paired-donation link of a recipient.
+     *
+     * @param recipientID the recipient's ID
+     * @return true if the recipient had a linked donor, otherwise false
+     */
+    public boolean unlinkPair(int recipientID) {
+        return write(g -> g.unlinkPair(recipientID));
+    }
+
+    /**
+     * It renumbers donors and recipients densely.
+     */
+    public void compact() {
+        write(g -> {
+            g.compact();
+            return null;
+        });
+    }
+
+    /**
+     * It checks if a donor is compatible with a recipient without taking a lock.
+     * IDs another thread has just removed, or compacted away, are not connected.
+     *
+     * @param donorID the donor’s ID
+     * @param recipientID the recipient’s ID
+     * @return true if compatible, otherwise false
+     */
+    public boolean isConnected(int donorID, int recipientID) {
+        return readInt(g -> g.hasDonor(donorID) && g.hasRecipient(recipientID)
+                && g.isConnected(donorID, recipientID) ? 1 : 0) != 0;
+    }
+
+    /**
+     * It returns the number of connections of a patient without taking a lock.
+     *
+     * @param p the Patient whose connections are counted
+     * @return the number of connections
+     */
+    public int getNumConnections(Patient p) {
+        return readInt(g -> g.getNumConnections(p));
+    }
+
+    /**
+     * An accessor which gets the number of current donors without taking a lock.
+     *
+     * @return the donor count
+     */
+    public int getNumDonors() {
+        return readInt(TransplantGraph::getNumDonors);
+    }
+
+    /**
+     * An accessor which gets the number of current recipients without taking a lock.
+     *
+     * @return the recipient count
+     */
+    public int getNumRecipients() {
+        return readInt(TransplantGraph::getNumRecipients);
+    }
+
+    /**
+     * An accessor which gets a standalone copy of the donor with the given ID,
+     * taken under the read lock, since a view would read the graph unlocked.
+     *
+     * @param id the donor ID
+     * @return the donor, or null if the ID is not in use
+     */
+    public Patient getDonor(int id) {
+        return read(g -> g.hasDonor(id) ? g.getDonor(id).copy() : null);
+    }
+
+    /**
+     * An accessor which gets a standalone copy of the recipient with the given
+     * ID, taken under the read lock.
+     *
+     * @param id the recipient ID
+     * @return the recipient, or null if the ID is not in use
+     */
+    public Patient getRecipient(int id) {
+        return read(g -> g.hasRecipient(id) ? g.getRecipient(id).copy() : null);
+    }
+
+    /**
+     * An accessor which gets standalone copies of the donor patients in ID order,
+     * taken under the read lock.
+     *
+     * @return a new list of the current donors
+     */
+    public List<Patient> getDonors() {
+        return read(g -> copies(g.getDonors()));
+    }
+
+    /**
+     * An accessor which gets standalone copies of the recipient patients in ID
+     * order, taken under the read lock.
+     *
+     * @return a new list of the current recipients
+     */
+    public List<Patient> getRecipients() {
+        return read(g -> copies(g.getRecipients()));
+    }
+
+    /**
+     * An accessor which gets standalone copies of the donor patients in the given
+     * order, ties broken by ID, taken under the read lock.
+     *
+     * @param key the order
+     * @return a new list of the current donors
+     */
+    public List<Patient> getDonorsSortedBy(SortKey key) {
+        return read(g -> copies(g.getDonorsSortedBy(key)));
+    }
+
+    /**
+     * An accessor which gets standalone copies of the recipient patients in the
+     * given order, ties broken by ID, taken under the read lock.
+     *
+     * @param key the order
+     * @return a new list of the current recipients
+     */
+    public List<Patient> getRecipientsSortedBy(SortKey key) {
+        return read(g -> copies(g.getRecipientsSortedBy(key)));
+    }
+
+    /**
+     * It finds standalone copies of the donors matching a query, under the read lock.
+     *
+     * @param query the query
+     * @return a new list of the matching donors in ID order
+     */
+    public List<Patient> findDonors(PatientQuery query) {
+        return read(g -> copies(g.findDonors(query)));
+    }
+
+    /**
+     * It finds standalone copies of the recipients matching a query, under the
+     * read lock.
+     *
+     * @param query the query
+     * @return a new list of the matching recipients in ID order
+     */
+    public List<Patient> findRecipients(PatientQuery query) {
+        return read(g -> copies(g.findRecipients(query)));
+    }
+
+    /**
+     * It counts the donors matching a query under the read lock.
+     *
+     * @param query the query
+     * @return the number of matching donors
+     */
+    public int countDonors(PatientQuery query) {
+        return read(g -> g.countDonors(query));
+    }
+
+    /**
+     * It counts the recipients matching a query under the read lock.
+     *
+     * @param query the query
+     * @return the number of matching recipients
+     */
+    public int countRecipients(PatientQuery query) {
+        return read(g -> g.countRecipients(query));
+    }
+
+    /**
+     * It runs a query that needs a consistent view of the whole graph, such as
+     * computing a matching, under the read lock. The query must not modify the
+     * graph or keep a reference to it.
+     *
+     * @param query the query to run
+     * @param <T> the type of the result
+     * @return the query's result
+     */
+    public <T> T read(Function<TransplantGraph, T> query) {
+        long stamp = readLock();
+        try {
+            return query.apply(graph);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * It runs a change that needs several steps, such as a search followed by a
+     * removal, under the write lock, then waits for the log if one is attached.
+     *
+     * @param change the change to run
+     * @param <T> the type of the result
+     * @return the change's result
+     */
+    public <T> T write(Function<TransplantGraph, T> change) {
+        T result;
+        WriteAheadLog current;
+        long stamp = writeLock();
+        try {
+            result = change.apply(graph);
+            current = log;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (current != null) {
+            try {
+                current.sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * It takes the write lock, holding the turnstile while it waits so that no new
+     * reader gets in ahead of it.
+     *
+     * @return the write stamp
+     */
+    private long writeLock() {
+        turnstile.lock();
+        try {
+            return lock.writeLock();
+        } finally {
+            turnstile.unlock();
+        }
+    }
+
+    /**
+     * It takes the read lock once no writer is waiting at the turnstile.
+     *
+     * @return the read stamp
+     */
+    private long readLock() {
+        turnstile.lock();
+        turnstile.unlock();
+        return lock.readLock();
+    }
+
+    /**
+     * It copies views into standalone patients.
+     *
+     * @param views the views
+     * @return a new list of copies in the same order
+     */
+    private static List<Patient> copies(List<Patient> views) {
+        List<Patient> copies = new ArrayList<>(views.size());
+        for (Patient p : views)
+            copies.add(p.copy());
+        return copies;
+    }
+
+    /**
+     * It runs a cheap int-valued read optimistically, falling back to the read
+     * lock if a change overlapped it.
+     *
+     * @param query the query to run
+     * @return the query's result
+     */
+    private int readInt(ToIntFunction<TransplantGraph> query) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int value = query.applyAsInt(graph);
+                if (lock.validate(stamp))
+                    return value;
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp))
+                    throw e;
+            }
+        }
+        stamp = readLock();
+        try {
+            return query.applyAsInt(graph);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
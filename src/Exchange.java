@@ -0,0 +1,101 @@
+import java.util.Arrays;
+
+/**
+ * This class holds one kidney paired-exchange proposal: either a cycle, where each
+ * pair's willing donor gives to the next pair's recipient and the last gives back
+ * to the first, or a chain started by an unpaired donor, whose last pair's donor is
+ * left as a bridge donor for a later chain.
+ */
+public class Exchange {
+    private final int[] donorIDs;
+    private final int[] recipientIDs;
+    private final int bridgeDonorID;
+    private final long score;
+
+    /**
+     * Constructs an Exchange from its transplants, where donorIDs[k] gives to
+     * recipientIDs[k].
+     *
+     * @param donorIDs the donor of each transplant
+     * @param recipientIDs the recipient of each transplant
+     * @param bridgeDonorID the bridge donor ending a chain, or -1 for a cycle
+     * @param score the total score of the transplants
+     */
+    public Exchange(int[] donorIDs, int[] recipientIDs, int bridgeDonorID, long score) {
+        this.donorIDs = donorIDs;
+        this.recipientIDs = recipientIDs;
+        this.bridgeDonorID = bridgeDonorID;
+        this.score = score;
+    }
+
+    /**
+     * It checks whether the exchange is a chain rather than a cycle.
+     *
+     * @return true if it is a chain, false if it is a cycle
+     */
+    public boolean isChain() {
+        return bridgeDonorID >= 0;
+    }
+
+    /**
+     * An accessor which gets the number of transplants in the exchange.
+     *
+     * @return the number of transplants
+     */
+    public int size() {
+        return donorIDs.length;
+    }
+
+    /**
+     * An accessor which gets the donor of a transplant.
+     *
+     * @param k the transplant index
+     * @return the donor ID
+     */
+    public int getDonorID(int k) {
+        return donorIDs[k];
+    }
+
+    /**
+     * An accessor which gets the recipient of a transplant.
+     *
+     * @param k the transplant index
+     * @return the recipient ID
+     */
+    public int getRecipientID(int k) {
+        return recipientIDs[k];
+    }
+
+    /**
+     * An accessor which gets the donor left over at the end of a chain.
+     *
+     * @return the bridge donor ID, or -1 for a cycle
+     */
+    public int getBridgeDonorID() {
+        return bridgeDonorID;
+    }
+
+    /**
+     * An accessor which gets the total score of the exchange's transplants.
+     *
+     * @return the score
+     */
+    public long getScore() {
+        return score;
+    }
+
+    /**
+     * It gets every donor the exchange involves, including a chain's bridge donor.
+     * Two exchanges conflict exactly when these sets intersect, since each pair is
+     * identified by its donor.
+     *
+     * @return the donor IDs, without duplicates
+     */
+    public int[] getInvolvedDonorIDs() {
+        if (bridgeDonorID < 0)
+            return donorIDs.clone();
+        int[] involved = Arrays.copyOf(donorIDs, donorIDs.length + 1);
+        involved[donorIDs.length] = bridgeDonorID;
+        return involved;
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * This interface lets an object follow structural changes to a TransplantGraph, so
+ * derived state such as a matching can be repaired per event instead of being
+ * recomputed. Each callback but changing runs after the graph has been updated,
+ * and every listener is called even if an earlier one throws.
+ */
+public interface GraphListener {
+
+    /**
+     * It is called before every structural change, while the graph is still as it
+     * was. A listener may refuse the change by throwing, in which case the graph is
+     * left unchanged and no listener hears of it.
+     */
+    void changing();
+
+    /**
+     * It is called after a donor is added and connected.
+     *
+     * @param donorID the new donor's ID
+     */
+    void donorAdded(int donorID);
+
+    /**
+     * It is called after a recipient is added and connected.
+     *
+     * @param recipientID the new recipient's ID
+     */
+    void recipientAdded(int recipientID);
+
+    /**
+     * It is called after a donor is removed and its connections cleared.
+     *
+     * @param donorID the removed donor's ID
+     * @param donor a standalone copy of the donor as it was before removal
+     */
+    void donorRemoved(int donorID, Patient donor);
+
+    /**
+     * It is called after a recipient is removed and its connections cleared.
+     *
+     * @param recipientID the removed recipient's ID
+     * @param recipient a standalone copy of the recipient as it was before removal
+     */
+    void recipientRemoved(int recipientID, Patient recipient);
+
+    /**
+     * It is called after a recipient is linked with a willing donor for paired
+     * donation, or unlinked.
+     *
+     * @param recipientID the recipient's ID
+     * @param donorID the linked donor's ID, or -1 if the link was removed
+     */
+    void pairLinked(int recipientID, int donorID);
+
+    /**
+     * It is called after a bulk change, such as compaction or a batch load, in
+     * place of per-patient events. IDs may have changed, so derived state should
+     * be recomputed.
+     */
+    void graphRebuilt();
+}
@@ -0,0 +1,479 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * This class saves and loads a TransplantGraph in a versioned binary snapshot
+ * format. The file starts with a header holding a magic number, the format version,
+ * the sequence number of the last WriteAheadLog record the snapshot includes, and a
+ * directory of sections, each with its offset, length and CRC32C checksum:
+ *
+ * <ol>
+ * <li>organs: the names of the organ codes used in the file;</li>
+ * <li>donors and recipients: per side, the slot count and free IDs followed by one
+ * column per field (age, organ code, urgency, waiting days, paired patient, name
+ * offsets, blood type code and the UTF-8 name bytes);</li>
+ * <li>adjacency: every donor row bit-packed at a fixed number of words per row.</li>
+ * </ol>
+ *
+ * <p>Sections are 8-byte aligned and little-endian, and each one can be located and
+ * verified on its own. Loading memory-maps each section and copies its columns with
+ * bulk reads, so no per-object deserialization takes place. Saving writes a
+ * temporary file through a FileChannel and moves it over the old snapshot, so a
+ * failed save never leaves a truncated file behind.</p>
+ */
+public final class GraphSnapshot {
+    public static final int MAGIC = 0x53475854;
+    public static final int VERSION = 2;
+    private static final int NUM_SECTIONS = 4;
+    private static final int ORGANS = 0;
+    private static final int DONORS = 1;
+    private static final int RECIPIENTS = 2;
+    private static final int ADJACENCY = 3;
+    private static final int HEADER_SIZE = 24 + NUM_SECTIONS * 24;
+    private static final int V1_HEADER_SIZE = 16 + NUM_SECTIONS * 24;
+    private static final int MAX_WINDOW = 1 << 30;
+    private static final byte TOMBSTONE = -1;
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * It writes a snapshot of the graph to a file, replacing any existing one.
+     *
+     * @param graph the TransplantGraph to save
+     * @param file the path of the snapshot file
+     * @throws IOException if an I/O error occurs
+     */
+    public static void save(TransplantGraph graph, String file) throws IOException {
+        save(graph, file, 0);
+    }
+
+    /**
+     * It writes a snapshot of the graph to a file, replacing any existing one, and
+     * records the last log sequence number it includes.
+     *
+     * @param graph the TransplantGraph to save
+     * @param file the path of the snapshot file
+     * @param sequence the sequence number of the last logged change in the graph
+     * @throws IOException if an I/O error occurs
+     */
+    public static void save(TransplantGraph graph, String file, long sequence) throws IOException {
+        long start = OperationMetrics.start();
+        Path target = Paths.get(file);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long[] offsets = new long[NUM_SECTIONS];
+        long[] lengths = new long[NUM_SECTIONS];
+        int[] checksums = new int[NUM_SECTIONS];
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = HEADER_SIZE;
+            ByteBuffer[] sections = {
+                    organSection(),
+                    patientSection(graph, true),
+                    patientSection(graph, false)
+            };
+            for (int k = 0; k < sections.length; k++) {
+                offsets[k] = position;
+                lengths[k] = sections[k].remaining();
+                checksums[k] = checksum(sections[k]);
+                position += write(channel, sections[k], position);
+                position = align(position);
+            }
+            offsets[ADJACENCY] = position;
+            lengths[ADJACENCY] = writeAdjacency(graph, channel, position, checksums);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(NUM_SECTIONS).putInt(0).putLong(sequence);
+            for (int k = 0; k < NUM_SECTIONS; k++)
+                header.putLong(offsets[k]).putLong(lengths[k]).putInt(checksums[k]).putInt(0);
+            header.flip();
+            write(channel, header, 0);
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        OperationMetrics.record(Operation.SNAPSHOT_SAVE, start);
+    }
+
+    /**
+     * It loads a TransplantGraph from a snapshot file, verifying every section.
+     *
+     * @param file the path of the snapshot file
+     * @return the restored TransplantGraph
+     * @throws IOException if an I/O error occurs, or the file is not a valid
+     *                     snapshot of a supported version
+     */
+    public static TransplantGraph load(String file) throws IOException {
+        long start = OperationMetrics.start();
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel, file);
+            long[] offsets = new long[NUM_SECTIONS];
+            long[] lengths = new long[NUM_SECTIONS];
+            int[] checksums = new int[NUM_SECTIONS];
+            for (int k = 0; k < NUM_SECTIONS; k++) {
+                offsets[k] = header.getLong();
+                lengths[k] = header.getLong();
+                checksums[k] = header.getInt();
+                header.getInt();
+                if (offsets[k] < header.limit() || lengths[k] < 0 || offsets[k] + lengths[k] > channel.size())
+                    throw new IOException("Section " + k + " of " + file + " lies outside the file");
+            }
+
+            int[] organs = readOrgans(map(channel, offsets, lengths, checksums, ORGANS));
+            IntStack links = new IntStack();
+            List<Patient> donors = new ArrayList<>();
+            int[] freeDonors = readPatients(map(channel, offsets, lengths, checksums, DONORS), organs, true,
+                    donors, links);
+            List<Patient> recipients = new ArrayList<>();
+            int[] freeRecipients = readPatients(map(channel, offsets, lengths, checksums, RECIPIENTS), organs, false,
+                    recipients, links);
+            long[][] rows = readAdjacency(channel, offsets[ADJACENCY], lengths[ADJACENCY], checksums[ADJACENCY], donors);
+
+            TransplantGraph graph = TransplantGraph.restore(donors, recipients, freeDonors, freeRecipients, rows);
+            while (!links.isEmpty()) {
+                int donorID = links.pop();
+                graph.linkPair(links.pop(), donorID);
+            }
+            OperationMetrics.record(Operation.SNAPSHOT_LOAD, start);
+            return graph;
+        }
+    }
+
+    /**
+     * It reads the sequence number of the last logged change a snapshot includes.
+     *
+     * @param file the path of the snapshot file
+     * @return the sequence number, zero for snapshots written without a log
+     * @throws IOException if an I/O error occurs or the file is not a valid snapshot
+     */
+    public static long readSequence(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel, file);
+            return header.limit() == HEADER_SIZE ? header.getLong(16) : 0;
+        }
+    }
+
+    /**
+     * It reads and checks the header of a snapshot, leaving the buffer positioned
+     * at the section directory. Version 1 headers, which have no sequence number,
+     * are accepted too.
+     *
+     * @param channel the channel to read from
+     * @param file the file name for error messages
+     * @return the header, limited to its size for the file's version
+     * @throws IOException if an I/O error occurs or the header is invalid
+     */
+    private static ByteBuffer readHeader(FileChannel channel, String file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // keep reading until the header is complete or the file ends
+        }
+        header.flip();
+        if (header.remaining() < V1_HEADER_SIZE || header.getInt() != MAGIC)
+            throw new IOException(file + " is not a transplant graph snapshot");
+        int version = header.getInt();
+        if (version != 1 && version != VERSION)
+            throw new IOException("Unsupported snapshot version " + version + " in " + file);
+        int size = version == 1 ? V1_HEADER_SIZE : HEADER_SIZE;
+        if (header.limit() < size)
+            throw new IOException(file + " is not a transplant graph snapshot");
+        if (header.getInt() != NUM_SECTIONS)
+            throw new IOException("Unexpected section count in " + file);
+        header.limit(size).position(size - NUM_SECTIONS * 24);
+        return header;
+    }
+
+    /**
+     * It encodes every organ name in the OrganDictionary, indexed by code.
+     *
+     * @return the organs section, ready to write
+     */
+    private static ByteBuffer organSection() {
+        int count = OrganDictionary.size();
+        byte[][] names = new byte[count][];
+        int size = 4;
+        for (int code = 0; code < count; code++) {
+            names[code] = OrganDictionary.name(code).getBytes(StandardCharsets.UTF_8);
+            size += 4 + names[code].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(count);
+        for (byte[] name : names)
+            buffer.putInt(name.length).put(name);
+        return buffer.flip();
+    }
+
+    /**
+     * It encodes one side's patient slots as columns.
+     *
+     * @param graph the TransplantGraph to save
+     * @param isDonor true for the donors, false for the recipients
+     * @return the patients section, ready to write
+     */
+    private static ByteBuffer patientSection(TransplantGraph graph, boolean isDonor) {
+        PatientStore store = isDonor ? graph.getDonorStore() : graph.getRecipientStore();
+        int slots = store.getSlots();
+        int[] free = isDonor ? graph.getFreeDonorIDs() : graph.getFreeRecipientIDs();
+        byte[][] names = new byte[slots][];
+        int nameBytes = 0;
+        for (int id = 0; id < slots; id++) {
+            names[id] = store.isLive(id) ? store.getName(id).getBytes(StandardCharsets.UTF_8) : new byte[0];
+            nameBytes += names[id].length;
+        }
+        int size = 8 + 4 * free.length + 4 * 5 * slots + 4 * (slots + 1) + slots + nameBytes;
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(slots).putInt(free.length);
+        for (int id : free)
+            buffer.putInt(id);
+        for (int field = 0; field < 5; field++) {
+            for (int id = 0; id < slots; id++) {
+                buffer.putInt(!store.isLive(id) ? 0 : switch (field) {
+                    case 0 -> store.getAge(id);
+                    case 1 -> store.getOrganCode(id);
+                    case 2 -> store.getUrgency(id);
+                    case 3 -> store.getWaitingDays(id);
+                    default -> store.getPair(id);
+                });
+            }
+        }
+        int offset = 0;
+        for (int id = 0; id < slots; id++) {
+            buffer.putInt(offset);
+            offset += names[id].length;
+        }
+        buffer.putInt(offset);
+        for (int id = 0; id < slots; id++)
+            buffer.put(store.isLive(id) ? store.getBloodCode(id) : TOMBSTONE);
+        for (byte[] name : names)
+            buffer.put(name);
+        return buffer.flip();
+    }
+
+    /**
+     * It writes every donor row at a fixed number of words per row, streaming
+     * through a reusable buffer.
+     *
+     * @param graph the TransplantGraph to save
+     * @param channel the channel to write to
+     * @param position the file position of the section
+     * @param checksums the section checksums, whose adjacency entry is set
+     * @return the length of the section
+     * @throws IOException if an I/O error occurs
+     */
+    private static long writeAdjacency(TransplantGraph graph, FileChannel channel, long position, int[] checksums)
+            throws IOException {
+        int numRows = graph.getDonorSlots();
+        int width = Bits.wordsFor(graph.getRecipientSlots());
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(12, Math.min(1 << 22, 8 * width))).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32C crc = new CRC32C();
+        long start = position;
+        buffer.putInt(numRows).putInt(graph.getRecipientSlots()).putInt(width);
+        for (int i = 0; i < numRows; i++) {
+            long[] row = !graph.hasDonor(i) ? new long[0] : graph.getConnectionRow(i);
+            for (int w = 0; w < width; w++) {
+                if (buffer.remaining() < 8)
+                    position += flush(channel, buffer, position, crc);
+                buffer.putLong(w < row.length ? row[w] : 0L);
+            }
+        }
+        position += flush(channel, buffer, position, crc);
+        checksums[ADJACENCY] = (int) crc.getValue();
+        return position - start;
+    }
+
+    /**
+     * It decodes the organs section into current OrganDictionary codes.
+     *
+     * @param buffer the organs section
+     * @return the current code of each organ code saved in the file
+     */
+    private static int[] readOrgans(ByteBuffer buffer) {
+        int[] codes = new int[buffer.getInt()];
+        for (int k = 0; k < codes.length; k++) {
+            byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            codes[k] = OrganDictionary.encode(new String(name, StandardCharsets.UTF_8));
+        }
+        return codes;
+    }
+
+    /**
+     * It decodes one side's patients section. Paired-donation links are collected
+     * from the recipients side, to be restored once both sides exist.
+     *
+     * @param buffer the patients section
+     * @param organs the current code of each saved organ code
+     * @param isDonor true for the donors, false for the recipients
+     * @param slots the list to add each slot to, with null for tombstones
+     * @param links the stack to push each linked recipient ID and donor ID onto
+     * @return the free IDs in push order
+     * @throws IOException if the section is inconsistent
+     */
+    private static int[] readPatients(ByteBuffer buffer, int[] organs, boolean isDonor, List<Patient> slots,
+                                      IntStack links) throws IOException {
+        int numSlots = buffer.getInt();
+        int[] free = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(free);
+        buffer.position(buffer.position() + 4 * free.length);
+        int[][] columns = new int[6][];
+        for (int field = 0; field < columns.length; field++) {
+            columns[field] = new int[field == 5 ? numSlots + 1 : numSlots];
+            buffer.asIntBuffer().get(columns[field]);
+            buffer.position(buffer.position() + 4 * columns[field].length);
+        }
+        byte[] blood = new byte[numSlots];
+        buffer.get(blood);
+        byte[] names = new byte[columns[5][numSlots]];
+        buffer.get(names);
+        for (int id = 0; id < numSlots; id++) {
+            if (blood[id] == TOMBSTONE) {
+                slots.add(null);
+                continue;
+            }
+            if (columns[1][id] < 0 || columns[1][id] >= organs.length)
+                throw new IOException("Invalid organ code for patient " + id);
+            String name = new String(names, columns[5][id], columns[5][id + 1] - columns[5][id], StandardCharsets.UTF_8);
+            Patient p = new Patient(id, name, columns[0][id], organs[columns[1][id]], BloodType.fromCode(blood[id]), isDonor);
+            p.setUrgency(columns[2][id]);
+            p.setWaitingDays(columns[3][id]);
+            if (!isDonor && columns[4][id] >= 0) {
+                links.push(id);
+                links.push(columns[4][id]);
+            }
+            slots.add(p);
+        }
+        return free;
+    }
+
+    /**
+     * It reads the donor rows of the adjacency section, mapping it in windows so
+     * that sections larger than one mapping are supported.
+     *
+     * @param channel the channel to read from
+     * @param offset the file position of the section
+     * @param length the length of the section
+     * @param checksum the expected checksum of the section
+     * @param donors the donor slots, whose tombstones get no row
+     * @return the row words of each donor, or null for tombstones
+     * @throws IOException if an I/O error occurs or the section is corrupt
+     */
+    private static long[][] readAdjacency(FileChannel channel, long offset, long length, int checksum,
+                                          List<Patient> donors) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, offset, 12).order(ByteOrder.LITTLE_ENDIAN);
+        crc.update(head.duplicate());
+        int numRows = head.getInt();
+        head.getInt();
+        int width = head.getInt();
+        if (numRows != donors.size() || 12 + 8L * numRows * width != length)
+            throw new IOException("Adjacency section does not match the donors");
+        long[][] rows = new long[numRows][];
+        int rowsPerWindow = Math.max(1, MAX_WINDOW / Math.max(1, 8 * width));
+        for (int first = 0; first < numRows; first += rowsPerWindow) {
+            int count = Math.min(rowsPerWindow, numRows - first);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                    offset + 12 + 8L * first * width, 8L * count * width);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            crc.update(window.duplicate());
+            for (int i = first; i < first + count; i++) {
+                if (donors.get(i) != null) {
+                    rows[i] = new long[width];
+                    window.asLongBuffer().get(rows[i]);
+                }
+                window.position(window.position() + 8 * width);
+            }
+        }
+        if ((int) crc.getValue() != checksum)
+            throw new IOException("Snapshot section " + ADJACENCY + " is corrupt");
+        return rows;
+    }
+
+    /**
+     * It memory-maps a section and verifies its checksum.
+     *
+     * @param channel the channel to read from
+     * @param offsets the offset of each section
+     * @param lengths the length of each section
+     * @param checksums the expected checksum of each section
+     * @param section the section to map
+     * @return the section, positioned at its start
+     * @throws IOException if an I/O error occurs or the section is corrupt
+     */
+    private static ByteBuffer map(FileChannel channel, long[] offsets, long[] lengths, int[] checksums, int section)
+            throws IOException {
+        if (lengths[section] > Integer.MAX_VALUE)
+            throw new IOException("Snapshot section " + section + " is too large");
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offsets[section], lengths[section])
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (checksum(buffer) != checksums[section])
+            throw new IOException("Snapshot section " + section + " is corrupt");
+        return buffer;
+    }
+
+    /**
+     * It computes the CRC32C of a buffer's remaining bytes without moving it.
+     *
+     * @param buffer the buffer to checksum
+     * @return the checksum
+     */
+    private static int checksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * It writes the contents of a buffer, adds them to a checksum and clears it.
+     *
+     * @param channel the channel to write to
+     * @param buffer the buffer to flush
+     * @param position the file position to write at
+     * @param crc the running checksum
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    private static int flush(FileChannel channel, ByteBuffer buffer, long position, CRC32C crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        int written = write(channel, buffer, position);
+        buffer.clear();
+        return written;
+    }
+
+    /**
+     * It writes a whole buffer at the given file position.
+     *
+     * @param channel the channel to write to
+     * @param buffer the buffer to write
+     * @param position the file position to write at
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    private static int write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        return length;
+    }
+
+    /**
+     * It rounds a file position up to the next multiple of eight.
+     *
+     * @param position the position
+     * @return the aligned position
+     */
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+}
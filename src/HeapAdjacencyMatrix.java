@@ -0,0 +1,355 @@
+import java.util.Arrays;
+
+/**
+ * This class stores donor-recipient compatibility on the Java heap as packed bit
+ * rows, one array of long words per donor plus a transposed column per recipient.
+ * Both sides grow on demand, so there is no fixed cap on the number of patients.
+ * The number of set bits in each row and column is maintained as edges change.
+ */
+public class HeapAdjacencyMatrix implements AdjacencyMatrix {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long[] EMPTY = new long[0];
+    private long[][] rows;
+    private long[][] cols;
+    private int[] rowDegrees;
+    private int[] colDegrees;
+    private int numRows;
+    private int numCols;
+
+    /**
+     * Default constructor which initializes an empty matrix.
+     */
+    public HeapAdjacencyMatrix() {
+        rows = new long[INITIAL_CAPACITY][];
+        cols = new long[INITIAL_CAPACITY][];
+        rowDegrees = new int[INITIAL_CAPACITY];
+        colDegrees = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Constructs an empty matrix with the given number of rows and columns, for
+     * bulk builds that fill it with orRow and orColumn.
+     *
+     * @param numRows the number of donor rows
+     * @param numCols the number of recipient columns
+     */
+    public HeapAdjacencyMatrix(int numRows, int numCols) {
+        init(numRows, numCols);
+    }
+
+    /**
+     * It appends an empty donor row.
+     *
+     * @return the index of the new row
+     */
+    @Override
+    public int addRow() {
+        if (numRows == rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2);
+            rowDegrees = Arrays.copyOf(rowDegrees, rows.length);
+        }
+        rows[numRows] = EMPTY;
+        return numRows++;
+    }
+
+    /**
+     * It appends an empty recipient column.
+     *
+     * @return the index of the new column
+     */
+    @Override
+    public int addColumn() {
+        if (numCols == cols.length) {
+            cols = Arrays.copyOf(cols, cols.length * 2);
+            colDegrees = Arrays.copyOf(colDegrees, cols.length);
+        }
+        cols[numCols] = EMPTY;
+        return numCols++;
+    }
+
+    /**
+     * It empties the matrix and resizes it to the given number of rows and
+     * columns, for bulk builds that then fill it with orRow and orColumn.
+     *
+     * @param numRows the number of donor rows
+     * @param numCols the number of recipient columns
+     */
+    @Override
+    public void reset(int numRows, int numCols) {
+        init(numRows, numCols);
+    }
+
+    /**
+     * It clears every connection of the given donor row.
+     *
+     * @param donor the row to clear
+     */
+    @Override
+    public void clearRow(int donor) {
+        for (int j = nextInRow(donor, 0); j >= 0; j = nextInRow(donor, j + 1)) {
+            Bits.clear(cols[j], donor);
+            colDegrees[j]--;
+        }
+        rows[donor] = EMPTY;
+        rowDegrees[donor] = 0;
+    }
+
+    /**
+     * It clears every connection of the given recipient column.
+     *
+     * @param recipient the column to clear
+     */
+    @Override
+    public void clearColumn(int recipient) {
+        for (int i = nextInColumn(recipient, 0); i >= 0; i = nextInColumn(recipient, i + 1)) {
+            Bits.clear(rows[i], recipient);
+            rowDegrees[i]--;
+        }
+        cols[recipient] = EMPTY;
+        colDegrees[recipient] = 0;
+    }
+
+    /**
+     * An accessor which gets the number of donor rows.
+     *
+     * @return the number of rows
+     */
+    @Override
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * An accessor which gets the number of recipient columns.
+     *
+     * @return the number of columns
+     */
+    @Override
+    public int getNumColumns() {
+        return numCols;
+    }
+
+    /**
+     * It marks the donor and recipient as compatible.
+     *
+     * @param donor the donor row
+     * @param recipient the recipient column
+     */
+    @Override
+    public void set(int donor, int recipient) {
+        if (get(donor, recipient))
+            return;
+        rowDegrees[donor]++;
+        colDegrees[recipient]++;
+        rows[donor] = Bits.set(rows[donor], recipient);
+        cols[recipient] = Bits.set(cols[recipient], donor);
+    }
+
+    /**
+     * It marks the donor as compatible with every recipient in the given set.
+     *
+     * @param donor the donor row
+     * @param recipients the bitset of recipient columns
+     */
+    @Override
+    public void connectRow(int donor, long[] recipients) {
+        long[] row = rows[donor];
+        if (row.length < recipients.length)
+            rows[donor] = row = Arrays.copyOf(row, recipients.length);
+        for (int w = 0; w < recipients.length; w++) {
+            long added = recipients[w] & ~row[w];
+            row[w] |= added;
+            rowDegrees[donor] += Long.bitCount(added);
+            for (; added != 0; added &= added - 1) {
+                int j = (w << 6) + Long.numberOfTrailingZeros(added);
+                cols[j] = Bits.set(cols[j], donor);
+                colDegrees[j]++;
+            }
+        }
+    }
+
+    /**
+     * It marks the recipient as compatible with every donor in the given set.
+     *
+     * @param recipient the recipient column
+     * @param donors the bitset of donor rows
+     */
+    @Override
+    public void connectColumn(int recipient, long[] donors) {
+        long[] col = cols[recipient];
+        if (col.length < donors.length)
+            cols[recipient] = col = Arrays.copyOf(col, donors.length);
+        for (int w = 0; w < donors.length; w++) {
+            long added = donors[w] & ~col[w];
+            col[w] |= added;
+            colDegrees[recipient] += Long.bitCount(added);
+            for (; added != 0; added &= added - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(added);
+                rows[i] = Bits.set(rows[i], recipient);
+                rowDegrees[i]++;
+            }
+        }
+    }
+
+    /**
+     * It ORs a set of recipients into a donor row word by word, without touching
+     * the transposed columns. It is meant for bulk builds that also fill every
+     * column with orColumn; on its own it leaves the two views inconsistent.
+     *
+     * @param donor the row to fill
+     * @param recipients a bitset of recipient columns
+     */
+    @Override
+    public void orRow(int donor, long[] recipients) {
+        long[] row = rows[donor];
+        if (row.length < recipients.length)
+            rows[donor] = row = Arrays.copyOf(row, recipients.length);
+        for (int w = 0; w < recipients.length; w++) {
+            long added = recipients[w] & ~row[w];
+            row[w] |= added;
+            rowDegrees[donor] += Long.bitCount(added);
+        }
+    }
+
+    /**
+     * It ORs a set of donors into a recipient column word by word, without
+     * touching the rows. It is the counterpart of orRow for bulk builds.
+     *
+     * @param recipient the column to fill
+     * @param donors a bitset of donor rows
+     */
+    @Override
+    public void orColumn(int recipient, long[] donors) {
+        long[] col = cols[recipient];
+        if (col.length < donors.length)
+            cols[recipient] = col = Arrays.copyOf(col, donors.length);
+        for (int w = 0; w < donors.length; w++) {
+            long added = donors[w] & ~col[w];
+            col[w] |= added;
+            colDegrees[recipient] += Long.bitCount(added);
+        }
+    }
+
+    /**
+     * It marks the donor and recipient as incompatible.
+     *
+     * @param donor the donor row
+     * @param recipient the recipient column
+     */
+    @Override
+    public void clear(int donor, int recipient) {
+        if (!get(donor, recipient))
+            return;
+        rowDegrees[donor]--;
+        colDegrees[recipient]--;
+        Bits.clear(rows[donor], recipient);
+        Bits.clear(cols[recipient], donor);
+    }
+
+    /**
+     * It checks whether the donor and recipient are compatible.
+     *
+     * @param donor the donor row
+     * @param recipient the recipient column
+     * @return true if compatible, otherwise false
+     */
+    @Override
+    public boolean get(int donor, int recipient) {
+        return Bits.get(rows[donor], recipient);
+    }
+
+    /**
+     * It counts the recipients compatible with the given donor.
+     *
+     * @param donor the donor row
+     * @return the number of set bits in the row
+     */
+    @Override
+    public int rowCount(int donor) {
+        return rowDegrees[donor];
+    }
+
+    /**
+     * It counts the donors compatible with the given recipient.
+     *
+     * @param recipient the recipient column
+     * @return the number of set bits in the column
+     */
+    @Override
+    public int columnCount(int recipient) {
+        return colDegrees[recipient];
+    }
+
+    /**
+     * It copies the connection count of every donor row.
+     *
+     * @return the counts indexed by donor row
+     */
+    @Override
+    public int[] rowCounts() {
+        return Arrays.copyOf(rowDegrees, numRows);
+    }
+
+    /**
+     * It copies the connection count of every recipient column.
+     *
+     * @return the counts indexed by recipient column
+     */
+    @Override
+    public int[] columnCounts() {
+        return Arrays.copyOf(colDegrees, numCols);
+    }
+
+    /**
+     * It finds the next recipient compatible with the given donor.
+     *
+     * @param donor the donor row
+     * @param from the recipient index to start searching from
+     * @return the next compatible recipient, or -1 if there is none
+     */
+    @Override
+    public int nextInRow(int donor, int from) {
+        return Bits.nextSetBit(rows[donor], from);
+    }
+
+    /**
+     * An accessor which gets the packed words of a donor row, which may be shorter
+     * than the number of columns. The array is shared, so callers must not modify it.
+     *
+     * @param donor the donor row
+     * @return the row words
+     */
+    @Override
+    public long[] rowWords(int donor) {
+        return rows[donor];
+    }
+
+    /**
+     * It finds the next donor compatible with the given recipient.
+     *
+     * @param recipient the recipient column
+     * @param from the donor index to start searching from
+     * @return the next compatible donor, or -1 if there is none
+     */
+    @Override
+    public int nextInColumn(int recipient, int from) {
+        return Bits.nextSetBit(cols[recipient], from);
+    }
+
+    /**
+     * It allocates empty rows and columns.
+     *
+     * @param numRows the number of donor rows
+     * @param numCols the number of recipient columns
+     */
+    private void init(int numRows, int numCols) {
+        rows = new long[Math.max(INITIAL_CAPACITY, numRows)][];
+        cols = new long[Math.max(INITIAL_CAPACITY, numCols)][];
+        rowDegrees = new int[rows.length];
+        colDegrees = new int[cols.length];
+        Arrays.fill(rows, 0, numRows, EMPTY);
+        Arrays.fill(cols, 0, numCols, EMPTY);
+        this.numRows = numRows;
+        this.numCols = numCols;
+    }
+}
@@ -0,0 +1,344 @@
+import java.util.Arrays;
+
+/**
+ * This class stores one side of a TransplantGraph, donors or recipients, on the
+ * Java heap as parallel primitive arrays indexed by patient ID: age, organ code,
+ * blood type code, flags, urgency, waiting days and paired patient. Names live in
+ * a shared character arena, with each slot holding an offset and a length into
+ * it, and removed names are reclaimed when the arena is mostly garbage. Scans over
+ * the store touch contiguous memory instead of chasing a Patient object per slot.
+ */
+public class HeapPatientStore implements PatientStore {
+    private static final byte LIVE = 1;
+    private static final int INITIAL_CAPACITY = 16;
+    private final boolean isDonor;
+    private PatientStore partner;
+    private int slots;
+    private int count;
+    private byte[] flags;
+    private int[] ages;
+    private int[] organs;
+    private byte[] bloodCodes;
+    private int[] urgencies;
+    private int[] waitingDays;
+    private int[] pairs;
+    private int[] nameStarts;
+    private int[] nameLengths;
+    private char[] names;
+    private int namesEnd;
+    private int namesGarbage;
+
+    /**
+     * Constructs an empty PatientStore for one side of a graph.
+     *
+     * @param isDonor true if the store holds donors, false if recipients
+     */
+    public HeapPatientStore(boolean isDonor) {
+        this.isDonor = isDonor;
+        flags = new byte[INITIAL_CAPACITY];
+        ages = new int[INITIAL_CAPACITY];
+        organs = new int[INITIAL_CAPACITY];
+        bloodCodes = new byte[INITIAL_CAPACITY];
+        urgencies = new int[INITIAL_CAPACITY];
+        waitingDays = new int[INITIAL_CAPACITY];
+        pairs = new int[INITIAL_CAPACITY];
+        nameStarts = new int[INITIAL_CAPACITY];
+        nameLengths = new int[INITIAL_CAPACITY];
+        names = new char[INITIAL_CAPACITY * 16];
+    }
+
+    /**
+     * It copies a patient's attributes into a slot, growing the store if the slot
+     * lies beyond its end. The slot must not be occupied. The patient is not linked
+     * to any pair.
+     *
+     * @param id the slot, which becomes the patient's ID
+     * @param p the Patient whose attributes are copied
+     */
+    @Override
+    public void put(int id, Patient p) {
+        if (id >= flags.length)
+            grow(Math.max(id + 1, 2 * flags.length));
+        slots = Math.max(slots, id + 1);
+        flags[id] = LIVE;
+        ages[id] = p.getAge();
+        organs[id] = p.getOrganCode();
+        bloodCodes[id] = p.getBloodCode();
+        urgencies[id] = p.getUrgency();
+        waitingDays[id] = p.getWaitingDays();
+        pairs[id] = -1;
+        appendName(id, p.getName());
+        count++;
+    }
+
+    /**
+     * It grows the store to at least the given number of slots, the new ones
+     * empty, as when restoring a graph whose last slots are tombstones.
+     *
+     * @param slots the number of slots
+     */
+    @Override
+    public void extend(int slots) {
+        if (slots > flags.length)
+            grow(slots);
+        this.slots = Math.max(this.slots, slots);
+    }
+
+    /**
+     * It empties a slot, leaving a tombstone. The caller is responsible for first
+     * clearing any paired-donation link.
+     *
+     * @param id the slot to empty
+     * @return true if the slot was occupied, otherwise false
+     */
+    @Override
+    public boolean remove(int id) {
+        if (!isLive(id))
+            return false;
+        flags[id] = 0;
+        pairs[id] = -1;
+        namesGarbage += nameLengths[id];
+        nameLengths[id] = 0;
+        count--;
+        if (namesGarbage > INITIAL_CAPACITY * 64 && namesGarbage > namesEnd / 2)
+            compactNames();
+        return true;
+    }
+
+    /**
+     * It moves every patient down to a dense run of slots in ID order, dropping
+     * the tombstones and rewriting the name arena without garbage.
+     *
+     * @return the new ID of each old slot, or -1 for a tombstone
+     */
+    @Override
+    public int[] compact() {
+        int[] newIDs = new int[slots];
+        int next = 0;
+        for (int id = 0; id < slots; id++) {
+            if (!isLive(id)) {
+                newIDs[id] = -1;
+                continue;
+            }
+            newIDs[id] = next;
+            flags[next] = flags[id];
+            ages[next] = ages[id];
+            organs[next] = organs[id];
+            bloodCodes[next] = bloodCodes[id];
+            urgencies[next] = urgencies[id];
+            waitingDays[next] = waitingDays[id];
+            pairs[next] = pairs[id];
+            nameStarts[next] = nameStarts[id];
+            nameLengths[next] = nameLengths[id];
+            next++;
+        }
+        Arrays.fill(flags, next, slots, (byte) 0);
+        Arrays.fill(nameLengths, next, slots, 0);
+        slots = next;
+        compactNames();
+        return newIDs;
+    }
+
+    /**
+     * It checks if a slot holds a patient.
+     *
+     * @param id the slot
+     * @return true if the slot is in range and occupied, otherwise false
+     */
+    @Override
+    public boolean isLive(int id) {
+        return id >= 0 && id < slots && (flags[id] & LIVE) != 0;
+    }
+
+    /**
+     * An accessor which checks if the store holds donors.
+     *
+     * @return true if donors, false if recipients
+     */
+    @Override
+    public boolean isDonor() {
+        return isDonor;
+    }
+
+    /**
+     * An accessor which gets the store of the other side of the graph, which
+     * paired-donation links point into.
+     *
+     * @return the partner PatientStore
+     */
+    @Override
+    public PatientStore getPartner() {
+        return partner;
+    }
+
+    /**
+     * A mutator which sets the store of the other side of the graph.
+     *
+     * @param partner the partner PatientStore
+     */
+    @Override
+    public void setPartner(PatientStore partner) {
+        this.partner = partner;
+    }
+
+    /**
+     * An accessor which gets the number of slots, including empty ones. Every ID
+     * is below this bound.
+     *
+     * @return the number of slots
+     */
+    @Override
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * An accessor which gets the number of occupied slots.
+     *
+     * @return the number of patients
+     */
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * An accessor which gets the name of the patient in a slot. The name is copied
+     * out of the arena, so each call returns a new String.
+     *
+     * @param id the slot
+     * @return the name
+     */
+    @Override
+    public String getName(int id) {
+        return new String(names, nameStarts[id], nameLengths[id]);
+    }
+
+    /**
+     * An accessor which gets the age of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the age
+     */
+    @Override
+    public int getAge(int id) {
+        return ages[id];
+    }
+
+    /**
+     * An accessor which gets the OrganDictionary code of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the organ code
+     */
+    @Override
+    public int getOrganCode(int id) {
+        return organs[id];
+    }
+
+    /**
+     * An accessor which gets the blood type code of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the blood type code
+     */
+    @Override
+    public byte getBloodCode(int id) {
+        return bloodCodes[id];
+    }
+
+    /**
+     * An accessor which gets the urgency of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the urgency
+     */
+    @Override
+    public int getUrgency(int id) {
+        return urgencies[id];
+    }
+
+    /**
+     * An accessor which gets the waiting time of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the waiting time in days
+     */
+    @Override
+    public int getWaitingDays(int id) {
+        return waitingDays[id];
+    }
+
+    /**
+     * An accessor which gets the ID of the patient linked with the one in a slot,
+     * which lives in the partner store.
+     *
+     * @param id the slot
+     * @return the linked patient's ID, or -1 if there is none
+     */
+    @Override
+    public int getPair(int id) {
+        return pairs[id];
+    }
+
+    /**
+     * A mutator which sets the ID of the patient linked with the one in a slot.
+     * The caller is responsible for setting the other end of the link.
+     *
+     * @param id the slot
+     * @param pair the linked patient's ID in the partner store, or -1 for none
+     */
+    @Override
+    public void setPair(int id, int pair) {
+        pairs[id] = pair;
+    }
+
+    /**
+     * It copies a name to the end of the arena and points a slot at it.
+     *
+     * @param id the slot
+     * @param name the name
+     */
+    private void appendName(int id, String name) {
+        int length = name.length();
+        if (namesEnd + length > names.length)
+            names = Arrays.copyOf(names, Math.max(namesEnd + length, 2 * names.length));
+        name.getChars(0, length, names, namesEnd);
+        nameStarts[id] = namesEnd;
+        nameLengths[id] = length;
+        namesEnd += length;
+    }
+
+    /**
+     * It rewrites the arena with only the names of occupied slots, in slot order.
+     */
+    private void compactNames() {
+        char[] compacted = new char[Math.max(INITIAL_CAPACITY * 16, 2 * (namesEnd - namesGarbage))];
+        int end = 0;
+        for (int id = 0; id < slots; id++) {
+            System.arraycopy(names, nameStarts[id], compacted, end, nameLengths[id]);
+            nameStarts[id] = end;
+            end += nameLengths[id];
+        }
+        names = compacted;
+        namesEnd = end;
+        namesGarbage = 0;
+    }
+
+    /**
+     * It grows every column to the given capacity.
+     *
+     * @param capacity the new number of slots the columns can hold
+     */
+    private void grow(int capacity) {
+        flags = Arrays.copyOf(flags, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        organs = Arrays.copyOf(organs, capacity);
+        bloodCodes = Arrays.copyOf(bloodCodes, capacity);
+        urgencies = Arrays.copyOf(urgencies, capacity);
+        waitingDays = Arrays.copyOf(waitingDays, capacity);
+        pairs = Arrays.copyOf(pairs, capacity);
+        nameStarts = Arrays.copyOf(nameStarts, capacity);
+        nameLengths = Arrays.copyOf(nameLengths, capacity);
+    }
+}
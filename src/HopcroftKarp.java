@@ -0,0 +1,149 @@
+import java.util.Arrays;
+
+/**
+ * This class computes a maximum-cardinality donor-to-recipient matching over a
+ * TransplantGraph with the Hopcroft–Karp algorithm in O(E·√V). It walks the graph's
+ * bit rows directly and keeps all of its state in primitive arrays, and its
+ * depth-first search uses an explicit stack so long augmenting paths cannot
+ * overflow the call stack.
+ */
+public class HopcroftKarp {
+    private static final int INF = Integer.MAX_VALUE;
+    private final TransplantGraph graph;
+    private final int numDonors;
+    private final int[] recipientOfDonor;
+    private final int[] donorOfRecipient;
+    private final int[] dist;
+    private final int[] next;
+    private final int[] queue;
+    private final int[] stack;
+    private final int[] via;
+    private int limit;
+
+    /**
+     * Constructs a HopcroftKarp engine over the given graph.
+     *
+     * @param graph the TransplantGraph to match
+     */
+    public HopcroftKarp(TransplantGraph graph) {
+        this.graph = graph;
+        numDonors = graph.getDonorSlots();
+        recipientOfDonor = new int[numDonors];
+        donorOfRecipient = new int[graph.getRecipientSlots()];
+        dist = new int[numDonors];
+        next = new int[numDonors];
+        queue = new int[numDonors];
+        stack = new int[numDonors];
+        via = new int[numDonors];
+    }
+
+    /**
+     * It computes a maximum matching of the graph.
+     *
+     * @param graph the TransplantGraph to match
+     * @return the maximum matching
+     */
+    public static Matching match(TransplantGraph graph) {
+        return new HopcroftKarp(graph).run();
+    }
+
+    /**
+     * It runs greedy initialization followed by Hopcroft–Karp phases until no
+     * augmenting path remains.
+     *
+     * @return the maximum matching
+     */
+    public Matching run() {
+        Arrays.fill(recipientOfDonor, -1);
+        Arrays.fill(donorOfRecipient, -1);
+        for (int u = 0; u < numDonors; u++) {
+            for (int r = graph.nextCompatibleRecipient(u, 0); r >= 0; r = graph.nextCompatibleRecipient(u, r + 1)) {
+                if (donorOfRecipient[r] < 0) {
+                    recipientOfDonor[u] = r;
+                    donorOfRecipient[r] = u;
+                    break;
+                }
+            }
+        }
+        while (layer()) {
+            Arrays.fill(next, 0);
+            for (int u = 0; u < numDonors; u++) {
+                if (recipientOfDonor[u] < 0 && dist[u] == 0)
+                    augment(u);
+            }
+        }
+        return new Matching(graph, recipientOfDonor, donorOfRecipient);
+    }
+
+    /**
+     * It layers donors by breadth-first search from every free donor, stopping at
+     * the depth of the shortest augmenting path.
+     *
+     * @return true if an augmenting path exists, otherwise false
+     */
+    private boolean layer() {
+        int head = 0;
+        int tail = 0;
+        for (int u = 0; u < numDonors; u++) {
+            if (recipientOfDonor[u] < 0 && graph.hasDonor(u)) {
+                dist[u] = 0;
+                queue[tail++] = u;
+            } else {
+                dist[u] = INF;
+            }
+        }
+        limit = INF;
+        while (head < tail) {
+            int u = queue[head++];
+            if (dist[u] >= limit)
+                continue;
+            for (int r = graph.nextCompatibleRecipient(u, 0); r >= 0; r = graph.nextCompatibleRecipient(u, r + 1)) {
+                int w = donorOfRecipient[r];
+                if (w < 0) {
+                    limit = dist[u] + 1;
+                } else if (dist[w] == INF) {
+                    dist[w] = dist[u] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return limit != INF;
+    }
+
+    /**
+     * It searches the layered graph depth-first for an augmenting path from the
+     * given free donor and flips it if one is found. Donors that lead nowhere are
+     * removed from the layering so later searches in the phase skip them.
+     *
+     * @param root the free donor to start from
+     * @return true if the matching was augmented, otherwise false
+     */
+    private boolean augment(int root) {
+        int top = 0;
+        stack[0] = root;
+        while (top >= 0) {
+            int u = stack[top];
+            int r = graph.nextCompatibleRecipient(u, next[u]);
+            if (r < 0) {
+                dist[u] = INF;
+                top--;
+                continue;
+            }
+            next[u] = r + 1;
+            int w = donorOfRecipient[r];
+            if (w < 0) {
+                via[top] = r;
+                for (int k = top; k >= 0; k--) {
+                    recipientOfDonor[stack[k]] = via[k];
+                    donorOfRecipient[via[k]] = stack[k];
+                }
+                return true;
+            }
+            if (dist[w] == dist[u] + 1 && dist[w] < limit) {
+                via[top] = r;
+                stack[++top] = w;
+            }
+        }
+        return false;
+    }
+}
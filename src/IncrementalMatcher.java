@@ -0,0 +1,303 @@
+import java.util.Arrays;
+
+/**
+ * This class keeps a maximum-cardinality donor-to-recipient matching up to date as
+ * a TransplantGraph changes. It starts from a Hopcroft–Karp matching and, as a
+ * GraphListener, repairs it after each add or remove with one augmenting-path search
+ * from the affected patient only.
+ *
+ * <p>One search is enough: a new patient can only raise the maximum by one, and any
+ * augmenting path must end at that patient, since the old matching was maximum.
+ * Removing an unmatched patient keeps the matching maximum, and removing a matched
+ * one frees its partner, which is then the only possible end of an augmenting path.
+ * Bulk changes, such as compaction, are followed by a full Hopcroft–Karp rematch.
+ * The search is skipped outright when the other side has no free patient, and is
+ * otherwise breadth-first, following each matched edge at most once. Patients of
+ * the same organ and blood type share every connection, so only the first patient
+ * of each such class is expanded; a failed search therefore scans at most one row
+ * per class. Visited marks use a stamp that changes per search, so no per-search
+ * clearing is needed.</p>
+ */
+public class IncrementalMatcher implements GraphListener {
+    private static final int BLOOD_TYPES = BloodType.values().length;
+    private final TransplantGraph graph;
+    private int[] recipientOfDonor;
+    private int[] donorOfRecipient;
+    private int[] queue;
+    private int[] from;
+    private int[] seen;
+    private int[] reached;
+    private int[] expanded;
+    private int stamp;
+    private int size;
+
+    /**
+     * Constructs an IncrementalMatcher with a maximum matching of the graph.
+     *
+     * @param graph the TransplantGraph to match
+     */
+    private IncrementalMatcher(TransplantGraph graph) {
+        this.graph = graph;
+        queue = new int[0];
+        from = new int[0];
+        seen = new int[0];
+        reached = new int[0];
+        expanded = new int[0];
+        rematch();
+    }
+
+    /**
+     * It creates an IncrementalMatcher with a maximum matching of the graph and
+     * registers it as a listener of the graph, so it follows every later change.
+     *
+     * @param graph the TransplantGraph to match
+     * @return the registered IncrementalMatcher
+     */
+    public static IncrementalMatcher attach(TransplantGraph graph) {
+        IncrementalMatcher matcher = new IncrementalMatcher(graph);
+        graph.addListener(matcher);
+        return matcher;
+    }
+
+    /**
+     * It stops following the graph, leaving the current matching as it is.
+     */
+    public void detach() {
+        graph.removeListener(this);
+    }
+
+    /**
+     * An accessor which gets the number of matched pairs.
+     *
+     * @return the matching size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * It gets the recipient currently matched to the given donor.
+     *
+     * @param donorID the donor’s ID
+     * @return the recipient ID, or -1 if the donor is unmatched
+     */
+    public int getRecipientFor(int donorID) {
+        return donorID >= 0 && donorID < recipientOfDonor.length ? recipientOfDonor[donorID] : -1;
+    }
+
+    /**
+     * It gets the donor currently matched to the given recipient.
+     *
+     * @param recipientID the recipient’s ID
+     * @return the donor ID, or -1 if the recipient is unmatched
+     */
+    public int getDonorFor(int recipientID) {
+        return recipientID >= 0 && recipientID < donorOfRecipient.length ? donorOfRecipient[recipientID] : -1;
+    }
+
+    /**
+     * It takes a snapshot of the current matching.
+     *
+     * @return a Matching that later changes do not affect
+     */
+    public Matching getMatching() {
+        return new Matching(graph,
+                Arrays.copyOf(recipientOfDonor, graph.getDonorSlots()),
+                Arrays.copyOf(donorOfRecipient, graph.getRecipientSlots()));
+    }
+
+    /**
+     * It accepts every change, since the matching follows whatever the graph does.
+     */
+    @Override
+    public void changing() {
+    }
+
+    /**
+     * It matches the new donor if an augmenting path ends at it.
+     *
+     * @param donorID the new donor's ID
+     */
+    @Override
+    public void donorAdded(int donorID) {
+        recipientOfDonor = ensure(recipientOfDonor, donorID);
+        if (augment(donorID, true))
+            size++;
+    }
+
+    /**
+     * It matches the new recipient if an augmenting path ends at it.
+     *
+     * @param recipientID the new recipient's ID
+     */
+    @Override
+    public void recipientAdded(int recipientID) {
+        donorOfRecipient = ensure(donorOfRecipient, recipientID);
+        if (augment(recipientID, false))
+            size++;
+    }
+
+    /**
+     * It unmatches the removed donor and tries to rematch its former recipient.
+     *
+     * @param donorID the removed donor's ID
+     * @param donor the removed donor
+     */
+    @Override
+    public void donorRemoved(int donorID, Patient donor) {
+        int r = getRecipientFor(donorID);
+        if (r < 0)
+            return;
+        recipientOfDonor[donorID] = -1;
+        donorOfRecipient[r] = -1;
+        size--;
+        if (augment(r, false))
+            size++;
+    }
+
+    /**
+     * It unmatches the removed recipient and tries to rematch its former donor.
+     *
+     * @param recipientID the removed recipient's ID
+     * @param recipient the removed recipient
+     */
+    @Override
+    public void recipientRemoved(int recipientID, Patient recipient) {
+        int d = getDonorFor(recipientID);
+        if (d < 0)
+            return;
+        donorOfRecipient[recipientID] = -1;
+        recipientOfDonor[d] = -1;
+        size--;
+        if (augment(d, true))
+            size++;
+    }
+
+    /**
+     * It ignores paired-donation links, which do not affect compatibility.
+     *
+     * @param recipientID the recipient's ID
+     * @param donorID the linked donor's ID, or -1
+     */
+    @Override
+    public void pairLinked(int recipientID, int donorID) {
+    }
+
+    /**
+     * It recomputes the matching from scratch after a bulk change.
+     */
+    @Override
+    public void graphRebuilt() {
+        rematch();
+    }
+
+    /**
+     * It replaces the matching with a fresh Hopcroft–Karp maximum matching.
+     */
+    private void rematch() {
+        Matching m = HopcroftKarp.match(graph);
+        recipientOfDonor = new int[graph.getDonorSlots()];
+        donorOfRecipient = new int[graph.getRecipientSlots()];
+        for (int i = 0; i < recipientOfDonor.length; i++)
+            recipientOfDonor[i] = m.getRecipientFor(i);
+        for (int j = 0; j < donorOfRecipient.length; j++)
+            donorOfRecipient[j] = m.getDonorFor(j);
+        size = m.size();
+    }
+
+    /**
+     * It searches breadth-first for an augmenting path from a free patient and
+     * flips it if one is found. The search alternates between unmatched edges
+     * out of the root's side and matched edges back into it.
+     *
+     * @param root the free patient to start from
+     * @param isDonor true if the root is a donor, false if it is a recipient
+     * @return true if the matching was augmented, otherwise false
+     */
+    private boolean augment(int root, boolean isDonor) {
+        int[] mine = isDonor ? recipientOfDonor : donorOfRecipient;
+        int[] theirs = isDonor ? donorOfRecipient : recipientOfDonor;
+        int others = isDonor ? graph.getNumRecipients() : graph.getNumDonors();
+        if (others == size)
+            return false;
+        int slots = Math.max(graph.getDonorSlots(), graph.getRecipientSlots());
+        if (queue.length < slots) {
+            int capacity = Math.max(slots, queue.length * 2);
+            queue = new int[capacity];
+            from = new int[capacity];
+            seen = Arrays.copyOf(seen, capacity);
+            reached = Arrays.copyOf(reached, capacity);
+        }
+        if (expanded.length < OrganDictionary.size() * BLOOD_TYPES)
+            expanded = Arrays.copyOf(expanded, OrganDictionary.size() * BLOOD_TYPES * 2);
+        if (++stamp == 0) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(reached, 0);
+            Arrays.fill(expanded, 0);
+            stamp = 1;
+        }
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = root;
+        seen[root] = stamp;
+        while (head < tail) {
+            int u = queue[head++];
+            PatientStore side = isDonor ? graph.getDonorStore() : graph.getRecipientStore();
+            int type = side.getOrganCode(u) * BLOOD_TYPES + side.getBloodCode(u);
+            if (expanded[type] == stamp)
+                continue;
+            expanded[type] = stamp;
+            for (int v = next(u, 0, isDonor); v >= 0; v = next(u, v + 1, isDonor)) {
+                if (reached[v] == stamp)
+                    continue;
+                reached[v] = stamp;
+                int w = v < theirs.length ? theirs[v] : -1;
+                if (w < 0) {
+                    while (true) {
+                        int previous = mine[u];
+                        mine[u] = v;
+                        theirs[v] = u;
+                        if (u == root)
+                            return true;
+                        v = previous;
+                        u = from[u];
+                    }
+                }
+                if (seen[w] != stamp) {
+                    seen[w] = stamp;
+                    from[w] = u;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * It gets the next compatible patient on the other side of the graph.
+     *
+     * @param u the patient whose neighbours to scan
+     * @param fromID the lowest ID to consider
+     * @param isDonor true if u is a donor, false if it is a recipient
+     * @return the next compatible ID, or -1 if there is none
+     */
+    private int next(int u, int fromID, boolean isDonor) {
+        return isDonor ? graph.nextCompatibleRecipient(u, fromID) : graph.nextCompatibleDonor(u, fromID);
+    }
+
+    /**
+     * It grows a pairing array to hold the given ID, filling new slots with -1.
+     *
+     * @param pairing the pairing array
+     * @param id the ID that must fit
+     * @return the pairing array, or a larger copy of it
+     */
+    private static int[] ensure(int[] pairing, int id) {
+        if (id < pairing.length)
+            return pairing;
+        int old = pairing.length;
+        pairing = Arrays.copyOf(pairing, Math.max(id + 1, old * 2));
+        Arrays.fill(pairing, old, pairing.length, -1);
+        return pairing;
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.Arrays;
+
+/**
+ * This class is a growable stack of primitive ints, used for free lists and work
+ * queues where boxing every element would be wasteful.
+ */
+public class IntStack {
+    private int[] elements;
+    private int size;
+
+    /**
+     * Default constructor which initializes an empty stack.
+     */
+    public IntStack() {
+        elements = new int[8];
+    }
+
+    /**
+     * It pushes a value onto the stack.
+     *
+     * @param value the value to push
+     */
+    public void push(int value) {
+        if (size == elements.length)
+            elements = Arrays.copyOf(elements, size * 2);
+        elements[size++] = value;
+    }
+
+    /**
+     * It pops the most recently pushed value.
+     *
+     * @return the popped value
+     * @throws IllegalStateException if the stack is empty
+     */
+    public int pop() {
+        if (size == 0)
+            throw new IllegalStateException("Stack is empty");
+        return elements[--size];
+    }
+
+    /**
+     * It checks whether the stack is empty.
+     *
+     * @return true if empty, otherwise false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * An accessor which gets the number of values on the stack.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * It removes every value from the stack.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * It copies the elements in push order, from the bottom of the stack to the top.
+     *
+     * @return the elements
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
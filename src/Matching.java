@@ -0,0 +1,92 @@
+import java.util.Arrays;
+
+/**
+ * This class holds a donor-to-recipient assignment produced by a matching engine,
+ * as primitive arrays indexed by donor and recipient ID, along with the IDs of the
+ * current donors and recipients left unmatched.
+ */
+public class Matching {
+    private final int[] recipientOfDonor;
+    private final int[] donorOfRecipient;
+    private final int[] unmatchedDonors;
+    private final int[] unmatchedRecipients;
+    private final int size;
+
+    /**
+     * Constructs a Matching from the pairing arrays, collecting the unmatched
+     * current patients of the graph.
+     *
+     * @param graph the graph the matching was computed over
+     * @param recipientOfDonor the matched recipient ID per donor ID, or -1
+     * @param donorOfRecipient the matched donor ID per recipient ID, or -1
+     */
+    public Matching(TransplantGraph graph, int[] recipientOfDonor, int[] donorOfRecipient) {
+        this.recipientOfDonor = recipientOfDonor;
+        this.donorOfRecipient = donorOfRecipient;
+        int pairs = 0;
+        int[] donors = new int[recipientOfDonor.length];
+        int numDonors = 0;
+        for (int i = 0; i < recipientOfDonor.length; i++) {
+            if (recipientOfDonor[i] >= 0)
+                pairs++;
+            else if (graph.hasDonor(i))
+                donors[numDonors++] = i;
+        }
+        int[] recipients = new int[donorOfRecipient.length];
+        int numRecipients = 0;
+        for (int j = 0; j < donorOfRecipient.length; j++) {
+            if (donorOfRecipient[j] < 0 && graph.hasRecipient(j))
+                recipients[numRecipients++] = j;
+        }
+        this.size = pairs;
+        this.unmatchedDonors = Arrays.copyOf(donors, numDonors);
+        this.unmatchedRecipients = Arrays.copyOf(recipients, numRecipients);
+    }
+
+    /**
+     * An accessor which gets the number of matched pairs.
+     *
+     * @return the matching size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * It gets the recipient assigned to the given donor.
+     *
+     * @param donorID the donor’s ID
+     * @return the recipient ID, or -1 if the donor is unmatched
+     */
+    public int getRecipientFor(int donorID) {
+        return donorID < recipientOfDonor.length ? recipientOfDonor[donorID] : -1;
+    }
+
+    /**
+     * It gets the donor assigned to the given recipient.
+     *
+     * @param recipientID the recipient’s ID
+     * @return the donor ID, or -1 if the recipient is unmatched
+     */
+    public int getDonorFor(int recipientID) {
+        return recipientID < donorOfRecipient.length ? donorOfRecipient[recipientID] : -1;
+    }
+
+    /**
+     * An accessor which gets the IDs of current donors left unmatched.
+     *
+     * @return the unmatched donor IDs in ascending order
+     */
+    public int[] getUnmatchedDonors() {
+        return unmatchedDonors.clone();
+    }
+
+    /**
+     * An accessor which gets the IDs of current recipients left unmatched.
+     *
+     * @return the unmatched recipient IDs in ascending order
+     */
+    public int[] getUnmatchedRecipients() {
+        return unmatchedRecipients.clone();
+    }
+}
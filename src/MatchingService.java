@@ -0,0 +1,505 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class serves a shared TransplantGraph over HTTP with JSON bodies, so other
+ * hospital systems can add and remove patients and query compatibility and the
+ * current matching. Each request runs on its own virtual thread against a
+ * ConcurrentTransplantGraph, and an IncrementalMatcher keeps the matching current.
+ *
+ * <pre>
+ * GET    /donors                      list donors
+ * POST   /donors                      add a donor; body {"name", "age", "organ", "bloodType"}
+ * DELETE /donors/{id}                 remove a donor
+ * GET    /donors/{id}/compatible      list recipients compatible with a donor
+ * GET    /recipients                  list recipients
+ * POST   /recipients                  add a recipient; the body may add "urgency" and "waitingDays"
+ * DELETE /recipients/{id}             remove a recipient
+ * GET    /recipients/{id}/compatible  list donors compatible with a recipient
+ * GET    /match                       the current maximum matching as donor and recipient ID pairs
+ * </pre>
+ */
+public class MatchingService {
+    public static final int DEFAULT_PORT = 8080;
+    public static final String NO_DELAY = "sun.net.httpserver.nodelay";
+    private final ConcurrentTransplantGraph graph;
+    private final IncrementalMatcher matcher;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Constructs a MatchingService over a shared graph and a matcher listening to it.
+     *
+     * @param graph the shared TransplantGraph
+     * @param matcher the IncrementalMatcher attached to the underlying graph
+     */
+    public MatchingService(ConcurrentTransplantGraph graph, IncrementalMatcher matcher) {
+        this.graph = graph;
+        this.matcher = matcher;
+    }
+
+    /**
+     * Main method which loads the saved graph as the driver does and serves it until
+     * the process is stopped, checkpointing the log on shutdown. It does not start
+     * if the log cannot be replayed. Unless configured
+     * otherwise, it turns off Nagle's algorithm for the JDK server's sockets, since
+     * the server writes headers and body separately and small responses would
+     * otherwise wait on the client's delayed acknowledgement. The setting is a
+     * system property read once by the JDK server, so it applies to every server
+     * in the process and is left to launchers rather than set by start.
+     *
+     * @param args an optional port number
+     * @throws IOException if the server cannot be started
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        if (System.getProperty(NO_DELAY) == null)
+            System.setProperty(NO_DELAY, "true");
+        OperationMetrics.install();
+        TransplantGraph base = TransplantDriver.loadGraph();
+        WriteAheadLog log = TransplantDriver.openLog(base);
+        if (log == null)
+            System.exit(1);
+        IncrementalMatcher matcher = IncrementalMatcher.attach(base);
+        ConcurrentTransplantGraph graph = new ConcurrentTransplantGraph(base);
+        graph.attachLog(log);
+        MatchingService service = new MatchingService(graph, matcher);
+        service.start(port);
+        System.out.println("Serving on http://localhost:" + service.getPort() + "/");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            service.stop();
+            graph.write(g -> {
+                try {
+                    log.checkpoint();
+                    log.close();
+                } catch (IOException io) {
+                    System.out.println("Error saving data: " + io.getMessage());
+                }
+                return null;
+            });
+        }));
+    }
+
+    /**
+     * It starts serving on a port of the loopback interface. It leaves the JVM's
+     * socket settings alone; launchers that want small responses sent at once set
+     * NO_DELAY to true before the first server starts, as main does.
+     *
+     * @param port the port, or 0 for any free port
+     * @throws IOException if the server cannot be started
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/donors", exchange -> handle(exchange, true));
+        server.createContext("/recipients", exchange -> handle(exchange, false));
+        server.createContext("/match", this::handleMatch);
+        server.start();
+    }
+
+    /**
+     * It stops serving, letting requests in progress finish first.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.close();
+    }
+
+    /**
+     * An accessor which gets the port the service is listening on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * It handles every request whose path starts with /donors or /recipients,
+     * answering 500 if the graph fails unexpectedly.
+     *
+     * @param exchange the request and its response
+     * @param donors true for /donors, false for /recipients
+     * @throws IOException if the response cannot be sent
+     */
+    private void handle(HttpExchange exchange, boolean donors) throws IOException {
+        try (exchange) {
+            try {
+                route(exchange, donors);
+            } catch (UncheckedIOException e) {
+                System.out.println("Error writing " + TransplantDriver.LOG_FILE + ": " + e.getCause().getMessage());
+                error(exchange, 500, "The change could not be logged");
+            } catch (RuntimeException e) {
+                System.out.println("Error handling " + exchange.getRequestMethod() + " "
+                        + exchange.getRequestURI().getPath() + ": " + e);
+                error(exchange, 500, "Internal error");
+            }
+        }
+    }
+
+    /**
+     * It routes a request under /donors or /recipients to its operation. The
+     * server hands over every path that merely starts with the context, so the
+     * first segment must name it exactly, and empty segments, as from a trailing
+     * slash, match nothing.
+     *
+     * @param exchange the request and its response
+     * @param donors true for /donors, false for /recipients
+     * @throws IOException if the response cannot be sent
+     */
+    private void route(HttpExchange exchange, boolean donors) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().split("/", -1);
+        if (!path[1].equals(donors ? "donors" : "recipients")) {
+            error(exchange, 404, "No such resource");
+            return;
+        }
+        int id = path.length > 2 ? parseID(path[2]) : -1;
+        if (path.length == 2 && method.equals("GET")) {
+            send(exchange, 200, patients(donors ? graph.getDonors() : graph.getRecipients()));
+        } else if (path.length == 2 && method.equals("POST")) {
+            Patient p = readPatient(exchange, donors);
+            if (p == null)
+                return;
+            int added = donors ? graph.addDonor(p) : graph.addRecipient(p);
+            send(exchange, 201, "{\"id\":" + added + "}");
+        } else if (path.length == 3 && id >= 0 && method.equals("DELETE")) {
+            boolean removed = donors ? graph.removeDonorByID(id) : graph.removeRecipientByID(id);
+            if (removed)
+                send(exchange, 200, "{\"id\":" + id + "}");
+            else
+                error(exchange, 404, "No such patient " + id);
+        } else if (path.length == 4 && id >= 0 && path[3].equals("compatible") && method.equals("GET")) {
+            String body = graph.read(g -> compatible(g, id, donors));
+            if (body != null)
+                send(exchange, 200, body);
+            else
+                error(exchange, 404, "No such patient " + id);
+        } else {
+            error(exchange, 404, "No such resource");
+        }
+    }
+
+    /**
+     * It handles a request for the current matching, which must be a GET of
+     * /match exactly, answering 500 if the graph fails unexpectedly.
+     *
+     * @param exchange the request and its response
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleMatch(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET") || !exchange.getRequestURI().getPath().equals("/match")) {
+                error(exchange, 404, "No such resource");
+                return;
+            }
+            String body;
+            try {
+                body = graph.read(g -> {
+                    StringBuilder json = new StringBuilder("[");
+                    for (int i = 0; i < g.getDonorSlots(); i++) {
+                        int j = matcher.getRecipientFor(i);
+                        if (j < 0)
+                            continue;
+                        if (json.length() > 1)
+                            json.append(',');
+                        json.append("{\"donor\":").append(i).append(",\"recipient\":").append(j).append('}');
+                    }
+                    return json.append(']').toString();
+                });
+            } catch (RuntimeException e) {
+                System.out.println("Error handling GET /match: " + e);
+                error(exchange, 500, "Internal error");
+                return;
+            }
+            send(exchange, 200, body);
+        }
+    }
+
+    /**
+     * It lists the patients compatible with a donor or recipient.
+     *
+     * @param g the graph, read-locked
+     * @param id the patient's ID
+     * @param donor true if the patient is a donor, false for a recipient
+     * @return the compatible patients as JSON, or null if the ID is not in use
+     */
+    private static String compatible(TransplantGraph g, int id, boolean donor) {
+        if (donor ? !g.hasDonor(id) : !g.hasRecipient(id))
+            return null;
+        StringBuilder json = new StringBuilder("[");
+        if (donor) {
+            for (int j = g.nextCompatibleRecipient(id, 0); j >= 0; j = g.nextCompatibleRecipient(id, j + 1))
+                appendPatient(json.length() > 1 ? json.append(',') : json, g.getRecipient(j));
+        } else {
+            for (int i = g.nextCompatibleDonor(id, 0); i >= 0; i = g.nextCompatibleDonor(id, i + 1))
+                appendPatient(json.length() > 1 ? json.append(',') : json, g.getDonor(i));
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * It reads a new patient from a request body, answering 400 if it is invalid.
+     *
+     * @param exchange the request and its response
+     * @param donor true for a donor, false for a recipient
+     * @return the Patient, or null if the body was rejected
+     * @throws IOException if the body cannot be read
+     */
+    private static Patient readPatient(HttpExchange exchange, boolean donor) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            Map<String, String> fields = parseObject(body);
+            String name = fields.get("name");
+            String organ = fields.get("organ");
+            if (name == null || name.isBlank() || organ == null || organ.isBlank())
+                throw new IllegalArgumentException("name and organ are required");
+            int age = Integer.parseInt(fields.getOrDefault("age", ""));
+            if (age < 0)
+                throw new IllegalArgumentException("invalid age");
+            Patient p = new Patient(0, name.trim(), age, organ.trim(),
+                    BloodType.parse(fields.getOrDefault("bloodType", "")), donor);
+            if (!donor) {
+                p.setUrgency(Integer.parseInt(fields.getOrDefault("urgency", "0")));
+                p.setWaitingDays(Integer.parseInt(fields.getOrDefault("waitingDays", "0")));
+            }
+            return p;
+        } catch (IllegalArgumentException e) {
+            error(exchange, 400, "Invalid patient: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * It parses a flat JSON object whose values are strings, numbers, booleans or
+     * null, keeping each value as its text.
+     *
+     * @param json the object text
+     * @return the values by key, without null values
+     * @throws IllegalArgumentException if the text is not such an object
+     */
+    private static Map<String, String> parseObject(String json) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skipSpace(json, 0)};
+        expect(json, pos, '{');
+        if (peek(json, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String key = parseString(json, pos);
+                expect(json, pos, ':');
+                String value;
+                if (peek(json, pos) == '"') {
+                    value = parseString(json, pos);
+                } else {
+                    int start = pos[0];
+                    while (pos[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(pos[0])) < 0)
+                        pos[0]++;
+                    value = json.substring(start, pos[0]);
+                    if (value.isEmpty())
+                        throw new IllegalArgumentException("missing value for " + key);
+                    if (value.equals("null"))
+                        value = null;
+                }
+                if (value != null)
+                    fields.put(key, value);
+                if (peek(json, pos) == ',') {
+                    pos[0]++;
+                    continue;
+                }
+                expect(json, pos, '}');
+                break;
+            }
+        }
+        if (skipSpace(json, pos[0]) != json.length())
+            throw new IllegalArgumentException("trailing characters");
+        return fields;
+    }
+
+    /**
+     * It parses a JSON string starting at the next non-space character.
+     *
+     * @param json the text
+     * @param pos the position, advanced past the string
+     * @return the decoded string
+     * @throws IllegalArgumentException if there is no valid string there
+     */
+    private static String parseString(String json, int[] pos) {
+        expect(json, pos, '"');
+        StringBuilder text = new StringBuilder();
+        while (pos[0] < json.length()) {
+            char c = json.charAt(pos[0]++);
+            if (c == '"')
+                return text.toString();
+            if (c != '\\') {
+                text.append(c);
+                continue;
+            }
+            if (pos[0] >= json.length())
+                break;
+            char e = json.charAt(pos[0]++);
+            switch (e) {
+                case 'n' -> text.append('\n');
+                case 't' -> text.append('\t');
+                case 'r' -> text.append('\r');
+                case 'b' -> text.append('\b');
+                case 'f' -> text.append('\f');
+                case 'u' -> {
+                    if (pos[0] + 4 > json.length())
+                        throw new IllegalArgumentException("bad escape");
+                    text.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                }
+                default -> text.append(e);
+            }
+        }
+        throw new IllegalArgumentException("unterminated string");
+    }
+
+    /**
+     * It consumes the next non-space character, which must be the given one.
+     *
+     * @param json the text
+     * @param pos the position, advanced past the character
+     * @param c the expected character
+     * @throws IllegalArgumentException if another character or the end is found
+     */
+    private static void expect(String json, int[] pos, char c) {
+        if (peek(json, pos) != c)
+            throw new IllegalArgumentException("expected '" + c + "'");
+        pos[0]++;
+    }
+
+    /**
+     * It skips spaces and returns the next character without consuming it.
+     *
+     * @param json the text
+     * @param pos the position, advanced past any spaces
+     * @return the next character, or 0 at the end
+     */
+    private static char peek(String json, int[] pos) {
+        pos[0] = skipSpace(json, pos[0]);
+        return pos[0] < json.length() ? json.charAt(pos[0]) : 0;
+    }
+
+    /**
+     * It finds the first non-space character at or after a position.
+     *
+     * @param json the text
+     * @param from the position to start at
+     * @return the position of that character, or the length of the text
+     */
+    private static int skipSpace(String json, int from) {
+        while (from < json.length() && Character.isWhitespace(json.charAt(from)))
+            from++;
+        return from;
+    }
+
+    /**
+     * It formats patients as a JSON array.
+     *
+     * @param patients the patients
+     * @return the JSON text
+     */
+    private static String patients(List<Patient> patients) {
+        StringBuilder json = new StringBuilder(patients.size() * 96 + 2).append('[');
+        for (Patient p : patients)
+            appendPatient(json.length() > 1 ? json.append(',') : json, p);
+        return json.append(']').toString();
+    }
+
+    /**
+     * It appends a patient as a JSON object.
+     *
+     * @param json the text to append to
+     * @param p the Patient
+     */
+    private static void appendPatient(StringBuilder json, Patient p) {
+        json.append("{\"id\":").append(p.getID()).append(",\"name\":");
+        appendString(json, p.getName());
+        json.append(",\"age\":").append(p.getAge()).append(",\"organ\":");
+        appendString(json, p.getOrgan());
+        json.append(",\"bloodType\":\"").append(p.getBloodType().getType()).append('"');
+        if (!p.isDonor()) {
+            json.append(",\"urgency\":").append(p.getUrgency())
+                .append(",\"waitingDays\":").append(p.getWaitingDays());
+        }
+        json.append('}');
+    }
+
+    /**
+     * It appends a string as a quoted, escaped JSON string.
+     *
+     * @param json the text to append to
+     * @param s the string
+     */
+    private static void appendString(StringBuilder json, String s) {
+        json.append('"');
+        for (int k = 0; k < s.length(); k++) {
+            char c = s.charAt(k);
+            if (c == '"' || c == '\\')
+                json.append('\\').append(c);
+            else if (c < ' ')
+                json.append(String.format("\\u%04x", (int) c));
+            else
+                json.append(c);
+        }
+        json.append('"');
+    }
+
+    /**
+     * It sends an error response.
+     *
+     * @param exchange the request and its response
+     * @param status the HTTP status code
+     * @param message the error message
+     * @throws IOException if the response cannot be sent
+     */
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        send(exchange, status, json.append('}').toString());
+    }
+
+    /**
+     * It sends a JSON response.
+     *
+     * @param exchange the request and its response
+     * @param status the HTTP status code
+     * @param json the body
+     * @throws IOException if the response cannot be sent
+     */
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * It parses a patient ID from a path segment.
+     *
+     * @param segment the path segment
+     * @return the ID, or -1 if the segment is not a non-negative int
+     */
+    private static int parseID(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class is a growable run of memory outside the Java heap, addressed by long
+ * offsets, either allocated directly or mapped from a file. It is split into
+ * chunks of up to 1 GiB, since a single buffer is indexed by int; every chunk but
+ * the last is full, and the last one is reallocated or remapped as it grows, so
+ * growing past a chunk never copies the chunks before it. Values are little-endian
+ * and must be aligned to their size, so none straddles two chunks. A mapped region
+ * keeps its data in the file, so other processes can map the same file, and the
+ * data survives the process once forced or written back by the operating system.
+ * A read-only region closes its file once mapped, and a writable one keeps it open
+ * to grow. The memory is released when the region becomes unreachable.
+ */
+public class MemoryRegion {
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MIN_SIZE = 4096;
+    private final FileChannel channel;
+    private final boolean readOnly;
+    private ByteBuffer[] chunks;
+    private long size;
+
+    /**
+     * Constructs a region over the given channel, or over direct memory if it is null.
+     *
+     * @param channel the file to map, or null
+     * @param readOnly true if the region may only be read
+     */
+    private MemoryRegion(FileChannel channel, boolean readOnly) {
+        this.channel = channel;
+        this.readOnly = readOnly;
+        chunks = new ByteBuffer[0];
+    }
+
+    /**
+     * It allocates a zeroed region of direct memory.
+     *
+     * @param size the initial size in bytes
+     * @return the region
+     */
+    public static MemoryRegion allocate(long size) {
+        MemoryRegion region = new MemoryRegion(null, false);
+        region.ensureCapacity(size);
+        return region;
+    }
+
+    /**
+     * It maps a file as a region, creating the file if it does not exist. A
+     * read-write region covers at least the given size, extending the file with
+     * zeros; a read-only region covers exactly the current file.
+     *
+     * @param file the file to map
+     * @param size the minimum size in bytes of a read-write region
+     * @param readOnly true to map the file read-only
+     * @return the region
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MemoryRegion map(Path file, long size, boolean readOnly) throws IOException {
+        FileChannel channel = readOnly
+                ? FileChannel.open(file, StandardOpenOption.READ)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        MemoryRegion region = new MemoryRegion(channel, readOnly);
+        try {
+            if (readOnly)
+                region.mapTo(channel.size());
+            else
+                region.ensureCapacity(Math.max(size, channel.size()));
+        } catch (UncheckedIOException e) {
+            channel.close();
+            throw e.getCause();
+        }
+        if (readOnly)
+            channel.close();
+        return region;
+    }
+
+    /**
+     * It grows the region to at least the given size, the new bytes zeroed. The
+     * region at least doubles when it grows, so appending is amortized constant time.
+     *
+     * @param capacity the size in bytes the region must cover
+     */
+    public void ensureCapacity(long capacity) {
+        if (capacity <= size)
+            return;
+        if (readOnly)
+            throw new IllegalStateException("Region is read-only");
+        long target = Math.max(MIN_SIZE, Math.max(capacity, 2 * size));
+        if (target > CHUNK_SIZE)
+            target = (target + CHUNK_MASK) & ~CHUNK_MASK;
+        if (channel == null)
+            allocateTo(target);
+        else
+            mapTo(target);
+    }
+
+    /**
+     * An accessor which gets the size of the region.
+     *
+     * @return the size in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * It reads a byte.
+     *
+     * @param offset the offset in bytes
+     * @return the byte
+     */
+    public byte getByte(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].get((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * It writes a byte.
+     *
+     * @param offset the offset in bytes
+     * @param value the byte
+     */
+    public void putByte(long offset, byte value) {
+        chunks[(int) (offset >>> CHUNK_BITS)].put((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * It reads a char.
+     *
+     * @param offset the offset in bytes, a multiple of two
+     * @return the char
+     */
+    public char getChar(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getChar((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * It writes a char.
+     *
+     * @param offset the offset in bytes, a multiple of two
+     * @param value the char
+     */
+    public void putChar(long offset, char value) {
+        chunks[(int) (offset >>> CHUNK_BITS)].putChar((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * It reads an int.
+     *
+     * @param offset the offset in bytes, a multiple of four
+     * @return the int
+     */
+    public int getInt(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * It writes an int.
+     *
+     * @param offset the offset in bytes, a multiple of four
+     * @param value the int
+     */
+    public void putInt(long offset, int value) {
+        chunks[(int) (offset >>> CHUNK_BITS)].putInt((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * It reads a long.
+     *
+     * @param offset the offset in bytes, a multiple of eight
+     * @return the long
+     */
+    public long getLong(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * It writes a long.
+     *
+     * @param offset the offset in bytes, a multiple of eight
+     * @param value the long
+     */
+    public void putLong(long offset, long value) {
+        chunks[(int) (offset >>> CHUNK_BITS)].putLong((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * It copies a run of longs within the region. The source and destination may
+     * overlap.
+     *
+     * @param from the source offset in bytes, a multiple of eight
+     * @param to the destination offset in bytes, a multiple of eight
+     * @param count the number of longs
+     */
+    public void copyLongs(long from, long to, long count) {
+        if (to > from) {
+            for (long k = count - 1; k >= 0; k--)
+                putLong(to + 8 * k, getLong(from + 8 * k));
+        } else {
+            for (long k = 0; k < count; k++)
+                putLong(to + 8 * k, getLong(from + 8 * k));
+        }
+    }
+
+    /**
+     * It zeroes a run of longs.
+     *
+     * @param offset the offset in bytes, a multiple of eight
+     * @param count the number of longs
+     */
+    public void clearLongs(long offset, long count) {
+        for (long k = 0; k < count; k++)
+            putLong(offset + 8 * k, 0L);
+    }
+
+    /**
+     * It zeroes a run of bytes.
+     *
+     * @param offset the offset in bytes
+     * @param length the number of bytes
+     */
+    public void clear(long offset, long length) {
+        long end = offset + length;
+        for (; offset < end && (offset & 7) != 0; offset++)
+            putByte(offset, (byte) 0);
+        for (; offset + 8 <= end; offset += 8)
+            putLong(offset, 0L);
+        for (; offset < end; offset++)
+            putByte(offset, (byte) 0);
+    }
+
+    /**
+     * It forces a mapped region's changes to its file. Direct memory is left alone.
+     */
+    public void force() {
+        for (ByteBuffer chunk : chunks) {
+            if (chunk instanceof MappedByteBuffer mapped && !readOnly)
+                mapped.force();
+        }
+    }
+
+    /**
+     * It grows direct memory to the given size, keeping every full chunk and
+     * copying the last partial one into its replacement.
+     *
+     * @param target the new size in bytes
+     */
+    private void allocateTo(long target) {
+        int count = (int) ((target + CHUNK_MASK) >>> CHUNK_BITS);
+        ByteBuffer[] grown = Arrays.copyOf(chunks, count);
+        for (int c = Math.max(0, chunks.length - 1); c < count; c++) {
+            int length = (int) Math.min(CHUNK_SIZE, target - ((long) c << CHUNK_BITS));
+            if (grown[c] != null && grown[c].capacity() == length)
+                continue;
+            ByteBuffer chunk = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+            if (grown[c] != null)
+                chunk.put(0, grown[c], 0, grown[c].capacity());
+            grown[c] = chunk;
+        }
+        chunks = grown;
+        size = target;
+    }
+
+    /**
+     * It maps the file up to the given size, remapping the last partial chunk and
+     * mapping any new ones. Mapping past the end of a writable file extends it.
+     *
+     * @param target the new size in bytes
+     */
+    private void mapTo(long target) {
+        int count = (int) ((target + CHUNK_MASK) >>> CHUNK_BITS);
+        ByteBuffer[] grown = Arrays.copyOf(chunks, count);
+        FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+        try {
+            for (int c = Math.max(0, chunks.length - 1); c < count; c++) {
+                long start = (long) c << CHUNK_BITS;
+                long length = Math.min(CHUNK_SIZE, target - start);
+                if (grown[c] == null || grown[c].capacity() != length)
+                    grown[c] = channel.map(mode, start, length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunks = grown;
+        size = target;
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class maps patient names, ignoring case and surrounding whitespace, to the
+ * IDs of every patient with that name. IDs for a name are kept in ascending order,
+ * so the first one is the match the old linear scan would have found.
+ */
+public class NameIndex {
+    private static final int[] NONE = new int[0];
+    private HashMap<String, int[]> ids;
+
+    /**
+     * Default constructor which initializes an empty index.
+     */
+    public NameIndex() {
+        ids = new HashMap<>();
+    }
+
+    /**
+     * It records that the patient with the given ID has the given name.
+     *
+     * @param name the patient name
+     * @param id the patient ID
+     */
+    public void add(String name, int id) {
+        ids.merge(key(name), new int[]{id}, (existing, added) -> {
+            int pos = Arrays.binarySearch(existing, id);
+            if (pos >= 0)
+                return existing;
+            pos = -pos - 1;
+            int[] grown = new int[existing.length + 1];
+            System.arraycopy(existing, 0, grown, 0, pos);
+            grown[pos] = id;
+            System.arraycopy(existing, pos, grown, pos + 1, existing.length - pos);
+            return grown;
+        });
+    }
+
+    /**
+     * It forgets that the patient with the given ID has the given name.
+     *
+     * @param name the patient name
+     * @param id the patient ID
+     */
+    public void remove(String name, int id) {
+        ids.computeIfPresent(key(name), (k, existing) -> {
+            int pos = Arrays.binarySearch(existing, id);
+            if (pos < 0)
+                return existing;
+            if (existing.length == 1)
+                return null;
+            int[] shrunk = new int[existing.length - 1];
+            System.arraycopy(existing, 0, shrunk, 0, pos);
+            System.arraycopy(existing, pos + 1, shrunk, pos, shrunk.length - pos);
+            return shrunk;
+        });
+    }
+
+    /**
+     * It finds the IDs of every patient with the given name.
+     *
+     * @param name the patient name
+     * @return the matching IDs in ascending order, empty if there are none
+     */
+    public int[] find(String name) {
+        return ids.getOrDefault(key(name), NONE).clone();
+    }
+
+    /**
+     * It builds the lookup key for a name.
+     *
+     * @param name the patient name
+     * @return the lookup key
+     */
+    private static String key(String name) {
+        return name.trim().toLowerCase();
+    }
+}
@@ -2,7 +2,9 @@ import java.util.Comparator;
 
 /**
  * This comparator orders Patients by their number of transplant connections
- * in a given TransplantGraph.
+ * in a given TransplantGraph, using the graph's maintained counts, and patients
+ * with the same count by ID. For listing a whole side,
+ * TransplantGraph.getDonorsSortedBy and getRecipientsSortedBy are faster.
  */
 public class NumConnectionsComparator implements Comparator<Patient> {
     private TransplantGraph graph;
@@ -21,10 +23,11 @@ public class NumConnectionsComparator implements Comparator<Patient> {
      *
      * @param p1 the first patient
      * @param p2 the second patient
-     * @return negative if p1 has fewer connections, zero if equal, positive if more
+     * @return negative if p1 has fewer connections, zero if both have the same ID, positive if more
      */
     @Override
     public int compare(Patient p1, Patient p2) {
-        return Integer.compare(graph.getNumConnections(p1), graph.getNumConnections(p2));
+        int order = Integer.compare(graph.getNumConnections(p1), graph.getNumConnections(p2));
+        return order != 0 ? order : Integer.compare(p1.getID(), p2.getID());
     }
 }
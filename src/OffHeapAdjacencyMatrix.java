@@ -0,0 +1,589 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * This class stores donor-recipient compatibility as packed bit rows plus
+ * transposed columns in MemoryRegions outside the Java heap, either in direct
+ * memory or mapped from files in a directory. Every row has the same stride of
+ * long words, and so does every column, so a bit is found by arithmetic instead
+ * of through an array of arrays; when the recipients outgrow the row stride it
+ * doubles, and the rows are moved apart in place from the last one down, and
+ * likewise for the columns. The number of set bits in each row and column is kept
+ * in int regions alongside. The strides are read from the meta file once, when the
+ * matrix is opened, so another mapping of the same files would read moved rows at
+ * the old offsets; OffHeapStorage keeps readers out while a writer has them open.
+ */
+public class OffHeapAdjacencyMatrix implements AdjacencyMatrix {
+    private static final long MAGIC = 0x54504d5830303031L;
+    private static final int META_ROWS = 8;
+    private static final int META_COLS = 16;
+    private static final int META_ROW_STRIDE = 24;
+    private static final int META_COL_STRIDE = 32;
+    private static final int META_SIZE = 64;
+    private static final int MIN_STRIDE = 1;
+    private final boolean readOnly;
+    private final MemoryRegion meta;
+    private final MemoryRegion rows;
+    private final MemoryRegion cols;
+    private final MemoryRegion rowDegrees;
+    private final MemoryRegion colDegrees;
+    private int numRows;
+    private int numCols;
+    private int rowStride;
+    private int colStride;
+
+    /**
+     * Default constructor which initializes an empty matrix in direct memory.
+     */
+    public OffHeapAdjacencyMatrix() {
+        readOnly = false;
+        meta = MemoryRegion.allocate(META_SIZE);
+        rows = MemoryRegion.allocate(0);
+        cols = MemoryRegion.allocate(0);
+        rowDegrees = MemoryRegion.allocate(0);
+        colDegrees = MemoryRegion.allocate(0);
+        meta.putLong(0, MAGIC);
+        setStrides(MIN_STRIDE, MIN_STRIDE);
+    }
+
+    /**
+     * Constructs a matrix mapped from its files in a directory.
+     *
+     * @param directory the directory holding the matrix files
+     * @param readOnly true to map the files read-only
+     * @throws IOException if a file cannot be mapped, or the matrix is not valid
+     */
+    private OffHeapAdjacencyMatrix(Path directory, boolean readOnly) throws IOException {
+        this.readOnly = readOnly;
+        meta = MemoryRegion.map(directory.resolve("matrix.meta"), META_SIZE, readOnly);
+        rows = MemoryRegion.map(directory.resolve("matrix.rows"), 0, readOnly);
+        cols = MemoryRegion.map(directory.resolve("matrix.cols"), 0, readOnly);
+        rowDegrees = MemoryRegion.map(directory.resolve("matrix.rowdegrees"), 0, readOnly);
+        colDegrees = MemoryRegion.map(directory.resolve("matrix.coldegrees"), 0, readOnly);
+        if (!readOnly && meta.getLong(0) == 0) {
+            meta.putLong(0, MAGIC);
+            setStrides(MIN_STRIDE, MIN_STRIDE);
+        }
+        if (meta.size() < META_SIZE || meta.getLong(0) != MAGIC)
+            throw new IOException(directory + " does not hold an adjacency matrix");
+        numRows = (int) meta.getLong(META_ROWS);
+        numCols = (int) meta.getLong(META_COLS);
+        rowStride = (int) meta.getLong(META_ROW_STRIDE);
+        colStride = (int) meta.getLong(META_COL_STRIDE);
+        if (rows.size() < 8L * numRows * rowStride || cols.size() < 8L * numCols * colStride
+                || rowDegrees.size() < 4L * numRows || colDegrees.size() < 4L * numCols)
+            throw new IOException("The matrix files in " + directory + " are truncated");
+    }
+
+    /**
+     * It opens the matrix kept in a directory, creating an empty one if the
+     * directory holds none.
+     *
+     * @param directory the directory holding the matrix files
+     * @param readOnly true to map the files read-only, in which case they must exist
+     * @return the matrix
+     * @throws IOException if a file cannot be mapped, or the matrix is not valid
+     */
+    public static OffHeapAdjacencyMatrix open(Path directory, boolean readOnly) throws IOException {
+        return new OffHeapAdjacencyMatrix(directory, readOnly);
+    }
+
+    /**
+     * It appends an empty donor row, doubling the column stride if the donors have
+     * outgrown it.
+     *
+     * @return the index of the new row
+     */
+    @Override
+    public int addRow() {
+        checkWritable();
+        if (numRows == 64 * colStride)
+            restrideColumns(2 * colStride);
+        rows.ensureCapacity(8L * (numRows + 1) * rowStride);
+        rowDegrees.ensureCapacity(4L * (numRows + 1));
+        rows.clearLongs(8L * numRows * rowStride, rowStride);
+        rowDegrees.putInt(4L * numRows, 0);
+        setSize(numRows + 1, numCols);
+        return numRows - 1;
+    }
+
+    /**
+     * It appends an empty recipient column, doubling the row stride if the
+     * recipients have outgrown it.
+     *
+     * @return the index of the new column
+     */
+    @Override
+    public int addColumn() {
+        checkWritable();
+        if (numCols == 64 * rowStride)
+            restrideRows(2 * rowStride);
+        cols.ensureCapacity(8L * (numCols + 1) * colStride);
+        colDegrees.ensureCapacity(4L * (numCols + 1));
+        cols.clearLongs(8L * numCols * colStride, colStride);
+        colDegrees.putInt(4L * numCols, 0);
+        setSize(numRows, numCols + 1);
+        return numCols - 1;
+    }
+
+    /**
+     * It empties the matrix and resizes it to the given number of rows and
+     * columns, zeroing the memory in place, for bulk builds that then fill it
+     * with orRow and orColumn.
+     *
+     * @param numRows the number of donor rows
+     * @param numCols the number of recipient columns
+     */
+    @Override
+    public void reset(int numRows, int numCols) {
+        checkWritable();
+        int rowStride = Math.max(MIN_STRIDE, Bits.wordsFor(numCols));
+        int colStride = Math.max(MIN_STRIDE, Bits.wordsFor(numRows));
+        rows.ensureCapacity(8L * numRows * rowStride);
+        cols.ensureCapacity(8L * numCols * colStride);
+        rowDegrees.ensureCapacity(4L * numRows);
+        colDegrees.ensureCapacity(4L * numCols);
+        rows.clearLongs(0, (long) numRows * rowStride);
+        cols.clearLongs(0, (long) numCols * colStride);
+        rowDegrees.clear(0, 4L * numRows);
+        colDegrees.clear(0, 4L * numCols);
+        setStrides(rowStride, colStride);
+        setSize(numRows, numCols);
+    }
+
+    /**
+     * It clears every connection of the given donor row.
+     *
+     * @param donor the row to clear
+     */
+    @Override
+    public void clearRow(int donor) {
+        checkWritable();
+        for (int j = nextInRow(donor, 0); j >= 0; j = nextInRow(donor, j + 1)) {
+            clearBit(cols, colOffset(j), donor);
+            colDegrees.putInt(4L * j, colDegrees.getInt(4L * j) - 1);
+        }
+        rows.clearLongs(rowOffset(donor), rowStride);
+        rowDegrees.putInt(4L * donor, 0);
+    }
+
+    /**
+     * It clears every connection of the given recipient column.
+     *
+     * @param recipient the column to clear
+     */
+    @Override
+    public void clearColumn(int recipient) {
+        checkWritable();
+        for (int i = nextInColumn(recipient, 0); i >= 0; i = nextInColumn(recipient, i + 1)) {
+            clearBit(rows, rowOffset(i), recipient);
+            rowDegrees.putInt(4L * i, rowDegrees.getInt(4L * i) - 1);
+        }
+        cols.clearLongs(colOffset(recipient), colStride);
+        colDegrees.putInt(4L * recipient, 0);
+    }
+
+    /**
+     * An accessor which gets the number of donor rows.
+     *
+     * @return the number of rows
+     */
+    @Override
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * An accessor which gets the number of recipient columns.
+     *
+     * @return the number of columns
+     */
+    @Override
+    public int getNumColumns() {
+        return numCols;
+    }
+
+    /**
+     * It marks the donor and recipient as compatible.
+     *
+     * @param donor the donor row
+     * @param recipient the recipient column
+     */
+    @Override
+    public void set(int donor, int recipient) {
+        checkWritable();
+        if (get(donor, recipient))
+            return;
+        setBit(rows, rowOffset(donor), recipient);
+        setBit(cols, colOffset(recipient), donor);
+        rowDegrees.putInt(4L * donor, rowDegrees.getInt(4L * donor) + 1);
+        colDegrees.putInt(4L * recipient, colDegrees.getInt(4L * recipient) + 1);
+    }
+
+    /**
+     * It marks the donor as compatible with every recipient in the given set.
+     *
+     * @param donor the donor row
+     * @param recipients the bitset of recipient columns
+     */
+    @Override
+    public void connectRow(int donor, long[] recipients) {
+        checkWritable();
+        long row = rowOffset(donor);
+        int words = Math.min(recipients.length, rowStride);
+        int degree = rowDegrees.getInt(4L * donor);
+        for (int w = 0; w < words; w++) {
+            long word = rows.getLong(row + 8L * w);
+            long added = recipients[w] & ~word;
+            if (added == 0)
+                continue;
+            rows.putLong(row + 8L * w, word | added);
+            degree += Long.bitCount(added);
+            for (; added != 0; added &= added - 1) {
+                int j = (w << 6) + Long.numberOfTrailingZeros(added);
+                setBit(cols, colOffset(j), donor);
+                colDegrees.putInt(4L * j, colDegrees.getInt(4L * j) + 1);
+            }
+        }
+        rowDegrees.putInt(4L * donor, degree);
+    }
+
+    /**
+     * It marks the recipient as compatible with every donor in the given set.
+     *
+     * @param recipient the recipient column
+     * @param donors the bitset of donor rows
+     */
+    @Override
+    public void connectColumn(int recipient, long[] donors) {
+        checkWritable();
+        long col = colOffset(recipient);
+        int words = Math.min(donors.length, colStride);
+        int degree = colDegrees.getInt(4L * recipient);
+        for (int w = 0; w < words; w++) {
+            long word = cols.getLong(col + 8L * w);
+            long added = donors[w] & ~word;
+            if (added == 0)
+                continue;
+            cols.putLong(col + 8L * w, word | added);
+            degree += Long.bitCount(added);
+            for (; added != 0; added &= added - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(added);
+                setBit(rows, rowOffset(i), recipient);
+                rowDegrees.putInt(4L * i, rowDegrees.getInt(4L * i) + 1);
+            }
+        }
+        colDegrees.putInt(4L * recipient, degree);
+    }
+
+    /**
+     * It ORs a set of recipients into a donor row word by word, without touching
+     * the transposed columns. It is meant for bulk builds that also fill every
+     * column with orColumn, and may run concurrently for different rows.
+     *
+     * @param donor the row to fill
+     * @param recipients a bitset of recipient columns
+     */
+    @Override
+    public void orRow(int donor, long[] recipients) {
+        checkWritable();
+        rowDegrees.putInt(4L * donor, rowDegrees.getInt(4L * donor)
+                + or(rows, rowOffset(donor), recipients, rowStride));
+    }
+
+    /**
+     * It ORs a set of donors into a recipient column word by word, without
+     * touching the rows. It is the counterpart of orRow for bulk builds.
+     *
+     * @param recipient the column to fill
+     * @param donors a bitset of donor rows
+     */
+    @Override
+    public void orColumn(int recipient, long[] donors) {
+        checkWritable();
+        colDegrees.putInt(4L * recipient, colDegrees.getInt(4L * recipient)
+                + or(cols, colOffset(recipient), donors, colStride));
+    }
+
+    /**
+     * It marks the donor and recipient as incompatible.
+     *
+     * @param donor the donor row
+     * @param recipient the recipient column
+     */
+    @Override
+    public void clear(int donor, int recipient) {
+        checkWritable();
+        if (!get(donor, recipient))
+            return;
+        clearBit(rows, rowOffset(donor), recipient);
+        clearBit(cols, colOffset(recipient), donor);
+        rowDegrees.putInt(4L * donor, rowDegrees.getInt(4L * donor) - 1);
+        colDegrees.putInt(4L * recipient, colDegrees.getInt(4L * recipient) - 1);
+    }
+
+    /**
+     * It checks whether the donor and recipient are compatible.
+     *
+     * @param donor the donor row
+     * @param recipient the recipient column
+     * @return true if compatible, otherwise false
+     */
+    @Override
+    public boolean get(int donor, int recipient) {
+        if (recipient >= 64 * rowStride)
+            return false;
+        return (rows.getLong(rowOffset(donor) + 8L * (recipient >>> 6)) & (1L << recipient)) != 0;
+    }
+
+    /**
+     * It counts the recipients compatible with the given donor.
+     *
+     * @param donor the donor row
+     * @return the number of set bits in the row
+     */
+    @Override
+    public int rowCount(int donor) {
+        return rowDegrees.getInt(4L * donor);
+    }
+
+    /**
+     * It counts the donors compatible with the given recipient.
+     *
+     * @param recipient the recipient column
+     * @return the number of set bits in the column
+     */
+    @Override
+    public int columnCount(int recipient) {
+        return colDegrees.getInt(4L * recipient);
+    }
+
+    /**
+     * It copies the connection count of every donor row.
+     *
+     * @return the counts indexed by donor row
+     */
+    @Override
+    public int[] rowCounts() {
+        int[] counts = new int[numRows];
+        for (int i = 0; i < numRows; i++)
+            counts[i] = rowDegrees.getInt(4L * i);
+        return counts;
+    }
+
+    /**
+     * It copies the connection count of every recipient column.
+     *
+     * @return the counts indexed by recipient column
+     */
+    @Override
+    public int[] columnCounts() {
+        int[] counts = new int[numCols];
+        for (int j = 0; j < numCols; j++)
+            counts[j] = colDegrees.getInt(4L * j);
+        return counts;
+    }
+
+    /**
+     * It finds the next recipient compatible with the given donor.
+     *
+     * @param donor the donor row
+     * @param from the recipient index to start searching from
+     * @return the next compatible recipient, or -1 if there is none
+     */
+    @Override
+    public int nextInRow(int donor, int from) {
+        return nextSetBit(rows, rowOffset(donor), rowStride, from);
+    }
+
+    /**
+     * An accessor which gets the packed words of a donor row, copied out of the
+     * region, so each call returns a new array.
+     *
+     * @param donor the donor row
+     * @return the row words
+     */
+    @Override
+    public long[] rowWords(int donor) {
+        long row = rowOffset(donor);
+        long[] words = new long[rowStride];
+        for (int w = 0; w < rowStride; w++)
+            words[w] = rows.getLong(row + 8L * w);
+        return words;
+    }
+
+    /**
+     * It finds the next donor compatible with the given recipient.
+     *
+     * @param recipient the recipient column
+     * @param from the donor index to start searching from
+     * @return the next compatible donor, or -1 if there is none
+     */
+    @Override
+    public int nextInColumn(int recipient, int from) {
+        return nextSetBit(cols, colOffset(recipient), colStride, from);
+    }
+
+    /**
+     * It forces every mapped region to its file.
+     */
+    @Override
+    public void force() {
+        rows.force();
+        cols.force();
+        rowDegrees.force();
+        colDegrees.force();
+        meta.force();
+    }
+
+    /**
+     * It gets the offset of a donor row.
+     *
+     * @param donor the donor row
+     * @return the offset in bytes
+     */
+    private long rowOffset(int donor) {
+        return 8L * donor * rowStride;
+    }
+
+    /**
+     * It gets the offset of a recipient column.
+     *
+     * @param recipient the recipient column
+     * @return the offset in bytes
+     */
+    private long colOffset(int recipient) {
+        return 8L * recipient * colStride;
+    }
+
+    /**
+     * It moves every row to a wider stride in place, from the last row down so
+     * none is overwritten before it moves, and zeroes the new words of each.
+     *
+     * @param stride the new number of words per row
+     */
+    private void restrideRows(int stride) {
+        rows.ensureCapacity(8L * Math.max(numRows, 1) * stride);
+        for (int i = numRows - 1; i >= 0; i--) {
+            rows.copyLongs(8L * i * rowStride, 8L * i * stride, rowStride);
+            rows.clearLongs(8L * i * stride + 8L * rowStride, stride - rowStride);
+        }
+        setStrides(stride, colStride);
+    }
+
+    /**
+     * It moves every column to a wider stride in place, as restrideRows does for rows.
+     *
+     * @param stride the new number of words per column
+     */
+    private void restrideColumns(int stride) {
+        cols.ensureCapacity(8L * Math.max(numCols, 1) * stride);
+        for (int j = numCols - 1; j >= 0; j--) {
+            cols.copyLongs(8L * j * colStride, 8L * j * stride, colStride);
+            cols.clearLongs(8L * j * stride + 8L * colStride, stride - colStride);
+        }
+        setStrides(rowStride, stride);
+    }
+
+    /**
+     * It ORs a bitset into a run of words.
+     *
+     * @param region the region holding the words
+     * @param offset the offset of the first word
+     * @param bits the bitset
+     * @param stride the number of words in the run
+     * @return the number of bits newly set
+     */
+    private static int or(MemoryRegion region, long offset, long[] bits, int stride) {
+        int words = Math.min(bits.length, stride);
+        int added = 0;
+        for (int w = 0; w < words; w++) {
+            if (bits[w] == 0)
+                continue;
+            long word = region.getLong(offset + 8L * w);
+            added += Long.bitCount(bits[w] & ~word);
+            region.putLong(offset + 8L * w, word | bits[w]);
+        }
+        return added;
+    }
+
+    /**
+     * It sets one bit in a run of words.
+     *
+     * @param region the region holding the words
+     * @param offset the offset of the first word
+     * @param bit the bit index
+     */
+    private static void setBit(MemoryRegion region, long offset, int bit) {
+        long word = offset + 8L * (bit >>> 6);
+        region.putLong(word, region.getLong(word) | (1L << bit));
+    }
+
+    /**
+     * It clears one bit in a run of words.
+     *
+     * @param region the region holding the words
+     * @param offset the offset of the first word
+     * @param bit the bit index
+     */
+    private static void clearBit(MemoryRegion region, long offset, int bit) {
+        long word = offset + 8L * (bit >>> 6);
+        region.putLong(word, region.getLong(word) & ~(1L << bit));
+    }
+
+    /**
+     * It finds the next set bit in a run of words.
+     *
+     * @param region the region holding the words
+     * @param offset the offset of the first word
+     * @param stride the number of words in the run
+     * @param from the bit index to start searching from
+     * @return the index of the next set bit, or -1 if there is none
+     */
+    private static int nextSetBit(MemoryRegion region, long offset, int stride, int from) {
+        int w = from >>> 6;
+        if (from < 0 || w >= stride)
+            return -1;
+        long word = region.getLong(offset + 8L * w) & (-1L << from);
+        while (word == 0) {
+            if (++w == stride)
+                return -1;
+            word = region.getLong(offset + 8L * w);
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * A mutator which sets the number of rows and columns, in memory and in the meta region.
+     *
+     * @param numRows the number of donor rows
+     * @param numCols the number of recipient columns
+     */
+    private void setSize(int numRows, int numCols) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        meta.putLong(META_ROWS, numRows);
+        meta.putLong(META_COLS, numCols);
+    }
+
+    /**
+     * A mutator which sets the row and column strides, in memory and in the meta region.
+     *
+     * @param rowStride the number of words per row
+     * @param colStride the number of words per column
+     */
+    private void setStrides(int rowStride, int colStride) {
+        this.rowStride = rowStride;
+        this.colStride = colStride;
+        meta.putLong(META_ROW_STRIDE, rowStride);
+        meta.putLong(META_COL_STRIDE, colStride);
+    }
+
+    /**
+     * It rejects changes to a matrix opened read-only.
+     */
+    private void checkWritable() {
+        if (readOnly)
+            throw new IllegalStateException("The adjacency matrix is read-only");
+    }
+}
@@ -0,0 +1,546 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class stores one side of a TransplantGraph, donors or recipients, as
+ * columns in MemoryRegions outside the Java heap, so a very large registry adds
+ * almost nothing for the garbage collector to trace. The columns are the same as
+ * HeapPatientStore's, with names in a character arena that is compacted in place.
+ *
+ * <p>The store either lives in direct memory or is mapped from one file per column
+ * in a directory, in which case the files are the live store: every change is
+ * made in the mapped memory, and reopening the directory gets the patients back
+ * without loading anything. A small meta file holds the counts. Organ codes are
+ * only meaningful within one run, so the store keeps its own list of organ names
+ * in a text file and translates between its codes and the OrganDictionary's.
+ * A store opened read-only rejects every change. Compacting the names moves them
+ * under any other mapping of the arena, so OffHeapStorage never lets a directory
+ * be open for writing and for reading at once.</p>
+ */
+public class OffHeapPatientStore implements PatientStore {
+    private static final long MAGIC = 0x5450535430303031L;
+    private static final int META_SLOTS = 8;
+    private static final int META_COUNT = 16;
+    private static final int META_NAMES_END = 24;
+    private static final int META_NAMES_GARBAGE = 32;
+    private static final int META_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final byte LIVE = 1;
+    private final boolean isDonor;
+    private final boolean readOnly;
+    private final Path directory;
+    private final String prefix;
+    private final MemoryRegion meta;
+    private final MemoryRegion flags;
+    private final MemoryRegion ages;
+    private final MemoryRegion organs;
+    private final MemoryRegion bloodCodes;
+    private final MemoryRegion urgencies;
+    private final MemoryRegion waitingDays;
+    private final MemoryRegion pairs;
+    private final MemoryRegion nameStarts;
+    private final MemoryRegion nameLengths;
+    private final MemoryRegion names;
+    private final List<String> organNames;
+    private int[] organToRun;
+    private int[] organToStore;
+    private PatientStore partner;
+    private int slots;
+    private int count;
+    private long namesEnd;
+    private long namesGarbage;
+
+    /**
+     * Constructs an empty OffHeapPatientStore in direct memory.
+     *
+     * @param isDonor true if the store holds donors, false if recipients
+     */
+    public OffHeapPatientStore(boolean isDonor) {
+        this.isDonor = isDonor;
+        readOnly = false;
+        directory = null;
+        prefix = null;
+        meta = MemoryRegion.allocate(META_SIZE);
+        flags = MemoryRegion.allocate(INITIAL_CAPACITY);
+        ages = MemoryRegion.allocate(4L * INITIAL_CAPACITY);
+        organs = MemoryRegion.allocate(4L * INITIAL_CAPACITY);
+        bloodCodes = MemoryRegion.allocate(INITIAL_CAPACITY);
+        urgencies = MemoryRegion.allocate(4L * INITIAL_CAPACITY);
+        waitingDays = MemoryRegion.allocate(4L * INITIAL_CAPACITY);
+        pairs = MemoryRegion.allocate(4L * INITIAL_CAPACITY);
+        nameStarts = MemoryRegion.allocate(8L * INITIAL_CAPACITY);
+        nameLengths = MemoryRegion.allocate(4L * INITIAL_CAPACITY);
+        names = MemoryRegion.allocate(32L * INITIAL_CAPACITY);
+        organNames = new ArrayList<>();
+        organToRun = new int[0];
+        organToStore = new int[0];
+        meta.putLong(0, MAGIC);
+    }
+
+    /**
+     * Constructs an OffHeapPatientStore mapped from its files in a directory.
+     *
+     * @param directory the directory holding the store's files
+     * @param isDonor true if the store holds donors, false if recipients
+     * @param readOnly true to map the files read-only
+     * @throws IOException if a file cannot be mapped, or the store is not valid
+     */
+    private OffHeapPatientStore(Path directory, boolean isDonor, boolean readOnly) throws IOException {
+        this.isDonor = isDonor;
+        this.readOnly = readOnly;
+        this.directory = directory;
+        prefix = isDonor ? "donors" : "recipients";
+        meta = column("meta", META_SIZE);
+        flags = column("flags", INITIAL_CAPACITY);
+        ages = column("ages", 4L * INITIAL_CAPACITY);
+        organs = column("organs", 4L * INITIAL_CAPACITY);
+        bloodCodes = column("blood", INITIAL_CAPACITY);
+        urgencies = column("urgency", 4L * INITIAL_CAPACITY);
+        waitingDays = column("waiting", 4L * INITIAL_CAPACITY);
+        pairs = column("pairs", 4L * INITIAL_CAPACITY);
+        nameStarts = column("namestarts", 8L * INITIAL_CAPACITY);
+        nameLengths = column("namelengths", 4L * INITIAL_CAPACITY);
+        names = column("names", 32L * INITIAL_CAPACITY);
+        Path organFile = directory.resolve(prefix + ".organnames");
+        organNames = Files.exists(organFile)
+                ? new ArrayList<>(Files.readAllLines(organFile, StandardCharsets.UTF_8)) : new ArrayList<>();
+        organToRun = new int[organNames.size()];
+        organToStore = new int[0];
+        for (int code = 0; code < organToRun.length; code++) {
+            organToRun[code] = OrganDictionary.encode(organNames.get(code));
+            mapOrgan(organToRun[code], code);
+        }
+        if (!readOnly && meta.getLong(0) == 0)
+            meta.putLong(0, MAGIC);
+        if (meta.size() < META_SIZE || meta.getLong(0) != MAGIC)
+            throw new IOException(directory + " does not hold a patient store for " + prefix);
+        slots = (int) meta.getLong(META_SLOTS);
+        count = (int) meta.getLong(META_COUNT);
+        namesEnd = meta.getLong(META_NAMES_END);
+        namesGarbage = meta.getLong(META_NAMES_GARBAGE);
+        if (flags.size() < slots || names.size() < 2 * namesEnd)
+            throw new IOException("The " + prefix + " files in " + directory + " are truncated");
+    }
+
+    /**
+     * It opens the store of one side kept in a directory, creating it if the
+     * directory holds none.
+     *
+     * @param directory the directory holding the store's files
+     * @param isDonor true for the donors, false for the recipients
+     * @param readOnly true to map the files read-only, in which case they must exist
+     * @return the store
+     * @throws IOException if a file cannot be mapped, or the store is not valid
+     */
+    public static OffHeapPatientStore open(Path directory, boolean isDonor, boolean readOnly) throws IOException {
+        return new OffHeapPatientStore(directory, isDonor, readOnly);
+    }
+
+    /**
+     * It copies a patient's attributes into a slot, growing every column if the
+     * slot lies beyond its end.
+     *
+     * @param id the slot, which becomes the patient's ID
+     * @param p the Patient whose attributes are copied
+     */
+    @Override
+    public void put(int id, Patient p) {
+        checkWritable();
+        extend(id + 1);
+        flags.putByte(id, LIVE);
+        ages.putInt(4L * id, p.getAge());
+        organs.putInt(4L * id, storeCode(p.getOrganCode()));
+        bloodCodes.putByte(id, p.getBloodCode());
+        urgencies.putInt(4L * id, p.getUrgency());
+        waitingDays.putInt(4L * id, p.getWaitingDays());
+        pairs.putInt(4L * id, -1);
+        appendName(id, p.getName());
+        setCount(count + 1);
+    }
+
+    /**
+     * It grows the store to at least the given number of slots, the new ones empty.
+     *
+     * @param slots the number of slots
+     */
+    @Override
+    public void extend(int slots) {
+        checkWritable();
+        if (slots <= this.slots)
+            return;
+        flags.ensureCapacity(slots);
+        ages.ensureCapacity(4L * slots);
+        organs.ensureCapacity(4L * slots);
+        bloodCodes.ensureCapacity(slots);
+        urgencies.ensureCapacity(4L * slots);
+        waitingDays.ensureCapacity(4L * slots);
+        pairs.ensureCapacity(4L * slots);
+        nameStarts.ensureCapacity(8L * slots);
+        nameLengths.ensureCapacity(4L * slots);
+        flags.clear(this.slots, slots - this.slots);
+        this.slots = slots;
+        meta.putLong(META_SLOTS, slots);
+    }
+
+    /**
+     * It empties a slot, leaving a tombstone, and compacts the name arena once it
+     * is mostly garbage.
+     *
+     * @param id the slot to empty
+     * @return true if the slot was occupied, otherwise false
+     */
+    @Override
+    public boolean remove(int id) {
+        checkWritable();
+        if (!isLive(id))
+            return false;
+        flags.putByte(id, (byte) 0);
+        pairs.putInt(4L * id, -1);
+        setNamesGarbage(namesGarbage + nameLengths.getInt(4L * id));
+        nameLengths.putInt(4L * id, 0);
+        setCount(count - 1);
+        if (namesGarbage > 64L * INITIAL_CAPACITY && namesGarbage > namesEnd / 2)
+            compactNames();
+        return true;
+    }
+
+    /**
+     * It moves every patient down to a dense run of slots in ID order, in place,
+     * and compacts the name arena.
+     *
+     * @return the new ID of each old slot, or -1 for a tombstone
+     */
+    @Override
+    public int[] compact() {
+        checkWritable();
+        int[] newIDs = new int[slots];
+        int next = 0;
+        for (int id = 0; id < slots; id++) {
+            if (!isLive(id)) {
+                newIDs[id] = -1;
+                continue;
+            }
+            newIDs[id] = next;
+            if (next != id) {
+                flags.putByte(next, LIVE);
+                ages.putInt(4L * next, ages.getInt(4L * id));
+                organs.putInt(4L * next, organs.getInt(4L * id));
+                bloodCodes.putByte(next, bloodCodes.getByte(id));
+                urgencies.putInt(4L * next, urgencies.getInt(4L * id));
+                waitingDays.putInt(4L * next, waitingDays.getInt(4L * id));
+                pairs.putInt(4L * next, pairs.getInt(4L * id));
+                nameStarts.putLong(8L * next, nameStarts.getLong(8L * id));
+                nameLengths.putInt(4L * next, nameLengths.getInt(4L * id));
+            }
+            next++;
+        }
+        for (int id = next; id < slots; id++) {
+            flags.putByte(id, (byte) 0);
+            nameLengths.putInt(4L * id, 0);
+        }
+        slots = next;
+        meta.putLong(META_SLOTS, slots);
+        compactNames();
+        return newIDs;
+    }
+
+    /**
+     * It checks if a slot holds a patient.
+     *
+     * @param id the slot
+     * @return true if the slot is in range and occupied, otherwise false
+     */
+    @Override
+    public boolean isLive(int id) {
+        return id >= 0 && id < slots && (flags.getByte(id) & LIVE) != 0;
+    }
+
+    /**
+     * An accessor which checks if the store holds donors.
+     *
+     * @return true if donors, false if recipients
+     */
+    @Override
+    public boolean isDonor() {
+        return isDonor;
+    }
+
+    /**
+     * An accessor which checks if the store rejects changes.
+     *
+     * @return true if the store was opened read-only
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * An accessor which gets the store of the other side of the graph.
+     *
+     * @return the partner PatientStore
+     */
+    @Override
+    public PatientStore getPartner() {
+        return partner;
+    }
+
+    /**
+     * A mutator which sets the store of the other side of the graph.
+     *
+     * @param partner the partner PatientStore
+     */
+    @Override
+    public void setPartner(PatientStore partner) {
+        this.partner = partner;
+    }
+
+    /**
+     * An accessor which gets the number of slots, including empty ones.
+     *
+     * @return the number of slots
+     */
+    @Override
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * An accessor which gets the number of occupied slots.
+     *
+     * @return the number of patients
+     */
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * An accessor which gets the name of the patient in a slot, copied out of
+     * the arena.
+     *
+     * @param id the slot
+     * @return the name
+     */
+    @Override
+    public String getName(int id) {
+        long start = nameStarts.getLong(8L * id);
+        char[] name = new char[nameLengths.getInt(4L * id)];
+        for (int k = 0; k < name.length; k++)
+            name[k] = names.getChar(2 * (start + k));
+        return new String(name);
+    }
+
+    /**
+     * An accessor which gets the age of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the age
+     */
+    @Override
+    public int getAge(int id) {
+        return ages.getInt(4L * id);
+    }
+
+    /**
+     * An accessor which gets the OrganDictionary code of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the organ code
+     */
+    @Override
+    public int getOrganCode(int id) {
+        return organToRun[organs.getInt(4L * id)];
+    }
+
+    /**
+     * An accessor which gets the blood type code of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the blood type code
+     */
+    @Override
+    public byte getBloodCode(int id) {
+        return bloodCodes.getByte(id);
+    }
+
+    /**
+     * An accessor which gets the urgency of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the urgency
+     */
+    @Override
+    public int getUrgency(int id) {
+        return urgencies.getInt(4L * id);
+    }
+
+    /**
+     * An accessor which gets the waiting time of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the waiting time in days
+     */
+    @Override
+    public int getWaitingDays(int id) {
+        return waitingDays.getInt(4L * id);
+    }
+
+    /**
+     * An accessor which gets the ID of the patient linked with the one in a slot.
+     *
+     * @param id the slot
+     * @return the linked patient's ID, or -1 if there is none
+     */
+    @Override
+    public int getPair(int id) {
+        return pairs.getInt(4L * id);
+    }
+
+    /**
+     * A mutator which sets the ID of the patient linked with the one in a slot.
+     *
+     * @param id the slot
+     * @param pair the linked patient's ID in the partner store, or -1 for none
+     */
+    @Override
+    public void setPair(int id, int pair) {
+        checkWritable();
+        pairs.putInt(4L * id, pair);
+    }
+
+    /**
+     * It forces every mapped column to its file.
+     */
+    @Override
+    public void force() {
+        for (MemoryRegion region : new MemoryRegion[]{flags, ages, organs, bloodCodes, urgencies, waitingDays,
+                pairs, nameStarts, nameLengths, names, meta})
+            region.force();
+    }
+
+    /**
+     * It maps one column file of the store.
+     *
+     * @param column the column name
+     * @param size the initial size in bytes of a new column
+     * @return the mapped region
+     * @throws IOException if the file cannot be mapped
+     */
+    private MemoryRegion column(String column, long size) throws IOException {
+        return MemoryRegion.map(directory.resolve(prefix + "." + column), size, readOnly);
+    }
+
+    /**
+     * It copies a name to the end of the arena and points a slot at it.
+     *
+     * @param id the slot
+     * @param name the name
+     */
+    private void appendName(int id, String name) {
+        names.ensureCapacity(2 * (namesEnd + name.length()));
+        for (int k = 0; k < name.length(); k++)
+            names.putChar(2 * (namesEnd + k), name.charAt(k));
+        nameStarts.putLong(8L * id, namesEnd);
+        nameLengths.putInt(4L * id, name.length());
+        namesEnd += name.length();
+        meta.putLong(META_NAMES_END, namesEnd);
+    }
+
+    /**
+     * It compacts the name arena in place: the names of occupied slots are first
+     * appended in slot order past the end of the arena, then the whole run is
+     * moved down to its start.
+     */
+    private void compactNames() {
+        long live = namesEnd - namesGarbage;
+        names.ensureCapacity(2 * (namesEnd + live));
+        long end = namesEnd;
+        for (int id = 0; id < slots; id++) {
+            long start = nameStarts.getLong(8L * id);
+            int length = nameLengths.getInt(4L * id);
+            nameStarts.putLong(8L * id, end - namesEnd);
+            for (int k = 0; k < length; k++)
+                names.putChar(2 * (end + k), names.getChar(2 * (start + k)));
+            end += length;
+        }
+        for (long k = 0; k < end - namesEnd; k++)
+            names.putChar(2 * k, names.getChar(2 * (namesEnd + k)));
+        namesEnd = end - namesEnd;
+        meta.putLong(META_NAMES_END, namesEnd);
+        setNamesGarbage(0);
+    }
+
+    /**
+     * It translates an OrganDictionary code to the store's own code, adding the
+     * organ to the store's list if it is new.
+     *
+     * @param runCode the OrganDictionary code
+     * @return the store's code
+     */
+    private int storeCode(int runCode) {
+        if (runCode < organToStore.length && organToStore[runCode] >= 0)
+            return organToStore[runCode];
+        int code = organNames.size();
+        organNames.add(OrganDictionary.name(runCode));
+        organToRun = Arrays.copyOf(organToRun, code + 1);
+        organToRun[code] = runCode;
+        mapOrgan(runCode, code);
+        if (directory != null) {
+            try {
+                Files.write(directory.resolve(prefix + ".organnames"), organNames, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * It records the store's code for an OrganDictionary code.
+     *
+     * @param runCode the OrganDictionary code
+     * @param code the store's code
+     */
+    private void mapOrgan(int runCode, int code) {
+        if (runCode >= organToStore.length) {
+            int old = organToStore.length;
+            organToStore = Arrays.copyOf(organToStore, runCode + 1);
+            Arrays.fill(organToStore, old, organToStore.length, -1);
+        }
+        organToStore[runCode] = code;
+    }
+
+    /**
+     * A mutator which sets the number of occupied slots, in memory and in the meta column.
+     *
+     * @param count the number of patients
+     */
+    private void setCount(int count) {
+        this.count = count;
+        meta.putLong(META_COUNT, count);
+    }
+
+    /**
+     * A mutator which sets the number of garbage characters in the name arena.
+     *
+     * @param garbage the number of characters
+     */
+    private void setNamesGarbage(long garbage) {
+        namesGarbage = garbage;
+        meta.putLong(META_NAMES_GARBAGE, garbage);
+    }
+
+    /**
+     * It rejects changes to a store opened read-only.
+     */
+    private void checkWritable() {
+        if (readOnly)
+            throw new IllegalStateException("The " + (isDonor ? "donor" : "recipient") + " store is read-only");
+    }
+}
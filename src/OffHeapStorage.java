@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class builds TransplantGraphs whose stores and matrix live outside the
+ * Java heap, so the patient columns and the matrix of a registry of millions of
+ * patients leave the garbage collector almost nothing to trace. A graph is either
+ * allocated in direct memory, or kept in a directory of mapped files that are the
+ * graph itself, so reopening the directory reads no patient data through the heap.
+ *
+ * <p>The indexes over the patients are not stored: the CompatibilityIndex with the
+ * sorted orders and PatientIndexes over it, and the NameIndexes, are rebuilt on the
+ * heap by a scan of the stores every time a directory is opened. Opening therefore
+ * takes time linear in the number of patients, and those indexes take heap in
+ * proportion to it, even though the columns and the matrix do not.</p>
+ *
+ * <p>A directory is either open for writing by one graph, or open read-only by any
+ * number of graphs, never both. A writer changes the files in place, moving rows
+ * of the matrix when it outgrows their stride and names when it compacts them, and
+ * a reader's indexes are only built once, so a reader could not follow a writer
+ * safely. The rule is kept with an operating-system lock on a lock file in the
+ * directory, taken when the graph is opened and held until the process exits, as
+ * a mapped graph is never closed; opening the directory against the rule fails
+ * with an IOException.</p>
+ */
+public final class OffHeapStorage {
+    private static final String LOCK_FILE = "graph.lock";
+    private static final Map<Path, FileLock> LOCKS = new HashMap<>();
+
+    private OffHeapStorage() {
+    }
+
+    /**
+     * It creates an empty graph in direct memory.
+     *
+     * @return the TransplantGraph
+     */
+    public static TransplantGraph allocate() {
+        return new TransplantGraph(new OffHeapPatientStore(true), new OffHeapPatientStore(false),
+                new OffHeapAdjacencyMatrix());
+    }
+
+    /**
+     * It opens the graph kept in a directory for reading and writing, creating
+     * the directory and an empty graph if there is none. Changes are made in the
+     * mapped files directly; call force() on the graph to flush them to disk.
+     *
+     * @param directory the directory holding the graph files
+     * @return the TransplantGraph
+     * @throws IOException if a file cannot be created or mapped, or is not valid,
+     *                     or the directory is already open anywhere
+     */
+    public static TransplantGraph open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        boolean locked = lock(directory, false);
+        try {
+            return new TransplantGraph(OffHeapPatientStore.open(directory, true, false),
+                    OffHeapPatientStore.open(directory, false, false), OffHeapAdjacencyMatrix.open(directory, false));
+        } catch (IOException | RuntimeException e) {
+            unlock(directory, locked, e);
+            throw e;
+        }
+    }
+
+    /**
+     * It opens the graph kept in a directory read-only. The graph rejects every
+     * change with an IllegalStateException. No writer can open the directory
+     * while it is open read-only, so the files stay as they were when mapped.
+     *
+     * @param directory the directory holding the graph files
+     * @return the TransplantGraph
+     * @throws IOException if a file is missing or cannot be mapped, or is not valid,
+     *                     if the directory is open for writing, or if its matrix is
+     *                     out of step with its patients, as after a writer crashed
+     *                     without forcing, which only opening it for writing repairs
+     */
+    public static TransplantGraph openReadOnly(Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            throw new IOException(directory + " does not hold a graph");
+        boolean locked = lock(directory, true);
+        try {
+            OffHeapPatientStore donors = OffHeapPatientStore.open(directory, true, true);
+            OffHeapPatientStore recipients = OffHeapPatientStore.open(directory, false, true);
+            OffHeapAdjacencyMatrix connections = OffHeapAdjacencyMatrix.open(directory, true);
+            if (connections.getNumRows() != donors.getSlots() || connections.getNumColumns() != recipients.getSlots())
+                throw new IOException("The matrix in " + directory + " is out of step with its patients;"
+                        + " open it for writing to rebuild it");
+            return new TransplantGraph(donors, recipients, connections);
+        } catch (IOException | RuntimeException e) {
+            unlock(directory, locked, e);
+            throw e;
+        }
+    }
+
+    /**
+     * It copies a graph into a directory of mapped files, keeping every patient
+     * ID, tombstone and paired-donation link, and returns the graph opened there.
+     * The directory must not already hold a graph.
+     *
+     * @param source the graph to copy
+     * @param directory the directory to hold the graph files
+     * @return the copied TransplantGraph
+     * @throws IOException if a file cannot be created or mapped, or the directory
+     *                     is already open anywhere
+     */
+    public static TransplantGraph copy(TransplantGraph source, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        boolean locked = lock(directory, false);
+        try {
+            OffHeapPatientStore donors = OffHeapPatientStore.open(directory, true, false);
+            OffHeapPatientStore recipients = OffHeapPatientStore.open(directory, false, false);
+            if (donors.getSlots() > 0 || recipients.getSlots() > 0)
+                throw new IllegalArgumentException(directory + " already holds a graph");
+            copy(source.getDonorStore(), donors);
+            copy(source.getRecipientStore(), recipients);
+            TransplantGraph graph = new TransplantGraph(donors, recipients,
+                    OffHeapAdjacencyMatrix.open(directory, false));
+            graph.force();
+            return graph;
+        } catch (IOException | RuntimeException e) {
+            unlock(directory, locked, e);
+            throw e;
+        }
+    }
+
+    /**
+     * It locks a directory for the rest of the process, shared for readers and
+     * exclusively for a writer. The operating system arbitrates between processes;
+     * within this one, where file locks may not overlap, readers share the first
+     * reader's lock and anything else is refused.
+     *
+     * @param directory the directory holding the graph files
+     * @param shared true for a reader, false for a writer
+     * @return true if a lock was taken, false if a reader joined another's
+     * @throws IOException if the lock file cannot be opened, or the directory is
+     *                     open in a way that conflicts
+     */
+    private static synchronized boolean lock(Path directory, boolean shared) throws IOException {
+        Path key = directory.toRealPath();
+        FileLock held = LOCKS.get(key);
+        if (held != null) {
+            if (shared && held.isShared())
+                return false;
+            throw new IOException(directory + " is already open " + (held.isShared() ? "read-only" : "for writing")
+                    + " in this process");
+        }
+        FileChannel channel = FileChannel.open(key.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock(0, Long.MAX_VALUE, shared);
+        } catch (IOException | OverlappingFileLockException e) {
+            channel.close();
+            throw e instanceof IOException io ? io : new IOException(directory + " is locked in this process", e);
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException(directory + (shared ? " is open for writing" : " is open")
+                    + " in another process");
+        }
+        LOCKS.put(key, lock);
+        return true;
+    }
+
+    /**
+     * It releases the lock an open that then failed had taken, so the directory
+     * can be opened again. A reader that joined another's lock leaves it held.
+     *
+     * @param directory the directory holding the graph files
+     * @param locked true if the failed open took the lock itself
+     * @param failure the failure of the open, to which one in releasing is added
+     */
+    private static synchronized void unlock(Path directory, boolean locked, Exception failure) {
+        if (!locked)
+            return;
+        try {
+            FileLock lock = LOCKS.remove(directory.toRealPath());
+            if (lock != null)
+                lock.channel().close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * It copies every occupied slot of a store, with its link, into the same slot
+     * of another.
+     *
+     * @param from the store to copy
+     * @param to the empty store to fill
+     */
+    private static void copy(PatientStore from, PatientStore to) {
+        to.extend(from.getSlots());
+        for (int id = 0; id < from.getSlots(); id++) {
+            if (from.isLive(id)) {
+                to.put(id, from.view(id));
+                to.setPair(id, from.getPair(id));
+            }
+        }
+    }
+}
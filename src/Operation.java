@@ -0,0 +1,32 @@
+/**
+ * This enum names the operations whose latencies OperationMetrics records: the
+ * structural changes to a TransplantGraph, its bulk builds, and the paths that
+ * load and save it. Each has the name it is published under over JMX.
+ */
+public enum Operation {
+    ADD_DONOR("addDonor"), ADD_RECIPIENT("addRecipient"),
+    REMOVE_DONOR("removeDonor"), REMOVE_RECIPIENT("removeRecipient"),
+    LINK_PAIR("linkPair"), ADD_ALL("addAll"), REBUILD("rebuildConnections"), COMPACT("compact"),
+    BUILD_FROM_FILES("buildFromFiles"), SNAPSHOT_SAVE("snapshotSave"), SNAPSHOT_LOAD("snapshotLoad"),
+    LOG_APPEND("logAppend"), SORT("sort"), QUERY("query");
+
+    private final String name;
+
+    /**
+     * Constructs an Operation with its published name.
+     *
+     * @param name the name, in camel case
+     */
+    Operation(String name) {
+        this.name = name;
+    }
+
+    /**
+     * An accessor which gets the name the operation is published under.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+}
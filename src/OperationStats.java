@@ -0,0 +1,95 @@
+/**
+ * This class publishes the LatencyHistogram of one operation as a standard MBean.
+ * Each attribute is read from the histogram when asked for, so the MBean holds no
+ * state of its own.
+ */
+public class OperationStats implements OperationStatsMBean {
+    private final LatencyHistogram histogram;
+
+    /**
+     * Constructs an OperationStats over a histogram.
+     *
+     * @param histogram the histogram to publish
+     */
+    public OperationStats(LatencyHistogram histogram) {
+        this.histogram = histogram;
+    }
+
+    /**
+     * An accessor which gets the number of times the operation was recorded.
+     *
+     * @return the count
+     */
+    @Override
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    /**
+     * An accessor which gets the mean latency.
+     *
+     * @return the mean in microseconds
+     */
+    @Override
+    public double getMeanMicros() {
+        return histogram.getMean() / 1e3;
+    }
+
+    /**
+     * An accessor which gets the median latency.
+     *
+     * @return the median in microseconds
+     */
+    @Override
+    public double getP50Micros() {
+        return histogram.getValueAtPercentile(50) / 1e3;
+    }
+
+    /**
+     * An accessor which gets the 90th percentile latency.
+     *
+     * @return the latency in microseconds
+     */
+    @Override
+    public double getP90Micros() {
+        return histogram.getValueAtPercentile(90) / 1e3;
+    }
+
+    /**
+     * An accessor which gets the 99th percentile latency.
+     *
+     * @return the latency in microseconds
+     */
+    @Override
+    public double getP99Micros() {
+        return histogram.getValueAtPercentile(99) / 1e3;
+    }
+
+    /**
+     * An accessor which gets the 99.9th percentile latency.
+     *
+     * @return the latency in microseconds
+     */
+    @Override
+    public double getP999Micros() {
+        return histogram.getValueAtPercentile(99.9) / 1e3;
+    }
+
+    /**
+     * An accessor which gets the largest latency.
+     *
+     * @return the maximum in microseconds
+     */
+    @Override
+    public double getMaxMicros() {
+        return histogram.getMax() / 1e3;
+    }
+
+    /**
+     * It clears the recorded latencies.
+     */
+    @Override
+    public void reset() {
+        histogram.reset();
+    }
+}
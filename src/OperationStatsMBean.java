@@ -0,0 +1,60 @@
+/**
+ * This interface is the JMX management interface of one timed operation, read
+ * from its LatencyHistogram. Latencies are in microseconds.
+ */
+public interface OperationStatsMBean {
+
+    /**
+     * An accessor which gets the number of times the operation was recorded.
+     *
+     * @return the count
+     */
+    long getCount();
+
+    /**
+     * An accessor which gets the mean latency.
+     *
+     * @return the mean in microseconds
+     */
+    double getMeanMicros();
+
+    /**
+     * An accessor which gets the median latency.
+     *
+     * @return the median in microseconds
+     */
+    double getP50Micros();
+
+    /**
+     * An accessor which gets the 90th percentile latency.
+     *
+     * @return the latency in microseconds
+     */
+    double getP90Micros();
+
+    /**
+     * An accessor which gets the 99th percentile latency.
+     *
+     * @return the latency in microseconds
+     */
+    double getP99Micros();
+
+    /**
+     * An accessor which gets the 99.9th percentile latency.
+     *
+     * @return the latency in microseconds
+     */
+    double getP999Micros();
+
+    /**
+     * An accessor which gets the largest latency.
+     *
+     * @return the maximum in microseconds
+     */
+    double getMaxMicros();
+
+    /**
+     * It clears the recorded latencies.
+     */
+    void reset();
+}
@@ -1,19 +1,21 @@
 import java.util.Comparator;
 
 /**
- * This comparator orders Patients by their organ string, ignoring case.
+ * This comparator orders Patients alphabetically by organ, using the precomputed
+ * OrganDictionary rank of each organ code, and patients with the same organ by ID.
  */
 public class OrganComparator implements Comparator<Patient> {
 
     /**
-     * It compares two patients by organ needed or donated, case-insensitive.
+     * It compares two patients by organ needed or donated.
      *
      * @param p1 the first patient
      * @param p2 the second patient
-     * @return negative if p1’s organ precedes p2’s, zero if equal, positive if follows
+     * @return negative if p1’s organ precedes p2’s, zero if both have the same ID, positive if follows
      */
     @Override
     public int compare(Patient p1, Patient p2) {
-        return p1.getOrgan().compareToIgnoreCase(p2.getOrgan());
+        int order = Integer.compare(OrganDictionary.rank(p1.getOrganCode()), OrganDictionary.rank(p2.getOrganCode()));
+        return order != 0 ? order : Integer.compare(p1.getID(), p2.getID());
     }
 }
@@ -0,0 +1,135 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class canonicalizes organ names to small integer codes shared by every
+ * Patient, so organs are matched and sorted by comparing ints rather than strings.
+ * Names are compared ignoring case and surrounding or repeated whitespace, so
+ * "kidney", "Kidney " and "KIDNEY" all map to the same code.
+ */
+public final class OrganDictionary {
+    private static final HashMap<String, Integer> codes = new HashMap<>();
+    private static volatile String[] names = new String[0];
+    private static volatile int[] ranks = new int[0];
+
+    private OrganDictionary() {
+    }
+
+    /**
+     * It returns the code for the given organ name, registering it if it is new.
+     *
+     * @param organ the organ name
+     * @return the organ code
+     */
+    public static synchronized int encode(String organ) {
+        String key = normalize(organ);
+        Integer code = codes.get(key);
+        if (code != null)
+            return code;
+        int next = names.length;
+        codes.put(key, next);
+        String[] grown = Arrays.copyOf(names, next + 1);
+        grown[next] = displayName(key);
+        ranks = rank(grown);
+        names = grown;
+        return next;
+    }
+
+    /**
+     * It registers an alternative spelling for an organ, so both encode to the same code.
+     *
+     * @param alias the alternative name (e.g., "renal")
+     * @param organ the organ name it stands for (e.g., "kidney")
+     * @return the organ code
+     * @throws IllegalArgumentException if the alias already names a different organ
+     */
+    public static synchronized int addAlias(String alias, String organ) {
+        int code = encode(organ);
+        Integer existing = codes.putIfAbsent(normalize(alias), code);
+        if (existing != null && existing != code)
+            throw new IllegalArgumentException("Alias " + alias + " already names " + names[existing]);
+        return code;
+    }
+
+    /**
+     * It looks up the code for the given organ name without registering it.
+     *
+     * @param organ the organ name
+     * @return the organ code, or -1 if the organ is unknown
+     */
+    public static synchronized int lookup(String organ) {
+        Integer code = codes.get(normalize(organ));
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * It gets the canonical display name for an organ code.
+     *
+     * @param code the organ code
+     * @return the canonical organ name
+     */
+    public static String name(int code) {
+        return names[code];
+    }
+
+    /**
+     * It gets the alphabetical rank of an organ code among all registered organs.
+     *
+     * @param code the organ code
+     * @return the rank, where lower ranks sort first
+     */
+    public static int rank(int code) {
+        return ranks[code];
+    }
+
+    /**
+     * An accessor which gets the number of registered organs.
+     *
+     * @return the number of organ codes
+     */
+    public static int size() {
+        return names.length;
+    }
+
+    /**
+     * It normalizes an organ name to its lookup key: trimmed, single-spaced and lowercase.
+     *
+     * @param organ the organ name
+     * @return the lookup key
+     */
+    private static String normalize(String organ) {
+        return organ.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    /**
+     * It capitalizes each word of a lookup key to form the display name.
+     *
+     * @param key the lookup key
+     * @return the display name
+     */
+    private static String displayName(String key) {
+        char[] chars = key.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (i == 0 || chars[i - 1] == ' ')
+                chars[i] = Character.toUpperCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * It computes the alphabetical rank of each name.
+     *
+     * @param names the names indexed by code
+     * @return the ranks indexed by code
+     */
+    private static int[] rank(String[] names) {
+        Integer[] order = new Integer[names.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> names[a].compareToIgnoreCase(names[b]));
+        int[] result = new int[names.length];
+        for (int r = 0; r < order.length; r++)
+            result[order[r]] = r;
+        return result;
+    }
+}
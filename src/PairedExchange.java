@@ -0,0 +1,427 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * This class finds kidney paired-exchange proposals over a TransplantGraph. Every
+ * recipient linked with a willing donor forms a pair, and pair A points to pair B
+ * when A's donor is compatible with B's recipient; donors with no linked recipient
+ * act as altruists who may start a chain. The engine enumerates cycles and chains
+ * up to a length bound and then picks a maximum-score set of exchanges in which no
+ * patient takes part twice.
+ *
+ * <p>Enumeration runs over starting vertices in parallel on a fork-join pool. Each
+ * cycle is only reported from its lowest-numbered pair, so none is found twice.
+ * Selection is a weighted set packing, solved by branch and bound over donors in
+ * ID order with an upper bound that shares each exchange's score among its donors.
+ * The search starts from the greedy highest-score-first packing and is exact unless
+ * it exceeds its node budget, in which case the best packing found so far is
+ * returned.</p>
+ */
+public class PairedExchange {
+    public static final int DEFAULT_MAX_CYCLE = 3;
+    public static final int DEFAULT_MAX_CHAIN = 3;
+    private static final long NODE_BUDGET = 1_000_000L;
+    private final TransplantGraph graph;
+    private final AllocationScorer scorer;
+    private final int maxCycle;
+    private final int maxChain;
+    private final int[] pairRecipient;
+    private final int[] pairDonor;
+    private final int[] pairOfRecipient;
+    private final int[] altruists;
+    private final int[][] successors;
+    private int[][] byLowestDonor;
+    private double[] share;
+    private boolean[] covered;
+    private int[][] involved;
+    private long[] scores;
+    private int[] taken;
+    private int[] bestTaken;
+    private int numTaken;
+    private int numBest;
+    private long bestScore;
+    private long visited;
+
+    /**
+     * Constructs a PairedExchange with 3-way cycles and chains of up to three pairs.
+     *
+     * @param graph the TransplantGraph to search
+     * @param scorer the scorer for each transplant
+     */
+    public PairedExchange(TransplantGraph graph, AllocationScorer scorer) {
+        this(graph, scorer, DEFAULT_MAX_CYCLE, DEFAULT_MAX_CHAIN);
+    }
+
+    /**
+     * Constructs a PairedExchange and derives the pair graph from the current
+     * links and connections of the graph.
+     *
+     * @param graph the TransplantGraph to search
+     * @param scorer the scorer for each transplant
+     * @param maxCycle the most pairs in a cycle, at least two
+     * @param maxChain the most pairs in a chain, or zero for no chains
+     */
+    public PairedExchange(TransplantGraph graph, AllocationScorer scorer, int maxCycle, int maxChain) {
+        this.graph = graph;
+        this.scorer = scorer;
+        this.maxCycle = maxCycle;
+        this.maxChain = maxChain;
+        pairRecipient = IntStream.range(0, graph.getRecipientSlots())
+                .filter(j -> graph.getPairedDonor(j) >= 0).toArray();
+        pairDonor = new int[pairRecipient.length];
+        pairOfRecipient = new int[graph.getRecipientSlots()];
+        Arrays.fill(pairOfRecipient, -1);
+        for (int i = 0; i < pairRecipient.length; i++) {
+            pairDonor[i] = graph.getPairedDonor(pairRecipient[i]);
+            pairOfRecipient[pairRecipient[i]] = i;
+        }
+        altruists = IntStream.range(0, graph.getDonorSlots())
+                .filter(i -> graph.hasDonor(i) && graph.getPairedRecipient(i) < 0).toArray();
+        successors = new int[pairDonor.length][];
+        for (int i = 0; i < pairDonor.length; i++) {
+            successors[i] = pairsServedBy(pairDonor[i], i);
+        }
+    }
+
+    /**
+     * It finds every exchange and picks a maximum-score disjoint set of them.
+     *
+     * @param graph the TransplantGraph to search
+     * @param scorer the scorer for each transplant
+     * @return the chosen exchanges, highest score first
+     */
+    public static List<Exchange> solve(TransplantGraph graph, AllocationScorer scorer) {
+        PairedExchange engine = new PairedExchange(graph, scorer);
+        return engine.select(engine.findExchanges(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * An accessor which gets the number of recipient-donor pairs.
+     *
+     * @return the number of pairs
+     */
+    public int getNumPairs() {
+        return pairDonor.length;
+    }
+
+    /**
+     * An accessor which gets the number of donors with no linked recipient.
+     *
+     * @return the number of altruistic donors
+     */
+    public int getNumAltruists() {
+        return altruists.length;
+    }
+
+    /**
+     * It enumerates every cycle and chain within the length bounds, searching from
+     * each pair and each altruist in parallel.
+     *
+     * @param parallelism the number of worker threads
+     * @return the exchanges, cycles first, in a deterministic order
+     */
+    public List<Exchange> findExchanges(int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> Stream.concat(
+                    IntStream.range(0, pairDonor.length).parallel().boxed().flatMap(s -> cyclesFrom(s).stream()),
+                    IntStream.range(0, maxChain > 0 ? altruists.length : 0).parallel().boxed().flatMap(a -> chainsFrom(a).stream()))
+                    .collect(Collectors.toList())).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * It picks a maximum-score set of exchanges that share no donor, and hence no
+     * pair or altruist.
+     *
+     * @param exchanges the candidate exchanges
+     * @return the chosen exchanges, highest score first
+     */
+    public List<Exchange> select(List<Exchange> exchanges) {
+        int slots = graph.getDonorSlots();
+        involved = new int[exchanges.size()][];
+        scores = new long[exchanges.size()];
+        List<List<Integer>> lists = new ArrayList<>(slots);
+        for (int v = 0; v < slots; v++)
+            lists.add(new ArrayList<>());
+        share = new double[slots];
+        for (int e = 0; e < exchanges.size(); e++) {
+            involved[e] = exchanges.get(e).getInvolvedDonorIDs();
+            scores[e] = exchanges.get(e).getScore();
+            double perDonor = (double) scores[e] / involved[e].length;
+            int lowest = Integer.MAX_VALUE;
+            for (int v : involved[e]) {
+                share[v] = Math.max(share[v], perDonor);
+                lowest = Math.min(lowest, v);
+            }
+            lists.get(lowest).add(e);
+        }
+        Comparator<Integer> byScore = Comparator.comparingLong(e -> -scores[e]);
+        byLowestDonor = new int[slots][];
+        for (int v = 0; v < slots; v++) {
+            lists.get(v).sort(byScore);
+            byLowestDonor[v] = lists.get(v).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        covered = new boolean[slots];
+        taken = new int[slots];
+        bestTaken = new int[slots];
+        numTaken = 0;
+        numBest = 0;
+        bestScore = 0;
+        Integer[] order = IntStream.range(0, exchanges.size()).boxed().sorted(byScore).toArray(Integer[]::new);
+        for (int e : order) {
+            if (fits(e)) {
+                cover(e, true);
+                bestTaken[numBest++] = e;
+                bestScore += scores[e];
+            }
+        }
+        Arrays.fill(covered, false);
+        double bound = 0;
+        for (double s : share)
+            bound += s;
+        visited = 0;
+        search(0, 0, bound);
+
+        List<Exchange> chosen = new ArrayList<>(numBest);
+        for (int k = 0; k < numBest; k++)
+            chosen.add(exchanges.get(bestTaken[k]));
+        chosen.sort(Comparator.comparingLong(x -> -x.getScore()));
+        involved = null;
+        return chosen;
+    }
+
+    /**
+     * It extends the current packing by deciding, for each free donor in ID order,
+     * which exchange starting at it to take, if any. Only taking an exchange
+     * recurses, so the depth is bounded by the number of exchanges chosen.
+     *
+     * @param v the lowest donor still undecided
+     * @param score the score of the exchanges taken so far
+     * @param bound the sum of the score shares of the free donors from v on
+     */
+    private void search(int v, long score, double bound) {
+        if (++visited > NODE_BUDGET)
+            return;
+        for (; v < byLowestDonor.length; v++) {
+            if (covered[v])
+                continue;
+            if (score + bound + 1e-6 < bestScore + 1)
+                return;
+            for (int e : byLowestDonor[v]) {
+                if (!fits(e))
+                    continue;
+                double used = 0;
+                for (int u : involved[e])
+                    used += share[u];
+                cover(e, true);
+                taken[numTaken++] = e;
+                search(v + 1, score + scores[e], bound - used);
+                numTaken--;
+                cover(e, false);
+                if (visited > NODE_BUDGET)
+                    return;
+            }
+            bound -= share[v];
+        }
+        if (score > bestScore) {
+            bestScore = score;
+            numBest = numTaken;
+            System.arraycopy(taken, 0, bestTaken, 0, numTaken);
+        }
+    }
+
+    /**
+     * It checks whether an exchange shares no donor with those taken.
+     *
+     * @param e the exchange index
+     * @return true if it can be added, otherwise false
+     */
+    private boolean fits(int e) {
+        for (int v : involved[e]) {
+            if (covered[v])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * It marks or unmarks every donor of an exchange as taken.
+     *
+     * @param e the exchange index
+     * @param value true to mark, false to unmark
+     */
+    private void cover(int e, boolean value) {
+        for (int v : involved[e])
+            covered[v] = value;
+    }
+
+    /**
+     * It finds the cycles through pair s whose other pairs all have higher
+     * indexes, so each cycle is found from exactly one starting pair.
+     *
+     * @param s the starting pair
+     * @return the cycles found
+     */
+    private List<Exchange> cyclesFrom(int s) {
+        List<Exchange> found = new ArrayList<>();
+        int[] path = new int[maxCycle];
+        path[0] = s;
+        extendCycle(path, 1, found);
+        return found;
+    }
+
+    /**
+     * It extends a path of pairs by one step, recording it if it closes a cycle.
+     *
+     * @param path the pairs so far
+     * @param length the number of pairs in the path
+     * @param found the list to add cycles to
+     */
+    private void extendCycle(int[] path, int length, List<Exchange> found) {
+        for (int next : successors[path[length - 1]]) {
+            if (next == path[0] && length >= 2) {
+                found.add(cycle(path, length));
+            } else if (next > path[0] && length < maxCycle && !contains(path, length, next)) {
+                path[length] = next;
+                extendCycle(path, length + 1, found);
+            }
+        }
+    }
+
+    /**
+     * It finds the chains started by an altruist: every path of up to maxChain
+     * pairs whose first recipient the altruist can give to.
+     *
+     * @param a the altruist index
+     * @return the chains found
+     */
+    private List<Exchange> chainsFrom(int a) {
+        List<Exchange> found = new ArrayList<>();
+        int[] path = new int[maxChain];
+        for (int first : pairsServedBy(altruists[a], -1)) {
+            path[0] = first;
+            extendChain(a, path, 1, found);
+        }
+        return found;
+    }
+
+    /**
+     * It records a chain ending at the last pair of the path and extends it.
+     *
+     * @param a the altruist index
+     * @param path the pairs so far
+     * @param length the number of pairs in the path
+     * @param found the list to add chains to
+     */
+    private void extendChain(int a, int[] path, int length, List<Exchange> found) {
+        found.add(chain(a, path, length));
+        if (length == maxChain)
+            return;
+        for (int next : successors[path[length - 1]]) {
+            if (!contains(path, length, next)) {
+                path[length] = next;
+                extendChain(a, path, length + 1, found);
+            }
+        }
+    }
+
+    /**
+     * It builds the cycle in which each pair's donor gives to the next pair's
+     * recipient.
+     *
+     * @param path the pairs of the cycle
+     * @param length the number of pairs
+     * @return the cycle
+     */
+    private Exchange cycle(int[] path, int length) {
+        int[] donors = new int[length];
+        int[] recipients = new int[length];
+        for (int k = 0; k < length; k++) {
+            donors[k] = pairDonor[path[k]];
+            recipients[k] = pairRecipient[path[(k + 1) % length]];
+        }
+        return new Exchange(donors, recipients, -1, score(donors, recipients));
+    }
+
+    /**
+     * It builds the chain in which the altruist gives to the first pair's
+     * recipient and each pair's donor gives to the next pair's recipient.
+     *
+     * @param a the altruist index
+     * @param path the pairs of the chain
+     * @param length the number of pairs
+     * @return the chain
+     */
+    private Exchange chain(int a, int[] path, int length) {
+        int[] donors = new int[length];
+        int[] recipients = new int[length];
+        donors[0] = altruists[a];
+        for (int k = 0; k < length; k++) {
+            if (k > 0)
+                donors[k] = pairDonor[path[k - 1]];
+            recipients[k] = pairRecipient[path[k]];
+        }
+        return new Exchange(donors, recipients, pairDonor[path[length - 1]], score(donors, recipients));
+    }
+
+    /**
+     * It sums the scores of a list of transplants.
+     *
+     * @param donors the donor of each transplant
+     * @param recipients the recipient of each transplant
+     * @return the total score
+     */
+    private long score(int[] donors, int[] recipients) {
+        long total = 0;
+        for (int k = 0; k < donors.length; k++)
+            total += scorer.score(graph, donors[k], recipients[k]);
+        return total;
+    }
+
+    /**
+     * It lists the pairs whose recipient a donor is compatible with.
+     *
+     * @param donorID the donor's ID
+     * @param self the donor's own pair, which is skipped, or -1
+     * @return the pair indexes in ascending recipient ID order
+     */
+    private int[] pairsServedBy(int donorID, int self) {
+        int[] found = new int[8];
+        int count = 0;
+        for (int r = graph.nextCompatibleRecipient(donorID, 0); r >= 0; r = graph.nextCompatibleRecipient(donorID, r + 1)) {
+            int j = pairOfRecipient[r];
+            if (j >= 0 && j != self) {
+                if (count == found.length)
+                    found = Arrays.copyOf(found, count * 2);
+                found[count++] = j;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * It checks whether a path already holds a pair.
+     *
+     * @param path the pairs so far
+     * @param length the number of pairs in the path
+     * @param pair the pair to look for
+     * @return true if the pair is on the path, otherwise false
+     */
+    private static boolean contains(int[] path, int length, int pair) {
+        for (int k = 0; k < length; k++) {
+            if (path[k] == pair)
+                return true;
+        }
+        return false;
+    }
+}
@@ -1,16 +1,23 @@
-import java.io.Serializable;
-
 /**
  * This class represents a Patient with identifying information, organ need or donation,
  * and blood type. It implements Comparable to allow ordering by patient ID.
+ * The organ is held as an OrganDictionary code and the blood type as a one-byte code.
+ * A Patient is either a standalone value, built to be added to a graph, or a
+ * read-only view of one slot of a PatientStore, handed out by a TransplantGraph,
+ * whose accessors read the store's columns. A view shows whoever holds the slot
+ * at the time of the call, so it should not be kept across removals.
  */
-public class Patient implements Comparable<Patient>, Serializable {
+public class Patient implements Comparable<Patient> {
     private String name;
-    private String organ;
+    private int organ;
     private int age;
-    private BloodType bloodType;
+    private byte bloodType;
     private int ID;
     private boolean isDonor;
+    private int urgency;
+    private int waitingDays;
+    private Patient pair;
+    private PatientStore store;
 
     /**
      * Constructs a Patient with the specified attributes.
@@ -26,11 +33,42 @@ public class Patient implements Comparable<Patient>, Serializable {
         this.ID = ID;
         this.name = name;
         this.age = age;
-        this.organ = organ;
-        this.bloodType = bloodType;
+        this.organ = OrganDictionary.encode(organ);
+        this.bloodType = bloodType.getCode();
+        this.isDonor = isDonor;
+    }
+
+    /**
+     * Constructs a Patient whose organ is already encoded in the OrganDictionary.
+     *
+     * @param ID         the unique patient identifier
+     * @param name       the patient’s name
+     * @param age        the patient’s age
+     * @param organCode  the OrganDictionary code of the organ needed or donated
+     * @param bloodType  the patient’s blood type
+     * @param isDonor    true if the patient is a donor, false if recipient
+     */
+    public Patient(int ID, String name, int age, int organCode, BloodType bloodType, boolean isDonor) {
+        this.ID = ID;
+        this.name = name;
+        this.age = age;
+        this.organ = organCode;
+        this.bloodType = bloodType.getCode();
         this.isDonor = isDonor;
     }
 
+    /**
+     * Constructs a read-only view of the patient in a slot of a PatientStore.
+     *
+     * @param store the PatientStore holding the patient
+     * @param ID    the slot, which is the patient ID
+     */
+    Patient(PatientStore store, int ID) {
+        this.store = store;
+        this.ID = ID;
+        this.isDonor = store.isDonor();
+    }
+
     /**
      * An accessor which gets the patient’s unique identifier.
      *
@@ -46,6 +84,7 @@ public class Patient implements Comparable<Patient>, Serializable {
      * @param ID the new patient ID
      */
     public void setID(int ID) {
+        checkDetached();
         this.ID = ID;
     }
 
@@ -55,7 +94,7 @@ public class Patient implements Comparable<Patient>, Serializable {
      * @return the patient’s name
      */
     public String getName() {
-        return name;
+        return store == null ? name : store.getName(ID);
     }
 
     /**
@@ -64,16 +103,26 @@ public class Patient implements Comparable<Patient>, Serializable {
      * @param name the new name
      */
     public void setName(String name) {
+        checkDetached();
         this.name = name;
     }
 
     /**
-     * An accessor which gets the organ needed or donated.
+     * An accessor which gets the canonical name of the organ needed or donated.
      *
      * @return the organ
      */
     public String getOrgan() {
-        return organ;
+        return OrganDictionary.name(getOrganCode());
+    }
+
+    /**
+     * An accessor which gets the OrganDictionary code of the organ needed or donated.
+     *
+     * @return the organ code
+     */
+    public int getOrganCode() {
+        return store == null ? organ : store.getOrganCode(ID);
     }
 
     /**
@@ -82,7 +131,8 @@ public class Patient implements Comparable<Patient>, Serializable {
      * @param organ the new organ
      */
     public void setOrgan(String organ) {
-        this.organ = organ;
+        checkDetached();
+        this.organ = OrganDictionary.encode(organ);
     }
 
     /**
@@ -91,7 +141,7 @@ public class Patient implements Comparable<Patient>, Serializable {
      * @return the age
      */
     public int getAge() {
-        return age;
+        return store == null ? age : store.getAge(ID);
     }
 
     /**
@@ -100,6 +150,7 @@ public class Patient implements Comparable<Patient>, Serializable {
      * @param age the new age
      */
     public void setAge(int age) {
+        checkDetached();
         this.age = age;
     }
 
@@ -109,7 +160,16 @@ public class Patient implements Comparable<Patient>, Serializable {
      * @return the blood type
      */
     public BloodType getBloodType() {
-        return bloodType;
+        return BloodType.fromCode(getBloodCode());
+    }
+
+    /**
+     * An accessor which gets the one-byte code of the patient’s blood type.
+     *
+     * @return the blood type code
+     */
+    public byte getBloodCode() {
+        return store == null ? bloodType : store.getBloodCode(ID);
     }
 
     /**
@@ -118,7 +178,69 @@ public class Patient implements Comparable<Patient>, Serializable {
      * @param bloodType the new blood type
      */
     public void setBloodType(BloodType bloodType) {
-        this.bloodType = bloodType;
+        checkDetached();
+        this.bloodType = bloodType.getCode();
+    }
+
+    /**
+     * An accessor which gets the patient’s clinical urgency, where higher is more urgent.
+     *
+     * @return the urgency, zero if not recorded
+     */
+    public int getUrgency() {
+        return store == null ? urgency : store.getUrgency(ID);
+    }
+
+    /**
+     * A mutator which sets the patient’s clinical urgency.
+     *
+     * @param urgency the new urgency, where higher is more urgent
+     */
+    public void setUrgency(int urgency) {
+        checkDetached();
+        this.urgency = urgency;
+    }
+
+    /**
+     * An accessor which gets the number of days the patient has been waiting.
+     *
+     * @return the waiting time in days, zero if not recorded
+     */
+    public int getWaitingDays() {
+        return store == null ? waitingDays : store.getWaitingDays(ID);
+    }
+
+    /**
+     * A mutator which sets the number of days the patient has been waiting.
+     *
+     * @param waitingDays the new waiting time in days
+     */
+    public void setWaitingDays(int waitingDays) {
+        checkDetached();
+        this.waitingDays = waitingDays;
+    }
+
+    /**
+     * An accessor which gets the patient linked with this one for paired donation:
+     * the willing donor of a recipient, or the intended recipient of a donor.
+     *
+     * @return the linked Patient, or null if there is none
+     */
+    public Patient getPair() {
+        if (store == null)
+            return pair;
+        int id = store.getPair(ID);
+        return id < 0 ? null : store.getPartner().view(id);
+    }
+
+    /**
+     * A mutator which sets the patient linked with this one for paired donation.
+     *
+     * @param pair the linked Patient, or null to clear the link
+     */
+    public void setPair(Patient pair) {
+        checkDetached();
+        this.pair = pair;
     }
 
     /**
@@ -136,9 +258,33 @@ public class Patient implements Comparable<Patient>, Serializable {
      * @param donor true to mark as donor, false to mark as recipient
      */
     public void setDonor(boolean donor) {
+        checkDetached();
         isDonor = donor;
     }
 
+    /**
+     * An accessor which checks if the patient is a view of a graph's PatientStore
+     * rather than a standalone value.
+     *
+     * @return true if the patient is a view
+     */
+    public boolean isView() {
+        return store != null;
+    }
+
+    /**
+     * It copies the patient into a new standalone Patient, which keeps its
+     * attributes after the graph changes. The copy is not linked to a pair.
+     *
+     * @return the standalone copy
+     */
+    public Patient copy() {
+        Patient p = new Patient(ID, getName(), getAge(), getOrganCode(), getBloodType(), isDonor);
+        p.urgency = getUrgency();
+        p.waitingDays = getWaitingDays();
+        return p;
+    }
+
     /**
      * It compares this patient’s ID with another patient’s ID.
      *
@@ -150,6 +296,30 @@ public class Patient implements Comparable<Patient>, Serializable {
         return Integer.compare(this.ID, o.ID);
     }
 
+    /**
+     * It checks if another object is the same patient: the same standalone
+     * Patient, or a view of the same slot of the same store.
+     *
+     * @param o the object to compare to
+     * @return true if both are the same patient
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (store == null)
+            return this == o;
+        return o instanceof Patient other && other.store == store && other.ID == ID;
+    }
+
+    /**
+     * It returns a hash code consistent with equals.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return store == null ? System.identityHashCode(this) : 31 * System.identityHashCode(store) + ID;
+    }
+
     /**
      * It returns the string representation of the patient,
      * including name, age, organ, and blood type.
@@ -158,6 +328,14 @@ public class Patient implements Comparable<Patient>, Serializable {
      */
     @Override
     public String toString() {
-        return name + " | " + age + " | " + organ + " | " + bloodType.getType();
+        return getName() + " | " + getAge() + " | " + getOrgan() + " | " + getBloodType().getType();
+    }
+
+    /**
+     * It rejects changes to a view, whose attributes belong to its graph.
+     */
+    private void checkDetached() {
+        if (store != null)
+            throw new IllegalStateException("Patient " + ID + " is a read-only view of a graph");
     }
 }
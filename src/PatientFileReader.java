@@ -0,0 +1,245 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class reads donor and recipient txt files in bulk. Each line holds ID, name,
+ * age, organ and blood type, optionally followed by urgency and waiting days for
+ * recipients. Files are read through a large NIO buffer and each line is parsed in
+ * place: numbers and blood types are decoded straight from the bytes, and organ
+ * names are matched against the bytes of those already seen, so only the patient's
+ * name becomes a new String. Malformed lines are skipped and recorded with their
+ * line numbers instead of aborting the load.
+ */
+public class PatientFileReader {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_FIELDS = 7;
+    private static final long INVALID = Long.MIN_VALUE;
+    private final ByteBuffer buffer;
+    private final int[] fieldStart;
+    private final int[] fieldEnd;
+    private final ArrayList<String> errors;
+    private byte[][] organKeys;
+    private int[] organCodes;
+    private int numOrgans;
+
+    /**
+     * Default constructor which allocates the read buffer.
+     */
+    public PatientFileReader() {
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        fieldStart = new int[MAX_FIELDS];
+        fieldEnd = new int[MAX_FIELDS];
+        errors = new ArrayList<>();
+        organKeys = new byte[8][];
+        organCodes = new int[8];
+    }
+
+    /**
+     * It reads every well-formed patient line of a file.
+     *
+     * @param file the path to the txt file
+     * @param isDonor true if the file lists donors, false for recipients
+     * @return the patients in file order
+     * @throws IOException if an I/O error occurs reading the file
+     */
+    public List<Patient> read(String file, boolean isDonor) throws IOException {
+        ArrayList<Patient> patients = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            buffer.clear();
+            byte[] bytes = buffer.array();
+            int lineNumber = 1;
+            boolean skipping = false;
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(buffer) < 0;
+                int limit = buffer.position();
+                int start = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (bytes[i] != '\n')
+                        continue;
+                    if (!skipping)
+                        parseLine(bytes, start, i, file, lineNumber, isDonor, patients);
+                    skipping = false;
+                    lineNumber++;
+                    start = i + 1;
+                }
+                if (eof) {
+                    if (start < limit && !skipping)
+                        parseLine(bytes, start, limit, file, lineNumber, isDonor, patients);
+                } else if (start == 0 && limit == bytes.length) {
+                    if (!skipping)
+                        errors.add(file + ":" + lineNumber + ": line is longer than " + BUFFER_SIZE + " bytes");
+                    skipping = true;
+                    buffer.clear();
+                } else {
+                    System.arraycopy(bytes, start, bytes, 0, limit - start);
+                    buffer.position(limit - start);
+                }
+            }
+        }
+        return patients;
+    }
+
+    /**
+     * An accessor which gets the messages for every malformed line skipped so far,
+     * each prefixed with its file name and line number.
+     *
+     * @return the error messages in the order they were found
+     */
+    public List<String> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * It parses one line and adds its patient, or records why it was skipped.
+     * Blank lines are ignored.
+     *
+     * @param bytes the buffer holding the line
+     * @param from the index of the line's first byte
+     * @param to the index of the line's terminating newline, or the end of data
+     * @param file the file name for error messages
+     * @param lineNumber the line number for error messages
+     * @param isDonor true if the line is a donor, false for a recipient
+     * @param patients the list to add the patient to
+     */
+    private void parseLine(byte[] bytes, int from, int to, String file, int lineNumber, boolean isDonor,
+                           List<Patient> patients) {
+        if (to > from && bytes[to - 1] == '\r')
+            to--;
+        int fields = 0;
+        int start = from;
+        for (int i = from; i <= to && fields < MAX_FIELDS; i++) {
+            if (i == to || bytes[i] == ',') {
+                fieldStart[fields] = start;
+                fieldEnd[fields++] = i;
+                start = i + 1;
+            }
+        }
+        if (fields == 1 && isBlank(bytes, from, to))
+            return;
+        String problem = null;
+        long id = INVALID;
+        long age = INVALID;
+        int blood = -1;
+        long urgency = 0;
+        long waitingDays = 0;
+        if (fields < 5)
+            problem = "expected at least 5 comma-separated fields";
+        else if ((id = parseInt(bytes, fieldStart[0], fieldEnd[0])) == INVALID)
+            problem = "invalid ID";
+        else if (isBlank(bytes, fieldStart[1], fieldEnd[1]))
+            problem = "missing name";
+        else if ((age = parseInt(bytes, fieldStart[2], fieldEnd[2])) == INVALID || age < 0)
+            problem = "invalid age";
+        else if (isBlank(bytes, fieldStart[3], fieldEnd[3]))
+            problem = "missing organ";
+        else if ((blood = BloodType.parseCode(bytes, fieldStart[4], fieldEnd[4])) < 0)
+            problem = "invalid blood type";
+        else if (!isDonor && fields > 5 && (urgency = parseInt(bytes, fieldStart[5], fieldEnd[5])) == INVALID)
+            problem = "invalid urgency";
+        else if (!isDonor && fields > 6 && (waitingDays = parseInt(bytes, fieldStart[6], fieldEnd[6])) == INVALID)
+            problem = "invalid waiting days";
+        if (problem != null) {
+            errors.add(file + ":" + lineNumber + ": " + problem);
+            return;
+        }
+        Patient p = new Patient((int) id, text(bytes, fieldStart[1], fieldEnd[1]), (int) age,
+                organCode(bytes, fieldStart[3], fieldEnd[3]), BloodType.fromCode((byte) blood), isDonor);
+        p.setUrgency((int) urgency);
+        p.setWaitingDays((int) waitingDays);
+        patients.add(p);
+    }
+
+    /**
+     * It gets the OrganDictionary code for an organ name held in a byte range,
+     * creating a String only the first time a spelling is seen.
+     *
+     * @param bytes the buffer holding the name
+     * @param from the index of the first byte
+     * @param to the index after the last byte
+     * @return the organ code
+     */
+    private int organCode(byte[] bytes, int from, int to) {
+        for (int k = 0; k < numOrgans; k++) {
+            byte[] key = organKeys[k];
+            if (Arrays.equals(key, 0, key.length, bytes, from, to))
+                return organCodes[k];
+        }
+        if (numOrgans == organKeys.length) {
+            organKeys = Arrays.copyOf(organKeys, numOrgans * 2);
+            organCodes = Arrays.copyOf(organCodes, numOrgans * 2);
+        }
+        organKeys[numOrgans] = Arrays.copyOfRange(bytes, from, to);
+        organCodes[numOrgans] = OrganDictionary.encode(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+        return organCodes[numOrgans++];
+    }
+
+    /**
+     * It parses a decimal integer held in a byte range, ignoring surrounding
+     * whitespace.
+     *
+     * @param bytes the buffer holding the number
+     * @param from the index of the first byte
+     * @param to the index after the last byte
+     * @return the value, or INVALID if the bytes are not an int
+     */
+    private static long parseInt(byte[] bytes, int from, int to) {
+        while (from < to && (bytes[from] & 0xFF) <= ' ')
+            from++;
+        while (to > from && (bytes[to - 1] & 0xFF) <= ' ')
+            to--;
+        boolean negative = from < to && bytes[from] == '-';
+        if (negative || (from < to && bytes[from] == '+'))
+            from++;
+        if (from == to || to - from > 10)
+            return INVALID;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9)
+                return INVALID;
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? INVALID : value;
+    }
+
+    /**
+     * It decodes a UTF-8 field without its surrounding whitespace.
+     *
+     * @param bytes the buffer holding the field
+     * @param from the index of the first byte
+     * @param to the index after the last byte
+     * @return the trimmed text
+     */
+    private static String text(byte[] bytes, int from, int to) {
+        while (from < to && (bytes[from] & 0xFF) <= ' ')
+            from++;
+        while (to > from && (bytes[to - 1] & 0xFF) <= ' ')
+            to--;
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * It checks whether a byte range holds only whitespace.
+     *
+     * @param bytes the buffer holding the range
+     * @param from the index of the first byte
+     * @param to the index after the last byte
+     * @return true if the range is blank, otherwise false
+     */
+    private static boolean isBlank(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((bytes[i] & 0xFF) > ' ')
+                return false;
+        }
+        return true;
+    }
+}
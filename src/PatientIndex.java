@@ -0,0 +1,182 @@
+import java.util.Arrays;
+
+/**
+ * This class keeps bitmap indexes over the patient IDs of one side of a
+ * TransplantGraph, for PatientQuery to combine a word at a time: one bitset of
+ * every patient, one per organ code, one per blood type, and one per year of age.
+ * The age bitsets are range encoded, each holding the patients of that age or
+ * younger, so any age range is one bitset minus another instead of a union of
+ * buckets. Ages outside 0 to MAX_AGE are rare enough to be kept in a bitset of
+ * their own and checked one by one. Whether a patient has any connection needs no
+ * bitset of its own, since a patient is connected to exactly the compatible
+ * classes of the other side, so it is read from the compatibility classes.
+ */
+public class PatientIndex {
+    public static final int MAX_AGE = 127;
+    private static final int NUM_BLOOD_TYPES = BloodType.values().length;
+    private final CompatibilityIndex classes;
+    private final PatientStore store;
+    private final boolean isDonor;
+    private long[] live;
+    private long[][] byOrgan;
+    private final long[][] byBloodType;
+    private final long[][] atMostAge;
+    private long[] otherAges;
+
+    /**
+     * Constructs an empty PatientIndex over the classes and store of one side.
+     *
+     * @param classes the compatibility classes of the graph
+     * @param store the donor or recipient store
+     * @param isDonor true to index donors, false for recipients
+     */
+    public PatientIndex(CompatibilityIndex classes, PatientStore store, boolean isDonor) {
+        this.classes = classes;
+        this.store = store;
+        this.isDonor = isDonor;
+        live = new long[0];
+        byOrgan = new long[0][];
+        byBloodType = new long[NUM_BLOOD_TYPES][];
+        for (int code = 0; code < NUM_BLOOD_TYPES; code++)
+            byBloodType[code] = new long[0];
+        atMostAge = new long[MAX_AGE + 1][];
+        for (int age = 0; age <= MAX_AGE; age++)
+            atMostAge[age] = new long[0];
+        otherAges = new long[0];
+    }
+
+    /**
+     * It adds a stored patient to the bitsets of its attributes.
+     *
+     * @param id the patient ID
+     */
+    public void add(int id) {
+        live = Bits.set(live, id);
+        int organ = store.getOrganCode(id);
+        if (organ >= byOrgan.length) {
+            int old = byOrgan.length;
+            byOrgan = Arrays.copyOf(byOrgan, organ + 1);
+            for (int code = old; code <= organ; code++)
+                byOrgan[code] = new long[0];
+        }
+        byOrgan[organ] = Bits.set(byOrgan[organ], id);
+        byte bloodCode = store.getBloodCode(id);
+        byBloodType[bloodCode] = Bits.set(byBloodType[bloodCode], id);
+        int age = store.getAge(id);
+        if (age < 0 || age > MAX_AGE) {
+            otherAges = Bits.set(otherAges, id);
+            return;
+        }
+        for (int a = age; a <= MAX_AGE; a++)
+            atMostAge[a] = Bits.set(atMostAge[a], id);
+    }
+
+    /**
+     * It removes a stored patient from the bitsets of its attributes. It must be
+     * called before the patient is removed from the store.
+     *
+     * @param id the patient ID
+     */
+    public void remove(int id) {
+        Bits.clear(live, id);
+        Bits.clear(byOrgan[store.getOrganCode(id)], id);
+        Bits.clear(byBloodType[store.getBloodCode(id)], id);
+        int age = store.getAge(id);
+        if (age < 0 || age > MAX_AGE) {
+            Bits.clear(otherAges, id);
+            return;
+        }
+        for (int a = age; a <= MAX_AGE; a++)
+            Bits.clear(atMostAge[a], id);
+    }
+
+    /**
+     * It selects every patient of the side.
+     *
+     * @return a new bitset of IDs
+     */
+    public long[] all() {
+        return live.clone();
+    }
+
+    /**
+     * It selects the patients donating or needing an organ.
+     *
+     * @param organ the organ code, or -1 for an organ no patient has
+     * @return a new bitset of IDs
+     */
+    public long[] organ(int organ) {
+        return organ < 0 || organ >= byOrgan.length ? new long[0] : byOrgan[organ].clone();
+    }
+
+    /**
+     * It selects the patients of a blood type.
+     *
+     * @param bloodCode the blood type code
+     * @return a new bitset of IDs
+     */
+    public long[] bloodType(byte bloodCode) {
+        return byBloodType[bloodCode].clone();
+    }
+
+    /**
+     * It selects the patients whose age is within a range, as those of the highest
+     * age or younger minus those younger than the lowest.
+     *
+     * @param min the lowest age, inclusive
+     * @param max the highest age, inclusive
+     * @return a new bitset of IDs
+     */
+    public long[] ageBetween(int min, int max) {
+        long[] bits = new long[0];
+        int from = Math.max(min, 0);
+        int to = Math.min(max, MAX_AGE);
+        if (from <= to) {
+            bits = atMostAge[to].clone();
+            if (from > 0)
+                Bits.andNot(bits, atMostAge[from - 1]);
+        }
+        for (int id = Bits.nextSetBit(otherAges, 0); id >= 0; id = Bits.nextSetBit(otherAges, id + 1)) {
+            int age = store.getAge(id);
+            if (min <= age && age <= max)
+                bits = Bits.set(bits, id);
+        }
+        return bits;
+    }
+
+    /**
+     * It selects the patients with no compatible patient on the other side, as the
+     * members of every class whose compatible classes are all empty.
+     *
+     * @return a new bitset of IDs
+     */
+    public long[] unconnected() {
+        long[] bits = new long[0];
+        for (int organ = 0; organ < classes.getNumOrganCodes(isDonor); organ++) {
+            for (byte code = 0; code < NUM_BLOOD_TYPES; code++) {
+                long[] members = classes.getMembers(isDonor, organ, code);
+                if (members != null && !isConnected(organ, code))
+                    bits = Bits.or(bits, members);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * It checks whether any patient of the other side is compatible with a class,
+     * stopping at the first one found.
+     *
+     * @param organ the class's organ code
+     * @param code the class's blood type code
+     * @return true if the members of the class have a connection, otherwise false
+     */
+    private boolean isConnected(int organ, byte code) {
+        int mask = isDonor ? BloodType.recipientsFor(code) : BloodType.donorsFor(code);
+        for (; mask != 0; mask &= mask - 1) {
+            long[] members = classes.getMembers(!isDonor, organ, (byte) Integer.numberOfTrailingZeros(mask));
+            if (members != null && Bits.nextSetBit(members, 0) >= 0)
+                return true;
+        }
+        return false;
+    }
+}
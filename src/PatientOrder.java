@@ -0,0 +1,149 @@
+import java.util.Arrays;
+
+/**
+ * This class lists the patient IDs of one side of a TransplantGraph in each
+ * SortKey order, without sorting patients. The compatibility classes already
+ * keep the members of every organ and blood type pair as a bitset of IDs, kept up
+ * to date in constant time per add and remove, and every key is a function of
+ * the class: organ and blood type directly, and the number of connections because
+ * a patient is connected to exactly the compatible classes of the other side. So
+ * an order is the classes taken in key order, with the classes that share a key
+ * merged into one bitset and read out in ID order, which also breaks ties by ID.
+ * Each order is cached until the classes change, or, for organs, until a new
+ * organ name changes their ranks.
+ */
+public class PatientOrder {
+    private static final int NUM_BLOOD_TYPES = BloodType.values().length;
+    private final CompatibilityIndex classes;
+    private final boolean isDonor;
+    private final Cached[] cache;
+
+    /**
+     * Constructs a PatientOrder over the classes of one side.
+     *
+     * @param classes the compatibility classes of the graph
+     * @param isDonor true to list donors, false for recipients
+     */
+    public PatientOrder(CompatibilityIndex classes, boolean isDonor) {
+        this.classes = classes;
+        this.isDonor = isDonor;
+        cache = new Cached[SortKey.values().length];
+    }
+
+    /**
+     * It gets the IDs of every patient of the side in the given order, ties broken
+     * by ID. The array is cached and shared, so callers must not modify it.
+     *
+     * @param key the order
+     * @return the IDs in order
+     */
+    public int[] sortedIDs(SortKey key) {
+        long version = classes.getVersion();
+        int numOrgans = OrganDictionary.size();
+        Cached cached = cache[key.ordinal()];
+        if (cached == null || cached.version != version || cached.numOrgans != numOrgans) {
+            cached = new Cached(version, numOrgans, collect(key));
+            cache[key.ordinal()] = cached;
+        }
+        return cached.ids;
+    }
+
+    /**
+     * It lists the IDs in the given order from the classes.
+     *
+     * @param key the order
+     * @return the IDs in order
+     */
+    private int[] collect(SortKey key) {
+        int numOrgans = classes.getNumOrganCodes(isDonor);
+        IntStack ids = new IntStack();
+        switch (key) {
+            case ID -> {
+                long[] all = new long[0];
+                for (int organ = 0; organ < numOrgans; organ++)
+                    for (byte code = 0; code < NUM_BLOOD_TYPES; code++)
+                        all = Bits.or(all, classes.getMembers(isDonor, organ, code));
+                append(ids, all);
+            }
+            case BLOOD_TYPE -> {
+                for (byte code = 0; code < NUM_BLOOD_TYPES; code++) {
+                    long[] group = new long[0];
+                    for (int organ = 0; organ < numOrgans; organ++)
+                        group = Bits.or(group, classes.getMembers(isDonor, organ, code));
+                    append(ids, group);
+                }
+            }
+            case ORGAN -> {
+                Integer[] organs = new Integer[numOrgans];
+                for (int organ = 0; organ < numOrgans; organ++)
+                    organs[organ] = organ;
+                Arrays.sort(organs, (a, b) -> Integer.compare(OrganDictionary.rank(a), OrganDictionary.rank(b)));
+                for (int organ : organs) {
+                    long[] group = new long[0];
+                    for (byte code = 0; code < NUM_BLOOD_TYPES; code++)
+                        group = Bits.or(group, classes.getMembers(isDonor, organ, code));
+                    append(ids, group);
+                }
+            }
+            case NUM_CONNECTIONS -> {
+                long[] keyed = new long[numOrgans * NUM_BLOOD_TYPES];
+                int numClasses = 0;
+                for (int organ = 0; organ < numOrgans; organ++) {
+                    for (byte code = 0; code < NUM_BLOOD_TYPES; code++) {
+                        if (classes.getMembers(isDonor, organ, code) != null)
+                            keyed[numClasses++] = (long) classes.getDegree(isDonor, organ, code) << 32
+                                    | organ * NUM_BLOOD_TYPES + code;
+                    }
+                }
+                Arrays.sort(keyed, 0, numClasses);
+                for (int k = 0; k < numClasses; ) {
+                    long[] group = new long[0];
+                    int degree = (int) (keyed[k] >>> 32);
+                    for (; k < numClasses && (int) (keyed[k] >>> 32) == degree; k++) {
+                        int c = (int) keyed[k];
+                        group = Bits.or(group, classes.getMembers(isDonor, c / NUM_BLOOD_TYPES,
+                                (byte) (c % NUM_BLOOD_TYPES)));
+                    }
+                    append(ids, group);
+                }
+            }
+        }
+        return ids.toArray();
+    }
+
+    /**
+     * It appends the set bits of a bitset in ascending order.
+     *
+     * @param ids the IDs so far
+     * @param bits the bitset
+     */
+    private static void append(IntStack ids, long[] bits) {
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1)
+                ids.push((w << 6) + Long.numberOfTrailingZeros(word));
+        }
+    }
+
+    /**
+     * This class holds one cached order with the state it was built from. Its
+     * fields are final, so it can be shared between reading threads without locking.
+     */
+    private static final class Cached {
+        private final long version;
+        private final int numOrgans;
+        private final int[] ids;
+
+        /**
+         * Constructs a cached order.
+         *
+         * @param version the version of the classes
+         * @param numOrgans the number of organ names known
+         * @param ids the IDs in order
+         */
+        private Cached(long version, int numOrgans, int[] ids) {
+            this.version = version;
+            this.numOrgans = numOrgans;
+            this.ids = ids;
+        }
+    }
+}
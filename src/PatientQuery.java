@@ -0,0 +1,104 @@
+/**
+ * This interface selects patients of one side of a TransplantGraph by attribute.
+ * A query is built from the static factories and combined with and, or and not,
+ * and the graph runs it against its PatientIndex, so every predicate reads a
+ * bitset or two and every combination is a pass over words of 64 IDs. For
+ * example, the kidney recipients of blood type B aged 18 to 40 with no
+ * compatible donor are
+ * <pre>
+ *     organ("Kidney").and(bloodType(BloodType.B_NEG).or(bloodType(BloodType.B_POS)))
+ *             .and(ageBetween(18, 40)).and(unconnected())
+ * </pre>
+ */
+@FunctionalInterface
+public interface PatientQuery {
+
+    /**
+     * It selects the matching patients from an index.
+     *
+     * @param index the index of the side being queried
+     * @return a new bitset of the matching IDs, which the caller may modify
+     */
+    long[] select(PatientIndex index);
+
+    /**
+     * It creates a query for the patients matching both this query and another.
+     *
+     * @param other the other query
+     * @return the intersection
+     */
+    default PatientQuery and(PatientQuery other) {
+        return index -> Bits.and(select(index), other.select(index));
+    }
+
+    /**
+     * It creates a query for the patients matching this query, another, or both.
+     *
+     * @param other the other query
+     * @return the union
+     */
+    default PatientQuery or(PatientQuery other) {
+        return index -> Bits.or(select(index), other.select(index));
+    }
+
+    /**
+     * It creates a query for the patients of the side not matching this query.
+     *
+     * @return the complement
+     */
+    default PatientQuery not() {
+        return index -> Bits.andNot(index.all(), select(index));
+    }
+
+    /**
+     * It creates a query matching every patient.
+     *
+     * @return the query
+     */
+    static PatientQuery all() {
+        return PatientIndex::all;
+    }
+
+    /**
+     * It creates a query for the patients donating or needing an organ. The name is
+     * looked up each time the query runs, so it matches nobody until some patient
+     * has that organ.
+     *
+     * @param organ the organ name or one of its aliases
+     * @return the query
+     */
+    static PatientQuery organ(String organ) {
+        return index -> index.organ(OrganDictionary.lookup(organ));
+    }
+
+    /**
+     * It creates a query for the patients of a blood type.
+     *
+     * @param type the blood type
+     * @return the query
+     */
+    static PatientQuery bloodType(BloodType type) {
+        byte code = type.getCode();
+        return index -> index.bloodType(code);
+    }
+
+    /**
+     * It creates a query for the patients whose age is within a range.
+     *
+     * @param min the lowest age, inclusive
+     * @param max the highest age, inclusive
+     * @return the query
+     */
+    static PatientQuery ageBetween(int min, int max) {
+        return index -> index.ageBetween(min, max);
+    }
+
+    /**
+     * It creates a query for the patients with no compatible patient on the other side.
+     *
+     * @return the query
+     */
+    static PatientQuery unconnected() {
+        return PatientIndex::unconnected;
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * This interface stores one side of a TransplantGraph, donors or recipients, as
+ * columns of patient attributes indexed by patient ID, with names in a shared
+ * arena. HeapPatientStore keeps the columns in Java arrays, and
+ * OffHeapPatientStore keeps them in memory outside the Java heap, optionally
+ * mapped from files. Patient views of a slot are handed out only at the API
+ * boundary.
+ */
+public interface PatientStore {
+
+    /**
+     * It copies a patient's attributes into a slot, growing the store if the slot
+     * lies beyond its end. The slot must not be occupied. The patient is not linked
+     * to any pair.
+     *
+     * @param id the slot, which becomes the patient's ID
+     * @param p the Patient whose attributes are copied
+     */
+    void put(int id, Patient p);
+
+    /**
+     * It grows the store to at least the given number of slots, the new ones
+     * empty, as when restoring a graph whose last slots are tombstones.
+     *
+     * @param slots the number of slots
+     */
+    void extend(int slots);
+
+    /**
+     * It empties a slot, leaving a tombstone. The caller is responsible for first
+     * clearing any paired-donation link.
+     *
+     * @param id the slot to empty
+     * @return true if the slot was occupied, otherwise false
+     */
+    boolean remove(int id);
+
+    /**
+     * It moves every patient down to a dense run of slots in ID order, dropping
+     * the tombstones. Paired patient IDs are left as they were, for the caller to
+     * renumber once both sides are compacted.
+     *
+     * @return the new ID of each old slot, or -1 for a tombstone
+     */
+    int[] compact();
+
+    /**
+     * It gets a read-only view of the patient in a slot, whose accessors read
+     * straight from the columns.
+     *
+     * @param id the slot
+     * @return the Patient view, or null if the slot is out of range or empty
+     */
+    default Patient view(int id) {
+        return isLive(id) ? new Patient(this, id) : null;
+    }
+
+    /**
+     * It checks if a slot holds a patient.
+     *
+     * @param id the slot
+     * @return true if the slot is in range and occupied, otherwise false
+     */
+    boolean isLive(int id);
+
+    /**
+     * An accessor which checks if the store holds donors.
+     *
+     * @return true if donors, false if recipients
+     */
+    boolean isDonor();
+
+    /**
+     * An accessor which gets the store of the other side of the graph, which
+     * paired-donation links point into.
+     *
+     * @return the partner PatientStore
+     */
+    PatientStore getPartner();
+
+    /**
+     * A mutator which sets the store of the other side of the graph.
+     *
+     * @param partner the partner PatientStore
+     */
+    void setPartner(PatientStore partner);
+
+    /**
+     * An accessor which gets the number of slots, including empty ones. Every ID
+     * is below this bound.
+     *
+     * @return the number of slots
+     */
+    int getSlots();
+
+    /**
+     * An accessor which gets the number of occupied slots.
+     *
+     * @return the number of patients
+     */
+    int getCount();
+
+    /**
+     * An accessor which gets the name of the patient in a slot. The name is copied
+     * out of the arena, so each call returns a new String.
+     *
+     * @param id the slot
+     * @return the name
+     */
+    String getName(int id);
+
+    /**
+     * An accessor which gets the age of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the age
+     */
+    int getAge(int id);
+
+    /**
+     * An accessor which gets the OrganDictionary code of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the organ code
+     */
+    int getOrganCode(int id);
+
+    /**
+     * An accessor which gets the blood type code of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the blood type code
+     */
+    byte getBloodCode(int id);
+
+    /**
+     * An accessor which gets the urgency of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the urgency
+     */
+    int getUrgency(int id);
+
+    /**
+     * An accessor which gets the waiting time of the patient in a slot.
+     *
+     * @param id the slot
+     * @return the waiting time in days
+     */
+    int getWaitingDays(int id);
+
+    /**
+     * An accessor which gets the ID of the patient linked with the one in a slot,
+     * which lives in the partner store.
+     *
+     * @param id the slot
+     * @return the linked patient's ID, or -1 if there is none
+     */
+    int getPair(int id);
+
+    /**
+     * A mutator which sets the ID of the patient linked with the one in a slot.
+     * The caller is responsible for setting the other end of the link.
+     *
+     * @param id the slot
+     * @param pair the linked patient's ID in the partner store, or -1 for none
+     */
+    void setPair(int id, int pair);
+
+    /**
+     * It forces any file-backed storage to disk. By default there is none.
+     */
+    default void force() {
+    }
+}
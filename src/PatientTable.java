@@ -0,0 +1,241 @@
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * This class renders donors or recipients, with the IDs of their compatible
+ * patients, as an aligned text table or as CSV. Rows are formatted by hand into
+ * one reusable StringBuilder and handed to the Writer in large chunks, so a long
+ * listing costs a few writes rather than several synchronized prints per row. The
+ * index column is as wide as the largest ID in the graph, so columns stay aligned
+ * however many patients there are and from one page to the next.
+ */
+public class PatientTable {
+    private static final int CHUNK_SIZE = 1 << 15;
+    private final TransplantGraph graph;
+    private final boolean csv;
+    private final int indexWidth;
+    private final StringBuilder buffer;
+
+    /**
+     * Constructs a PatientTable for the patients of a graph.
+     *
+     * @param graph the TransplantGraph the patients belong to
+     * @param csv true to render CSV, false for an aligned text table
+     */
+    public PatientTable(TransplantGraph graph, boolean csv) {
+        this.graph = graph;
+        this.csv = csv;
+        int maxID = Math.max(1, Math.max(graph.getDonorSlots(), graph.getRecipientSlots()) - 1);
+        indexWidth = Math.max("Index".length(), Integer.toString(maxID).length());
+        buffer = new StringBuilder(CHUNK_SIZE + 1024);
+    }
+
+    /**
+     * It creates a Writer over standard output that does no buffering of its own
+     * beyond encoding, to pass to the write methods. It must be flushed, not closed.
+     *
+     * @return the Writer
+     */
+    public static Writer standardOutput() {
+        return new OutputStreamWriter(System.out, System.out.charset());
+    }
+
+    /**
+     * It prints a whole table of patients to standard output.
+     *
+     * @param graph the TransplantGraph the patients belong to
+     * @param patients the donors or recipients to list
+     * @param donors true if the patients are donors, false for recipients
+     */
+    public static void print(TransplantGraph graph, List<Patient> patients, boolean donors) {
+        try {
+            Writer out = standardOutput();
+            new PatientTable(graph, false).write(out, patients, donors);
+            out.flush();
+        } catch (IOException e) {
+            System.out.println("Error printing table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * It writes the header and every row.
+     *
+     * @param out the Writer to write to
+     * @param patients the donors or recipients to list
+     * @param donors true if the patients are donors, false for recipients
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(Writer out, List<Patient> patients, boolean donors) throws IOException {
+        writeHeader(out, donors);
+        writeRows(out, patients, 0, patients.size());
+    }
+
+    /**
+     * It writes the column headings.
+     *
+     * @param out the Writer to write to
+     * @param donors true for a donor table, false for a recipient table
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeHeader(Writer out, boolean donors) throws IOException {
+        if (csv) {
+            buffer.append(donors ? "ID,Name,Age,Organ Donated,Blood Type,Recipient IDs\n"
+                    : "ID,Name,Age,Organ Needed,Blood Type,Urgency,Waiting Days,Donor IDs\n");
+        } else {
+            pad(buffer, "Index", indexWidth, true);
+            buffer.append(donors ? " | Donor Name         | Age | Organ Donated | Blood Type | Recipient IDs\n"
+                    : " | Recipient Name     | Age | Organ Needed  | Blood Type | Donor IDs\n");
+            int width = buffer.length() - 1;
+            for (int k = 0; k < width; k++)
+                buffer.append('=');
+            buffer.append('\n');
+        }
+        flush(out);
+    }
+
+    /**
+     * It writes a range of rows, such as one page of a listing.
+     *
+     * @param out the Writer to write to
+     * @param patients the donors or recipients to list
+     * @param from the index of the first row to write
+     * @param to the index after the last row to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeRows(Writer out, List<Patient> patients, int from, int to) throws IOException {
+        for (int k = from; k < to; k++) {
+            appendRow(patients.get(k));
+            if (buffer.length() >= CHUNK_SIZE) {
+                out.append(buffer);
+                buffer.setLength(0);
+            }
+        }
+        flush(out);
+    }
+
+    /**
+     * It formats one patient's row into the buffer.
+     *
+     * @param p the donor or recipient
+     */
+    private void appendRow(Patient p) {
+        int id = p.getID();
+        if (csv) {
+            buffer.append(id).append(',');
+            appendCsv(p.getName());
+            buffer.append(',').append(p.getAge()).append(',');
+            appendCsv(p.getOrgan());
+            buffer.append(',').append(p.getBloodType().getType()).append(',');
+            if (!p.isDonor())
+                buffer.append(p.getUrgency()).append(',').append(p.getWaitingDays()).append(',');
+            appendConnections(p, ';');
+        } else {
+            pad(buffer, Integer.toString(id), indexWidth, true);
+            buffer.append(" | ");
+            pad(buffer, p.getName(), 18, false);
+            buffer.append(" | ");
+            pad(buffer, Integer.toString(p.getAge()), 3, true);
+            buffer.append(" | ");
+            pad(buffer, p.getOrgan(), 13, false);
+            buffer.append(" |     ");
+            pad(buffer, p.getBloodType().getType(), 6, false);
+            buffer.append(" | ");
+            appendConnections(p, ',');
+        }
+        buffer.append('\n');
+    }
+
+    /**
+     * It appends the IDs of the patients compatible with a patient.
+     *
+     * @param p the donor or recipient
+     * @param separator the character between IDs, followed by a space in text tables
+     */
+    private void appendConnections(Patient p, char separator) {
+        int id = p.getID();
+        boolean first = true;
+        if (p.isDonor()) {
+            for (int j = graph.nextCompatibleRecipient(id, 0); j >= 0; j = graph.nextCompatibleRecipient(id, j + 1)) {
+                separate(first, separator);
+                buffer.append(j);
+                first = false;
+            }
+        } else {
+            for (int i = graph.nextCompatibleDonor(id, 0); i >= 0; i = graph.nextCompatibleDonor(id, i + 1)) {
+                separate(first, separator);
+                buffer.append(i);
+                first = false;
+            }
+        }
+    }
+
+    /**
+     * It appends a separator before every ID but the first.
+     *
+     * @param first true if no ID has been appended yet
+     * @param separator the separator character
+     */
+    private void separate(boolean first, char separator) {
+        if (first)
+            return;
+        buffer.append(separator);
+        if (!csv)
+            buffer.append(' ');
+    }
+
+    /**
+     * It appends a CSV field, quoting it if it holds a comma, quote or line break.
+     *
+     * @param field the field text
+     */
+    private void appendCsv(String field) {
+        boolean quote = false;
+        for (int k = 0; k < field.length() && !quote; k++) {
+            char c = field.charAt(k);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            buffer.append(field);
+            return;
+        }
+        buffer.append('"');
+        for (int k = 0; k < field.length(); k++) {
+            char c = field.charAt(k);
+            if (c == '"')
+                buffer.append('"');
+            buffer.append(c);
+        }
+        buffer.append('"');
+    }
+
+    /**
+     * It appends text padded with spaces to a minimum width. Longer text is kept
+     * whole, as printf's width does.
+     *
+     * @param sb the builder to append to
+     * @param text the text
+     * @param width the minimum width
+     * @param right true to right-align, false to left-align
+     */
+    private static void pad(StringBuilder sb, String text, int width, boolean right) {
+        if (!right)
+            sb.append(text);
+        for (int k = text.length(); k < width; k++)
+            sb.append(' ');
+        if (right)
+            sb.append(text);
+    }
+
+    /**
+     * It hands whatever is buffered to the Writer.
+     *
+     * @param out the Writer to write to
+     * @throws IOException if an I/O error occurs
+     */
+    private void flush(Writer out) throws IOException {
+        out.append(buffer);
+        buffer.setLength(0);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * This scorer favors recipients who are more urgent, have waited longer, and are
+ * closer in age to the donor. Each factor is weighted linearly on top of a base
+ * score, and the result is clamped so every compatible pair scores at least one.
+ */
+public class PriorityScorer implements AllocationScorer {
+    public static final int BASE_SCORE = 1000;
+    private final int ageGapWeight;
+    private final int waitingWeight;
+    private final int urgencyWeight;
+
+    /**
+     * Default constructor which uses a weight of 5 per year of age gap, 1 per day
+     * waited and 100 per urgency level.
+     */
+    public PriorityScorer() {
+        this(5, 1, 100);
+    }
+
+    /**
+     * Constructs a PriorityScorer with the specified weights.
+     *
+     * @param ageGapWeight the penalty per year of age difference
+     * @param waitingWeight the bonus per day the recipient has waited
+     * @param urgencyWeight the bonus per level of recipient urgency
+     */
+    public PriorityScorer(int ageGapWeight, int waitingWeight, int urgencyWeight) {
+        this.ageGapWeight = ageGapWeight;
+        this.waitingWeight = waitingWeight;
+        this.urgencyWeight = urgencyWeight;
+    }
+
+    /**
+     * It scores the allocation from the age gap, waiting time and urgency.
+     *
+     * @param donor the donor Patient
+     * @param recipient the recipient Patient
+     * @return the score, at least one
+     */
+    @Override
+    public int score(Patient donor, Patient recipient) {
+        return score(donor.getAge(), recipient.getAge(), recipient.getWaitingDays(), recipient.getUrgency());
+    }
+
+    /**
+     * It scores the allocation from the graph's columns, without creating views.
+     *
+     * @param graph the TransplantGraph both patients belong to
+     * @param donorID the donor's ID
+     * @param recipientID the recipient's ID
+     * @return the score, at least one
+     */
+    @Override
+    public int score(TransplantGraph graph, int donorID, int recipientID) {
+        PatientStore recipients = graph.getRecipientStore();
+        return score(graph.getDonorStore().getAge(donorID), recipients.getAge(recipientID),
+                recipients.getWaitingDays(recipientID), recipients.getUrgency(recipientID));
+    }
+
+    /**
+     * It weighs the age gap, waiting time and urgency on top of the base score.
+     *
+     * @param donorAge the donor's age
+     * @param recipientAge the recipient's age
+     * @param waitingDays the recipient's waiting time in days
+     * @param urgency the recipient's urgency
+     * @return the score, at least one
+     */
+    private int score(int donorAge, int recipientAge, int waitingDays, int urgency) {
+        long score = BASE_SCORE
+                - (long) ageGapWeight * Math.abs(donorAge - recipientAge)
+                + (long) waitingWeight * waitingDays
+                + (long) urgencyWeight * urgency;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, score));
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * This scorer adds a bonus for hard-to-match recipients to another scorer, so
+ * that a recipient compatible with few donors is offered an organ before one who
+ * is likely to get another. The bonus is weighted per percentage point of current
+ * donors the recipient cannot receive from, read from the graph's maintained
+ * connection counts.
+ */
+public class ScarcityScorer implements AllocationScorer {
+    private final TransplantGraph graph;
+    private final AllocationScorer base;
+    private final int scarcityWeight;
+
+    /**
+     * Constructs a ScarcityScorer over the default PriorityScorer with a weight of
+     * 10 per percentage point of scarcity.
+     *
+     * @param graph the TransplantGraph the recipients belong to
+     */
+    public ScarcityScorer(TransplantGraph graph) {
+        this(graph, new PriorityScorer(), 10);
+    }
+
+    /**
+     * Constructs a ScarcityScorer with the specified base scorer and weight.
+     *
+     * @param graph the TransplantGraph the recipients belong to
+     * @param base the scorer whose score the bonus is added to
+     * @param scarcityWeight the bonus per percentage point of donors the recipient
+     *                       is not compatible with
+     */
+    public ScarcityScorer(TransplantGraph graph, AllocationScorer base, int scarcityWeight) {
+        this.graph = graph;
+        this.base = base;
+        this.scarcityWeight = scarcityWeight;
+    }
+
+    /**
+     * It scores the allocation as the base score plus the recipient's scarcity bonus.
+     *
+     * @param donor the donor Patient
+     * @param recipient the recipient Patient
+     * @return the score, at least one
+     */
+    @Override
+    public int score(Patient donor, Patient recipient) {
+        return withBonus(base.score(donor, recipient), recipient.getID());
+    }
+
+    /**
+     * It scores the allocation by ID, so the base scorer can read the graph's
+     * columns directly.
+     *
+     * @param graph the TransplantGraph both patients belong to
+     * @param donorID the donor's ID
+     * @param recipientID the recipient's ID
+     * @return the score, at least one
+     */
+    @Override
+    public int score(TransplantGraph graph, int donorID, int recipientID) {
+        return withBonus(base.score(graph, donorID, recipientID), recipientID);
+    }
+
+    /**
+     * It adds a recipient's scarcity bonus to a base score.
+     *
+     * @param baseScore the base score
+     * @param recipientID the recipient's ID
+     * @return the score, at least one
+     */
+    private int withBonus(int baseScore, int recipientID) {
+        int donors = graph.getNumDonors();
+        long scarcity = donors == 0 ? 0 : 100L * (donors - graph.getRecipientDegree(recipientID)) / donors;
+        long score = baseScore + scarcityWeight * scarcity;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, score));
+    }
+}
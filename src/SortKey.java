@@ -0,0 +1,7 @@
+/**
+ * This enum names the orders a TransplantGraph can list the patients of one side
+ * in. Every order breaks ties by patient ID, so a listing is the same each time.
+ */
+public enum SortKey {
+    ID, NUM_CONNECTIONS, BLOOD_TYPE, ORGAN
+}
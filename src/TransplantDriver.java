@@ -1,4 +1,5 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -8,7 +9,13 @@ import java.util.*;
 public class TransplantDriver {
     public static final String DONOR_FILE     = "donors.txt";
     public static final String RECIPIENT_FILE = "recipients.txt";
+    public static final String SNAPSHOT_FILE  = "transplant.snap";
+    public static final String LEGACY_FILE    = "transplant.obj";
+    public static final String LOG_FILE       = "transplant.wal";
+    public static final int PAGE_SIZE         = 50;
     private static TransplantGraph graph;
+    private static WriteAheadLog log;
+    private static IncrementalMatcher matcher;
     private static final Scanner scanner = new Scanner(System.in);
 
     /**
@@ -17,55 +24,113 @@ public class TransplantDriver {
      * @param args command-line arguments (not used)
      */
     public static void main(String[] args) {
-        loadGraph();
+        OperationMetrics.install();
+        graph = loadGraph();
+        log = openLog(graph);
+        if (log == null)
+            System.exit(1);
+        matcher = IncrementalMatcher.attach(graph);
         boolean running = true;
 
         while (running) {
             printMainMenu();
             String option = scanner.nextLine().toUpperCase();
             System.out.println();
-            switch (option) {
-                case "LR": graph.printAllRecipients(); break;
-                case "LO": graph.printAllDonors(); break;
-                case "AO": addDonor(); break;
-                case "AR": addRecipient(); break;
-                case "RO": removeDonor(); break;
-                case "RR": removeRecipient(); break;
-                case "SR": sortSubmenu(graph.getRecipients(), true); break;
-                case "SO": sortSubmenu(graph.getDonors(), false); break;
-                case "Q":  running = false; saveGraph(); break;
-                default:   System.out.println("Invalid option."); break;
+            try {
+                switch (option) {
+                    case "LR": printTable(graph.getRecipients(), false); break;
+                    case "LO": printTable(graph.getDonors(), true); break;
+                    case "AO": addDonor(); break;
+                    case "AR": addRecipient(); break;
+                    case "RO": removeDonor(); break;
+                    case "RR": removeRecipient(); break;
+                    case "SR": sortSubmenu(true); break;
+                    case "SO": sortSubmenu(false); break;
+                    case "FR": filter(true); break;
+                    case "FO": filter(false); break;
+                    case "MA": printMatching(matcher.getMatching()); break;
+                    case "WA": printAllocation(); break;
+                    case "TC": printTopCandidates(); break;
+                    case "LP": linkPair(); break;
+                    case "PX": printExchanges(); break;
+                    case "EX": exportTable(); break;
+                    case "CP": compact(); break;
+                    case "ME": System.out.print(OperationMetrics.report()); break;
+                    case "Q":  running = false; saveGraph(); break;
+                    default:   System.out.println("Invalid option."); break;
+                }
+            } catch (UncheckedIOException io) {
+                System.out.println("Error writing " + LOG_FILE + ": " + io.getCause().getMessage());
             }
         }
         System.out.println("Program terminating normally...");
     }
 
     /**
-     * It loads the TransplantGraph from a saved file, or from txt files if absent.
+     * It loads the TransplantGraph from a saved snapshot, or from txt files if
+     * there is none. A serialized file written by older versions cannot be read,
+     * since the classes it was written from no longer exist, so it is reported
+     * and left in place.
+     *
+     * @return the loaded TransplantGraph, or an empty one if nothing could be read
      */
-    private static void loadGraph() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream("transplant.obj"))) {
-            graph = (TransplantGraph) ois.readObject();
-            System.out.println("Loading data from transplant.obj...");
-        } catch (Exception e) {
-            System.out.println("transplant.obj not found. Creating new TransplantGraph object...");
+    public static TransplantGraph loadGraph() {
+        if (new File(SNAPSHOT_FILE).exists()) {
             try {
-                System.out.println("Loading data from '" + DONOR_FILE + "'...");
-                System.out.println("Loading data from '" + RECIPIENT_FILE + "'...");
-                graph = TransplantGraph.buildFromFiles(DONOR_FILE, RECIPIENT_FILE);
+                TransplantGraph graph = GraphSnapshot.load(SNAPSHOT_FILE);
+                System.out.println("Loading data from " + SNAPSHOT_FILE + "...");
+                return graph;
             } catch (IOException io) {
-                System.out.println("Error loading files: " + io.getMessage());
+                System.out.println("Error loading " + SNAPSHOT_FILE + ": " + io.getMessage());
             }
+        } else if (new File(LEGACY_FILE).exists()) {
+            System.out.println(LEGACY_FILE + " was written by an older version and is no longer supported."
+                    + " It will be left in place and not read.");
+        } else {
+            System.out.println(SNAPSHOT_FILE + " not found. Creating new TransplantGraph object...");
+        }
+        try {
+            System.out.println("Loading data from '" + DONOR_FILE + "'...");
+            System.out.println("Loading data from '" + RECIPIENT_FILE + "'...");
+            return TransplantGraph.buildFromFiles(DONOR_FILE, RECIPIENT_FILE);
+        } catch (IOException io) {
+            System.out.println("Error loading files: " + io.getMessage());
+            return new TransplantGraph();
+        }
+    }
+
+    /**
+     * It opens the write-ahead log, replaying any changes made since the snapshot
+     * was last written, so that later changes survive a crash. If the log cannot
+     * be opened, the graph may hold only part of the log, so it must be neither
+     * used nor saved: the caller is to stop, leaving the snapshot and the log as
+     * they are for the next start.
+     *
+     * @param graph the TransplantGraph loaded from the snapshot
+     * @return the open log, or null if it could not be opened
+     */
+    public static WriteAheadLog openLog(TransplantGraph graph) {
+        try {
+            WriteAheadLog log = WriteAheadLog.open(LOG_FILE, SNAPSHOT_FILE, graph);
+            if (log.getReplayed() > 0)
+                System.out.println("Recovered " + log.getReplayed() + " change(s) from " + LOG_FILE + "...");
+            return log;
+        } catch (IOException io) {
+            System.out.println("Error opening " + LOG_FILE + ": " + io.getMessage() + ". " + SNAPSHOT_FILE
+                    + " and " + LOG_FILE + " are left as they are; move them aside or repair them to start.");
+            return null;
         }
     }
 
     /**
-     * It saves the current TransplantGraph to a file.
+     * It checkpoints the current TransplantGraph into the snapshot file and closes
+     * the write-ahead log.
      */
     private static void saveGraph() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("transplant.obj"))) {
-            oos.writeObject(graph);
-            System.out.println("Writing data to transplant.obj...");
+        try {
+            log.checkpoint();
+            log.close();
+            System.out.println("Writing data to " + SNAPSHOT_FILE + "...");
         } catch (IOException io) {
             System.out.println("Error saving data: " + io.getMessage());
         }
@@ -85,6 +150,16 @@ public class TransplantDriver {
         System.out.println("    (RR) - Remove recipient");
         System.out.println("    (SR) - Sort recipients");
         System.out.println("    (SO) - Sort donors");
+        System.out.println("    (FR) - Filter recipients");
+        System.out.println("    (FO) - Filter donors");
+        System.out.println("    (MA) - Match donors to recipients");
+        System.out.println("    (WA) - Allocate donors by priority");
+        System.out.println("    (TC) - Top candidates for a donor");
+        System.out.println("    (LP) - Link recipient with willing donor");
+        System.out.println("    (PX) - Find paired exchanges");
+        System.out.println("    (EX) - Export donors or recipients to a file");
+        System.out.println("    (CP) - Compact patient IDs");
+        System.out.println("    (ME) - Show operation timings");
         System.out.println("    (Q) - Quit\n");
         System.out.print("Please select an option: ");
     }
@@ -96,7 +171,13 @@ public class TransplantDriver {
         System.out.print("Please enter the organ donor name: ");
         String name = scanner.nextLine().trim();
         System.out.print("Please enter the blood type of " + name + ": ");
-        String bt = scanner.nextLine().trim();
+        BloodType bt;
+        try {
+            bt = BloodType.parse(scanner.nextLine());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid blood type. Donor not added.");
+            return;
+        }
         System.out.print("Please enter the age of " + name + ": ");
         int age;
         try {
@@ -107,7 +188,7 @@ public class TransplantDriver {
         }
         System.out.print("Please enter the organs " + name + " is donating: ");
         String organ = scanner.nextLine().trim();
-        Patient donor = new Patient(0, name, age, organ, new BloodType(bt), true);
+        Patient donor = new Patient(0, name, age, organ, bt, true);
         graph.addDonor(donor);
         System.out.println("The organ donor, " + name +
                 ", has been added to the donor list with ID " + donor.getID() + ".");
@@ -120,12 +201,18 @@ public class TransplantDriver {
         System.out.print("Please enter new recipient's name: ");
         String name = scanner.nextLine();
         System.out.print("Please enter the recipient's blood type: ");
-        String bt = scanner.nextLine();
+        BloodType bt;
+        try {
+            bt = BloodType.parse(scanner.nextLine());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid blood type. Recipient not added.");
+            return;
+        }
         System.out.print("Please enter the recipient's age: ");
         int age = Integer.parseInt(scanner.nextLine());
         System.out.print("Please enter the organ needed: ");
         String organ = scanner.nextLine();
-        Patient rec = new Patient(0, name, age, organ, new BloodType(bt), false);
+        Patient rec = new Patient(0, name, age, organ, bt, false);
         graph.addRecipient(rec);
         System.out.println("The organ recipient, " + name + ", has been added to the recipient list with ID " +
                 rec.getID() + ".");
@@ -133,38 +220,220 @@ public class TransplantDriver {
 
     /**
      * It prompts for a donor name, removes that donor if present, and confirms removal.
+     * If several donors share the name, it asks which ID to remove.
      */
     private static void removeDonor() {
         System.out.print("Please enter the name of the organ donor to remove: ");
         String name = scanner.nextLine();
-        boolean exists = graph.getDonors().stream()
-                .anyMatch(p -> p.getName().equalsIgnoreCase(name));
-        graph.removeDonor(name);
-        if (exists)
+        List<Patient> matches = graph.findDonorByName(name);
+        if (matches.isEmpty()) {
+            graph.removeDonor(name);
+            return;
+        }
+        int id = chooseID(matches, "organ donors", "remove", "removed");
+        if (id >= 0 && graph.removeDonorByID(id))
             System.out.println(name + " was removed from the organ donor list.");
     }
 
     /**
      * It prompts for a recipient name, removes that recipient if present, and confirms removal.
+     * If several recipients share the name, it asks which ID to remove.
      */
     private static void removeRecipient() {
         System.out.print("Please enter the name of the recipient to remove: ");
         String name = scanner.nextLine().trim();
-        boolean exists = graph.getRecipients().stream()
-                .anyMatch(p -> p.getName().equalsIgnoreCase(name));
-        graph.removeRecipient(name);
-        if (exists)
+        List<Patient> matches = graph.findRecipientByName(name);
+        if (matches.isEmpty()) {
+            graph.removeRecipient(name);
+            return;
+        }
+        int id = chooseID(matches, "recipients", "remove", "removed");
+        if (id >= 0 && graph.removeRecipientByID(id))
             System.out.println(name + " was removed from the organ transplant waitlist.");
     }
 
     /**
-     * It displays a sorting submenu, sorts the given list by selected criteria,
-     * and prints the sorted results.
+     * It picks one patient out of a non-empty list of name matches, prompting for
+     * an ID when the name is shared.
+     *
+     * @param matches the patients with the entered name
+     * @param kind the plural description used in the prompt
+     * @param action the verb used in the prompt
+     * @param done the past tense of the verb, used if the choice is invalid
+     * @return the chosen patient ID, or -1 if the entered ID is not one of the matches
+     */
+    private static int chooseID(List<Patient> matches, String kind, String action, String done) {
+        if (matches.size() == 1)
+            return matches.get(0).getID();
+        StringBuilder ids = new StringBuilder();
+        for (Patient p : matches) {
+            if (ids.length() > 0)
+                ids.append(", ");
+            ids.append(p.getID());
+        }
+        System.out.print("There are " + matches.size() + " " + kind + " with that name (IDs " + ids
+                + "). Please enter the ID to " + action + ": ");
+        try {
+            int id = Integer.parseInt(scanner.nextLine().trim());
+            for (Patient p : matches) {
+                if (p.getID() == id)
+                    return id;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        System.out.println("Invalid ID. Nothing was " + done + ".");
+        return -1;
+    }
+
+    /**
+     * It prompts for a recipient and a willing donor and links them as a pair for
+     * paired exchange.
+     */
+    private static void linkPair() {
+        System.out.print("Please enter the name of the recipient: ");
+        String recipientName = scanner.nextLine().trim();
+        List<Patient> recipients = graph.findRecipientByName(recipientName);
+        if (recipients.isEmpty()) {
+            System.out.println("No such patient named " + recipientName + " in list of recipients.");
+            return;
+        }
+        int r = chooseID(recipients, "recipients", "link", "linked");
+        if (r < 0)
+            return;
+        System.out.print("Please enter the name of the willing donor: ");
+        String donorName = scanner.nextLine().trim();
+        List<Patient> donors = graph.findDonorByName(donorName);
+        if (donors.isEmpty()) {
+            System.out.println("No such patient named " + donorName + " in list of donors.");
+            return;
+        }
+        int d = chooseID(donors, "organ donors", "link", "linked");
+        if (d >= 0 && graph.linkPair(r, d))
+            System.out.println(recipientName + " is now paired with donor " + donorName + ".");
+    }
+
+    /**
+     * It finds a maximum-score set of paired-exchange cycles and chains using the
+     * default PriorityScorer and prints their transplants.
+     */
+    private static void printExchanges() {
+        List<Exchange> exchanges = PairedExchange.solve(graph, new PriorityScorer());
+        if (exchanges.isEmpty()) {
+            System.out.println("No paired exchanges found.");
+            return;
+        }
+        int transplants = 0;
+        for (Exchange x : exchanges) {
+            System.out.println((x.isChain() ? "Chain" : "Cycle") + " of " + x.size()
+                    + " transplant(s), score " + x.getScore());
+            for (int k = 0; k < x.size(); k++) {
+                Patient d = graph.getDonor(x.getDonorID(k));
+                Patient r = graph.getRecipient(x.getRecipientID(k));
+                System.out.printf("    %5d %-22s -> %5d %s%n", d.getID(), d.getName(), r.getID(), r.getName());
+            }
+            if (x.isChain()) {
+                Patient bridge = graph.getDonor(x.getBridgeDonorID());
+                System.out.printf("    %5d %-22s    (bridge donor)%n", bridge.getID(), bridge.getName());
+            }
+            transplants += x.size();
+        }
+        System.out.println();
+        System.out.println(exchanges.size() + " exchange(s) proposed, " + transplants + " transplant(s) in total.");
+    }
+
+    /**
+     * It computes a maximum-score allocation using the default PriorityScorer and
+     * prints the proposed pairs and total score.
+     */
+    private static void printAllocation() {
+        AllocationScorer scorer = new PriorityScorer();
+        Matching matching = WeightedMatcher.allocate(graph, scorer);
+        printMatching(matching);
+        System.out.println("Total priority score: " + WeightedMatcher.totalScore(graph, matching, scorer));
+    }
+
+    /**
+     * It prompts for a donor and a number of candidates, then prints the best
+     * compatible recipients ranked by priority and scarcity. The number is capped at
+     * the donor's compatible recipients, so the ranker never holds more than exist.
+     */
+    private static void printTopCandidates() {
+        System.out.print("Please enter the name of the available donor: ");
+        String name = scanner.nextLine().trim();
+        List<Patient> donors = graph.findDonorByName(name);
+        if (donors.isEmpty()) {
+            System.out.println("No such patient named " + name + " in list of donors.");
+            return;
+        }
+        int d = chooseID(donors, "organ donors", "rank for", "ranked");
+        if (d < 0)
+            return;
+        System.out.print("How many candidates? (default 10): ");
+        String count = scanner.nextLine().trim();
+        int k;
+        try {
+            k = count.isEmpty() ? 10 : Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number of candidates.");
+            return;
+        }
+        if (k < 1) {
+            System.out.println("The number of candidates must be at least 1.");
+            return;
+        }
+        int compatible = graph.getDonorDegree(d);
+        if (compatible == 0) {
+            System.out.println("No compatible recipients for " + name + ".");
+            return;
+        }
+        CandidateRanker ranker = new CandidateRanker(Math.min(k, compatible), new ScarcityScorer(graph));
+        ranker.rankRecipients(graph, d);
+        System.out.println("Rank | Index | Recipient Name     | Age | Blood Type | Urgency | Waiting | Score");
+        System.out.println("===================================================================================");
+        for (int rank = 0; rank < ranker.size(); rank++) {
+            Patient r = graph.getRecipient(ranker.getID(rank));
+            System.out.printf(" %3d | %5d | %-18s | %3d |     %-6s | %7d | %7d | %d%n", rank + 1, r.getID(),
+                    r.getName(), r.getAge(), r.getBloodType().getType(), r.getUrgency(), r.getWaitingDays(),
+                    ranker.getScore(rank));
+        }
+    }
+
+    /**
+     * It prints the proposed pairs of a matching followed by the number of patients
+     * left unmatched.
+     *
+     * @param matching the matching to print
+     */
+    private static void printMatching(Matching matching) {
+        System.out.println("Donor                        -> Recipient");
+        System.out.println("===========================================================");
+        for (Patient d : graph.getDonors()) {
+            int j = matching.getRecipientFor(d.getID());
+            if (j >= 0)
+                System.out.printf("%5d %-22s -> %5d %s%n", d.getID(), d.getName(), j, graph.getRecipient(j).getName());
+        }
+        System.out.println();
+        System.out.println(matching.size() + " transplant(s) proposed, "
+                + matching.getUnmatchedDonors().length + " donor(s) and "
+                + matching.getUnmatchedRecipients().length + " recipient(s) unmatched.");
+    }
+
+    /**
+     * It renumbers donors and recipients densely, dropping the IDs of removed patients.
+     */
+    private static void compact() {
+        graph.compact();
+        System.out.println("Donor and recipient IDs have been compacted.");
+    }
+
+    /**
+     * It displays a sorting submenu and prints the donors or recipients in the
+     * selected order, which the graph keeps between requests rather than sorting.
      *
-     * @param list the list of patients to sort
      * @param isRecipient true if sorting recipients, false for donors
      */
-    private static void sortSubmenu(List<Patient> list, boolean isRecipient) {
+    private static void sortSubmenu(boolean isRecipient) {
         while (true) {
             System.out.println("   (I) Sort by ID");
             System.out.println("   (N) Sort by Number of " + (isRecipient ? "Donors" : "Recipients"));
@@ -178,69 +447,123 @@ public class TransplantDriver {
                 System.out.println("Returning to main menu.");
                 break;
             }
-            List<Patient> temp = new ArrayList<>(list);
+            SortKey key;
             switch (opt) {
-                case "I": Collections.sort(temp); break;
-                case "N": Collections.sort(temp, new NumConnectionsComparator(graph)); break;
-                case "B": Collections.sort(temp, new BloodTypeComparator()); break;
-                case "O": Collections.sort(temp, new OrganComparator()); break;
+                case "I": key = SortKey.ID; break;
+                case "N": key = SortKey.NUM_CONNECTIONS; break;
+                case "B": key = SortKey.BLOOD_TYPE; break;
+                case "O": key = SortKey.ORGAN; break;
                 default:    System.out.println("Invalid option."); continue;
             }
-            if (isRecipient) {
-                printRecipients(temp);
-                System.out.println();
-            } else {
-                printDonors(temp);
-                System.out.println();
-            }
+            long start = OperationMetrics.start();
+            List<Patient> sorted = isRecipient ? graph.getRecipientsSortedBy(key) : graph.getDonorsSortedBy(key);
+            OperationMetrics.record(Operation.SORT, start);
+            printTable(sorted, !isRecipient);
+            System.out.println();
         }
     }
 
     /**
-     * It prints a formatted table of recipients with their compatible donor IDs.
+     * It prompts for an organ, a blood type, an age range and whether to keep only
+     * patients with no compatible match, each of which may be left blank, and
+     * prints the donors or recipients matching all of them.
      *
-     * @param list the list of recipients to print
-     */
-    private static void printRecipients(List<Patient> list) {
-        System.out.printf("Index | Recipient Name     | Age | Organ Needed  | Blood Type | Donor IDs%n");
-        System.out.println("==========================================================================");
-        for (Patient p : list) {
-            int j = p.getID();
-            System.out.printf("   %d  | %-18s | %2d  | %-13s |     %-6s | ",
-                    j, p.getName(), p.getAge(), p.getOrgan(), p.getBloodType().getType());
-            List<Integer> ids = new ArrayList<>();
-            for (int i = 0; i < graph.getDonors().size(); i++) {
-                if (graph.isConnected(i, j)) ids.add(i);
+     * @param isRecipient true if filtering recipients, false for donors
+     */
+    private static void filter(boolean isRecipient) {
+        PatientQuery query = PatientQuery.all();
+        System.out.print("Organ (blank for any): ");
+        String organ = scanner.nextLine().trim();
+        if (!organ.isEmpty())
+            query = query.and(PatientQuery.organ(organ));
+        System.out.print("Blood type, without a sign for either Rh factor (blank for any): ");
+        String type = scanner.nextLine().trim();
+        if (!type.isEmpty()) {
+            try {
+                if (type.endsWith("+") || type.endsWith("-"))
+                    query = query.and(PatientQuery.bloodType(BloodType.parse(type)));
+                else
+                    query = query.and(PatientQuery.bloodType(BloodType.parse(type + "-"))
+                            .or(PatientQuery.bloodType(BloodType.parse(type + "+"))));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid blood type.");
+                return;
             }
-            for (int k = 0; k < ids.size(); k++) {
-                System.out.print(ids.get(k));
-                if (k < ids.size() - 1) System.out.print(", ");
+        }
+        System.out.print("Age range, as min-max (blank for any): ");
+        String ages = scanner.nextLine().trim();
+        if (!ages.isEmpty()) {
+            String[] bounds = ages.split("-", 2);
+            try {
+                query = query.and(PatientQuery.ageBetween(Integer.parseInt(bounds[0].trim()),
+                        Integer.parseInt(bounds[bounds.length - 1].trim())));
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid age range.");
+                return;
             }
-            System.out.println();
         }
+        System.out.print("Only those with no compatible " + (isRecipient ? "donors" : "recipients") + "? (Y/N): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("Y"))
+            query = query.and(PatientQuery.unconnected());
+        System.out.println();
+        long start = OperationMetrics.start();
+        List<Patient> found = isRecipient ? graph.findRecipients(query) : graph.findDonors(query);
+        OperationMetrics.record(Operation.QUERY, start);
+        if (found.isEmpty()) {
+            System.out.println("No " + (isRecipient ? "recipients" : "donors") + " match.");
+            return;
+        }
+        printTable(found, !isRecipient);
     }
 
     /**
-     * It prints a formatted table of donors with their compatible recipient IDs.
+     * It prints a formatted table of donors or recipients with their compatible
+     * patient IDs, pausing after every page when the list is long.
      *
-     * @param list the list of donors to print
-     */
-    private static void printDonors(List<Patient> list) {
-        System.out.printf("Index | Donor Name         | Age | Organ Donated | Blood Type | Recipient IDs%n");
-        System.out.println("=============================================================================");
-        for (Patient p : list) {
-            int i = p.getID();
-            System.out.printf("   %d  | %-18s | %2d  | %-13s |     %-6s | ",
-                    i, p.getName(), p.getAge(), p.getOrgan(), p.getBloodType().getType());
-            List<Integer> ids = new ArrayList<>();
-            for (int j = 0; j < graph.getRecipients().size(); j++) {
-                if (graph.isConnected(i, j)) ids.add(j);
-            }
-            for (int k = 0; k < ids.size(); k++) {
-                System.out.print(ids.get(k));
-                if (k < ids.size() - 1) System.out.print(", ");
+     * @param list the donors or recipients to print
+     * @param donors true if the list holds donors, false for recipients
+     */
+    private static void printTable(List<Patient> list, boolean donors) {
+        PatientTable table = new PatientTable(graph, false);
+        Writer out = PatientTable.standardOutput();
+        try {
+            table.writeHeader(out, donors);
+            for (int from = 0; from < list.size(); from += PAGE_SIZE) {
+                int to = Math.min(list.size(), from + PAGE_SIZE);
+                table.writeRows(out, list, from, to);
+                out.flush();
+                if (to < list.size()) {
+                    System.out.print("-- " + to + " of " + list.size() + " shown. Press Enter for more, or Q to stop: ");
+                    if (scanner.nextLine().trim().equalsIgnoreCase("Q"))
+                        break;
+                }
             }
-            System.out.println();
+            out.flush();
+        } catch (IOException io) {
+            System.out.println("Error printing table: " + io.getMessage());
+        }
+    }
+
+    /**
+     * It prompts for donors or recipients and a file name, then writes the full
+     * table to that file, as CSV if the name ends in .csv.
+     */
+    private static void exportTable() {
+        System.out.print("Export (D)onors or (R)ecipients? ");
+        String side = scanner.nextLine().trim().toUpperCase();
+        if (!side.equals("D") && !side.equals("R")) {
+            System.out.println("Invalid option.");
+            return;
+        }
+        System.out.print("Please enter the file name: ");
+        String file = scanner.nextLine().trim();
+        boolean donors = side.equals("D");
+        List<Patient> list = donors ? graph.getDonors() : graph.getRecipients();
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            new PatientTable(graph, file.toLowerCase().endsWith(".csv")).write(out, list, donors);
+            System.out.println(list.size() + " " + (donors ? "donors" : "recipients") + " written to " + file + ".");
+        } catch (IOException io) {
+            System.out.println("Error writing " + file + ": " + io.getMessage());
         }
     }
 }
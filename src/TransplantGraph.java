@@ -1,29 +1,89 @@
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
- * This class manages donor and recipient Patient lists and a compatibility matrix
- * for organ transplants, supporting up to MAX_PATIENTS of each type.
+ * This class manages donors, recipients and a compatibility matrix for organ
+ * transplants. Each side is held column by column in a PatientStore, and the
+ * Patients it hands out are read-only views of those columns. The matrix is a
+ * growable bitset, so there is no fixed limit on the number of donors or
+ * recipients. The stores and the matrix live on the Java heap by default, or
+ * outside it when the graph is built over OffHeapStorage, and GraphSnapshot
+ * saves either. Patient IDs are stable: removing a patient leaves a tombstone
+ * whose ID is recycled by a later add, and compact() renumbers everyone densely
+ * when convenient. Structural changes and bulk builds time themselves into
+ * OperationMetrics, including the listeners they notify.
  */
-public class TransplantGraph implements Serializable {
-    public static final int MAX_PATIENTS = 100;
-    private ArrayList<Patient> donors;
-    private ArrayList<Patient> recipients;
-    private boolean[][] connections;
+public final class TransplantGraph {
+    private static final int PARALLEL_REBUILD_THRESHOLD = 8192;
+    private PatientStore donors;
+    private PatientStore recipients;
+    private IntStack freeDonorIDs;
+    private IntStack freeRecipientIDs;
+    private AdjacencyMatrix connections;
+    private CompatibilityIndex classes;
+    private NameIndex donorNames;
+    private NameIndex recipientNames;
+    private PatientOrder donorOrder;
+    private PatientOrder recipientOrder;
+    private PatientIndex donorIndex;
+    private PatientIndex recipientIndex;
+    private ArrayList<GraphListener> listeners;
 
     /**
-     * Default constructor which initializes empty donor and recipient lists
-     * and the compatibility matrix.
+     * Default constructor which initializes empty donor and recipient stores
+     * and the compatibility matrix on the Java heap.
      */
     public TransplantGraph() {
-        donors = new ArrayList<>();
-        recipients = new ArrayList<>();
-        connections = new boolean[MAX_PATIENTS][MAX_PATIENTS];
+        this(new HeapPatientStore(true), new HeapPatientStore(false), new HeapAdjacencyMatrix());
     }
 
     /**
-     * Builds a TransplantGraph by reading donor and recipient data from txt files.
+     * Constructs a TransplantGraph over the given storage, which may already hold
+     * patients, as when reopening OffHeapStorage. The tombstones of each store
+     * become its free IDs, lowest reused first, and the compatibility classes and
+     * name indexes are rebuilt from the stores. The matrix is kept if it has a row
+     * per donor slot and a column per recipient slot, and otherwise rebuilt.
+     *
+     * @param donors the donor store
+     * @param recipients the recipient store
+     * @param connections the compatibility matrix
+     */
+    public TransplantGraph(PatientStore donors, PatientStore recipients, AdjacencyMatrix connections) {
+        if (!donors.isDonor() || recipients.isDonor())
+            throw new IllegalArgumentException("Donor and recipient stores are swapped");
+        this.donors = donors;
+        this.recipients = recipients;
+        this.connections = connections;
+        donors.setPartner(recipients);
+        recipients.setPartner(donors);
+        freeDonorIDs = new IntStack();
+        freeRecipientIDs = new IntStack();
+        listeners = new ArrayList<>();
+        for (int i = donors.getSlots() - 1; i >= 0; i--) {
+            if (!donors.isLive(i))
+                freeDonorIDs.push(i);
+        }
+        for (int j = recipients.getSlots() - 1; j >= 0; j--) {
+            if (!recipients.isLive(j))
+                freeRecipientIDs.push(j);
+        }
+        reindex();
+        if (connections.getNumRows() != donors.getSlots() || connections.getNumColumns() != recipients.getSlots())
+            rebuildConnections();
+    }
+
+    /**
+     * Builds a TransplantGraph by reading donor and recipient data from txt files
+     * with a PatientFileReader. Each line holds ID, name, age, organ and blood type,
+     * optionally followed by urgency and waiting days for recipients. Malformed
+     * lines are reported and skipped, and the compatibility matrix is built in one
+     * parallel batch once both files have been read.
      *
      * @param donorFile     the path to the donor txt file
      * @param recipientFile the path to the recipient txt file
@@ -31,150 +91,694 @@ public class TransplantGraph implements Serializable {
      * @throws IOException if an I/O error occurs reading either file
      */
     public static TransplantGraph buildFromFiles(String donorFile, String recipientFile) throws IOException {
+        long start = OperationMetrics.start();
+        PatientFileReader reader = new PatientFileReader();
+        List<Patient> newDonors = reader.read(donorFile, true);
+        List<Patient> newRecipients = reader.read(recipientFile, false);
+        for (String error : reader.getErrors())
+            System.out.println("Skipped " + error);
         TransplantGraph graph = new TransplantGraph();
+        graph.addAll(newDonors, newRecipients);
+        OperationMetrics.record(Operation.BUILD_FROM_FILES, start);
+        return graph;
+    }
+
+    /**
+     * It adds a donor to the graph by copying its attributes into the donor store,
+     * assigns an ID, and connects it to every compatible recipient class. The ID
+     * of a previously removed donor is reused when one is free.
+     *
+     * @param p the Patient to add as donor
+     * @return the donor's ID
+     */
+    public int addDonor(Patient p) {
+        long start = OperationMetrics.start();
+        notifyListeners(GraphListener::changing);
+        int id = admitDonor(p);
+        classes.connectDonor(id, donors.getOrganCode(id), donors.getBloodCode(id), connections);
+        notifyListeners(l -> l.donorAdded(id));
+        OperationMetrics.record(Operation.ADD_DONOR, start);
+        return id;
+    }
+
+    /**
+     * It adds a recipient to the graph by copying its attributes into the
+     * recipient store, assigns an ID, and connects it to every compatible donor
+     * class. The ID of a previously removed recipient is reused when one is free.
+     *
+     * @param p the Patient to add as recipient
+     * @return the recipient's ID
+     */
+    public int addRecipient(Patient p) {
+        long start = OperationMetrics.start();
+        notifyListeners(GraphListener::changing);
+        int id = admitRecipient(p);
+        classes.connectRecipient(id, recipients.getOrganCode(id), recipients.getBloodCode(id), connections);
+        notifyListeners(l -> l.recipientAdded(id));
+        OperationMetrics.record(Operation.ADD_RECIPIENT, start);
+        return id;
+    }
+
+    /**
+     * It adds many donors and recipients at once and then rebuilds the whole
+     * compatibility matrix in a single batch, which is much cheaper than
+     * connecting each patient on arrival. Listeners see one graphRebuilt event.
+     *
+     * @param newDonors the donors to add
+     * @param newRecipients the recipients to add
+     */
+    public void addAll(List<Patient> newDonors, List<Patient> newRecipients) {
+        addAll(newDonors, newRecipients, 0);
+    }
+
+    /**
+     * It adds many donors and recipients at once and then rebuilds the whole
+     * compatibility matrix in a single batch on a given number of threads.
+     *
+     * @param newDonors the donors to add
+     * @param newRecipients the recipients to add
+     * @param parallelism the number of worker threads for the rebuild, one to
+     *                    build on the calling thread, or zero to choose by the
+     *                    size of the graph as rebuildConnections() does
+     */
+    public void addAll(List<Patient> newDonors, List<Patient> newRecipients, int parallelism) {
+        long start = OperationMetrics.start();
+        notifyListeners(GraphListener::changing);
+        for (Patient p : newDonors)
+            admitDonor(p);
+        for (Patient p : newRecipients)
+            admitRecipient(p);
+        if (parallelism > 0)
+            rebuildConnections(parallelism);
+        else
+            rebuildConnections();
+        notifyListeners(GraphListener::graphRebuilt);
+        OperationMetrics.record(Operation.ADD_ALL, start);
+    }
+
+    /**
+     * It rebuilds the compatibility matrix, using every available processor once
+     * the graph is large enough to repay starting a pool.
+     */
+    public void rebuildConnections() {
+        boolean small = donors.getSlots() + recipients.getSlots() < PARALLEL_REBUILD_THRESHOLD;
+        rebuildConnections(small ? 1 : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * It rebuilds the compatibility matrix from the compatibility classes, filling
+     * each donor row and each recipient column word by word from whole classes.
+     * Rows, and then columns, are partitioned across a fork-join pool; each worker
+     * only writes the words and degree of the rows or columns it owns, so no
+     * locking is needed.
+     *
+     * @param parallelism the number of worker threads, or one to build on the
+     *                    calling thread
+     */
+    public void rebuildConnections(int parallelism) {
+        long start = OperationMetrics.start();
+        AdjacencyMatrix matrix = connections;
+        matrix.reset(donors.getSlots(), recipients.getSlots());
+        forEach(parallelism, donors.getSlots(), i -> {
+            if (donors.isLive(i))
+                classes.fillDonorRow(i, donors.getOrganCode(i), donors.getBloodCode(i), matrix);
+        });
+        forEach(parallelism, recipients.getSlots(), j -> {
+            if (recipients.isLive(j))
+                classes.fillRecipientColumn(j, recipients.getOrganCode(j), recipients.getBloodCode(j), matrix);
+        });
+        OperationMetrics.record(Operation.REBUILD, start);
+    }
 
-        BufferedReader dReader = new BufferedReader(new InputStreamReader(new FileInputStream(donorFile)));
-        String line;
-        while ((line = dReader.readLine()) != null) {
-            String[] parts = line.split(",");
-            int id = Integer.parseInt(parts[0].trim());
-            String name = parts[1].trim();
-            int age = Integer.parseInt(parts[2].trim());
-            String organ = parts[3].trim();
-            BloodType bt = new BloodType(parts[4].trim());
-            graph.addDonor(new Patient(id, name, age, organ, bt, true));
+    /**
+     * Restores a TransplantGraph from its slots, as saved by GraphSnapshot. Each
+     * patient's ID must equal its slot index, with null marking a tombstone. The
+     * donor rows are taken as saved and the recipient columns are rebuilt from
+     * the compatibility classes.
+     *
+     * @param donorSlots the donors by ID
+     * @param recipientSlots the recipients by ID
+     * @param freeDonorIDs the free donor IDs in push order
+     * @param freeRecipientIDs the free recipient IDs in push order
+     * @param donorRows the packed row of each donor, or null to rebuild them too
+     * @return the restored TransplantGraph
+     */
+    public static TransplantGraph restore(List<Patient> donorSlots, List<Patient> recipientSlots,
+                                          int[] freeDonorIDs, int[] freeRecipientIDs, long[][] donorRows) {
+        TransplantGraph graph = new TransplantGraph();
+        graph.donors.extend(donorSlots.size());
+        graph.recipients.extend(recipientSlots.size());
+        for (Patient p : donorSlots) {
+            if (p != null) {
+                graph.donors.put(p.getID(), p);
+                graph.indexDonor(p.getID());
+            }
         }
-        dReader.close();
-
-        BufferedReader rReader = new BufferedReader(new InputStreamReader(new FileInputStream(recipientFile)));
-        while ((line = rReader.readLine()) != null) {
-            String[] parts = line.split(",");
-            int id = Integer.parseInt(parts[0].trim());
-            String name = parts[1].trim();
-            int age = Integer.parseInt(parts[2].trim());
-            String organ = parts[3].trim();
-            BloodType bt = new BloodType(parts[4].trim());
-            graph.addRecipient(new Patient(id, name, age, organ, bt, false));
+        for (Patient p : recipientSlots) {
+            if (p != null) {
+                graph.recipients.put(p.getID(), p);
+                graph.indexRecipient(p.getID());
+            }
         }
-        rReader.close();
-
+        for (int id : freeDonorIDs)
+            graph.freeDonorIDs.push(id);
+        for (int id : freeRecipientIDs)
+            graph.freeRecipientIDs.push(id);
+        if (donorRows == null) {
+            graph.rebuildConnections();
+            return graph;
+        }
+        AdjacencyMatrix matrix = graph.connections;
+        matrix.reset(donorSlots.size(), recipientSlots.size());
+        for (int i = 0; i < donorRows.length; i++) {
+            if (donorRows[i] != null)
+                matrix.orRow(i, donorRows[i]);
+        }
+        boolean small = donorSlots.size() + recipientSlots.size() < PARALLEL_REBUILD_THRESHOLD;
+        PatientStore recipients = graph.recipients;
+        forEach(small ? 1 : Runtime.getRuntime().availableProcessors(), recipientSlots.size(), j -> {
+            if (recipients.isLive(j))
+                graph.classes.fillRecipientColumn(j, recipients.getOrganCode(j), recipients.getBloodCode(j), matrix);
+        });
         return graph;
     }
 
     /**
-     * It adds a donor Patient to the graph, assigns an ID, and updates compatibility.
+     * It copies a donor into a free or new slot and indexes it, without connecting
+     * it. A standalone Patient is also given its ID, so the caller can refer to it.
      *
      * @param p the Patient to add as donor
+     * @return the donor's ID
      */
-    public void addDonor(Patient p) {
-        int i = donors.size();
-        p.setID(i);
-        donors.add(p);
-        for (int j = 0; j < recipients.size(); j++) {
-            Patient rec = recipients.get(j);
-            connections[i][j] = p.getOrgan().equalsIgnoreCase(rec.getOrgan())
-                    && BloodType.isCompatible(rec.getBloodType(), p.getBloodType());
-        }
+    private int admitDonor(Patient p) {
+        int id = freeDonorIDs.isEmpty() ? connections.addRow() : freeDonorIDs.pop();
+        donors.put(id, p);
+        if (!p.isView())
+            p.setID(id);
+        indexDonor(id);
+        return id;
     }
 
     /**
-     * It adds a recipient Patient to the graph, assigns an ID, and updates compatibility.
+     * It copies a recipient into a free or new slot and indexes it, without
+     * connecting it. A standalone Patient is also given its ID, so the caller can
+     * refer to it.
      *
      * @param p the Patient to add as recipient
+     * @return the recipient's ID
      */
-    public void addRecipient(Patient p) {
-        int j = recipients.size();
-        p.setID(j);
-        recipients.add(p);
-        for (int i = 0; i < donors.size(); i++) {
-            Patient donor = donors.get(i);
-            connections[i][j] = p.getOrgan().equalsIgnoreCase(donor.getOrgan())
-                    && BloodType.isCompatible(p.getBloodType(), donor.getBloodType());
-        }
+    private int admitRecipient(Patient p) {
+        int id = freeRecipientIDs.isEmpty() ? connections.addColumn() : freeRecipientIDs.pop();
+        recipients.put(id, p);
+        if (!p.isView())
+            p.setID(id);
+        indexRecipient(id);
+        return id;
+    }
+
+    /**
+     * It adds a stored donor to the compatibility classes, the name index and the
+     * attribute index.
+     *
+     * @param id the donor ID
+     */
+    private void indexDonor(int id) {
+        classes.addDonor(id, donors.getOrganCode(id), donors.getBloodCode(id));
+        donorNames.add(donors.getName(id), id);
+        donorIndex.add(id);
     }
 
     /**
-     * It removes the donor with the given name, re-indexes remaining donors,
-     * and shifts the compatibility matrix accordingly.
+     * It adds a stored recipient to the compatibility classes, the name index and
+     * the attribute index.
+     *
+     * @param id the recipient ID
+     */
+    private void indexRecipient(int id) {
+        classes.addRecipient(id, recipients.getOrganCode(id), recipients.getBloodCode(id));
+        recipientNames.add(recipients.getName(id), id);
+        recipientIndex.add(id);
+    }
+
+    /**
+     * It removes the donor with the given name, or the one with the lowest ID if
+     * several share it. Other donors keep their IDs.
      *
      * @param name the donor name to remove
      */
     public void removeDonor(String name) {
-        int idx = -1;
-        for (int i = 0; i < donors.size(); i++) {
-            if (donors.get(i).getName().equalsIgnoreCase(name)) {
-                idx = i;
-                break;
-            }
-        }
-        if (idx == -1) {
+        int[] ids = donorNames.find(name);
+        if (ids.length == 0) {
             System.out.println("Failed to remove donor: No such patient named " + name + " in list of donors.");
             return;
         }
-        donors.remove(idx);
-        for (int i = idx; i < donors.size(); i++) {
-            donors.get(i).setID(i);
-        }
-        for (int i = idx; i < donors.size() + 1; i++) {
-            for (int j = 0; j < recipients.size(); j++) {
-                if (i < donors.size())
-                    connections[i][j] = connections[i + 1][j];
-                else
-                    connections[i][j] = false;
-            }
-        }
+        removeDonorByID(ids[0]);
     }
 
     /**
-     * It removes the recipient with the given name, re-indexes remaining recipients,
-     * and shifts the compatibility matrix accordingly.
+     * It removes the recipient with the given name, or the one with the lowest ID
+     * if several share it. Other recipients keep their IDs.
      *
      * @param name the recipient name to remove
      */
     public void removeRecipient(String name) {
-        int idx = -1;
-        for (int j = 0; j < recipients.size(); j++) {
-            if (recipients.get(j).getName().equalsIgnoreCase(name)) {
-                idx = j;
-                break;
-            }
-        }
-        if (idx == -1) {
+        int[] ids = recipientNames.find(name);
+        if (ids.length == 0) {
             System.out.println("Failed to remove recipient: No such patient named " + name + " in list of recipients.");
             return;
         }
-        recipients.remove(idx);
-        for (int j = idx; j < recipients.size(); j++) {
-            recipients.get(j).setID(j);
+        removeRecipientByID(ids[0]);
+    }
+
+    /**
+     * It removes the donor with the given ID by clearing its connections and
+     * leaving a tombstone in its slot, which a later addDonor may reuse.
+     *
+     * @param id the donor ID to remove
+     * @return true if a donor was removed, false if the ID was not in use
+     */
+    public boolean removeDonorByID(int id) {
+        if (!donors.isLive(id))
+            return false;
+        long start = OperationMetrics.start();
+        notifyListeners(GraphListener::changing);
+        Patient removed = listeners.isEmpty() ? null : donors.view(id).copy();
+        connections.clearRow(id);
+        unlinkDonor(id);
+        classes.removeDonor(id, donors.getOrganCode(id), donors.getBloodCode(id));
+        donorNames.remove(donors.getName(id), id);
+        donorIndex.remove(id);
+        donors.remove(id);
+        freeDonorIDs.push(id);
+        notifyListeners(l -> l.donorRemoved(id, removed));
+        OperationMetrics.record(Operation.REMOVE_DONOR, start);
+        return true;
+    }
+
+    /**
+     * It removes the recipient with the given ID by clearing its connections and
+     * leaving a tombstone in its slot, which a later addRecipient may reuse.
+     *
+     * @param id the recipient ID to remove
+     * @return true if a recipient was removed, false if the ID was not in use
+     */
+    public boolean removeRecipientByID(int id) {
+        if (!recipients.isLive(id))
+            return false;
+        long start = OperationMetrics.start();
+        notifyListeners(GraphListener::changing);
+        Patient removed = listeners.isEmpty() ? null : recipients.view(id).copy();
+        connections.clearColumn(id);
+        unlinkRecipient(id);
+        classes.removeRecipient(id, recipients.getOrganCode(id), recipients.getBloodCode(id));
+        recipientNames.remove(recipients.getName(id), id);
+        recipientIndex.remove(id);
+        recipients.remove(id);
+        freeRecipientIDs.push(id);
+        notifyListeners(l -> l.recipientRemoved(id, removed));
+        OperationMetrics.record(Operation.REMOVE_RECIPIENT, start);
+        return true;
+    }
+
+    /**
+     * It renumbers donors and recipients densely in their current ID order,
+     * dropping every tombstone and rebuilding the compatibility matrix. Each store
+     * is compacted in place, so this works the same on or off the heap. This
+     * changes the IDs of patients after a removed slot, so it is meant to be
+     * run off-peak rather than after each removal. Paired-donation links are
+     * carried over to the new IDs. Listeners see a single graphRebuilt event.
+     */
+    public void compact() {
+        long start = OperationMetrics.start();
+        notifyListeners(GraphListener::changing);
+        int[] newDonorIDs = donors.compact();
+        int[] newRecipientIDs = recipients.compact();
+        for (int i = 0; i < donors.getSlots(); i++) {
+            if (donors.getPair(i) >= 0)
+                donors.setPair(i, newRecipientIDs[donors.getPair(i)]);
+        }
+        for (int j = 0; j < recipients.getSlots(); j++) {
+            if (recipients.getPair(j) >= 0)
+                recipients.setPair(j, newDonorIDs[recipients.getPair(j)]);
         }
-        for (int j = idx; j < recipients.size() + 1; j++) {
-            for (int i = 0; i < donors.size(); i++) {
-                if (j < recipients.size())
-                    connections[i][j] = connections[i][j + 1];
+        freeDonorIDs.clear();
+        freeRecipientIDs.clear();
+        reindex();
+        rebuildConnections();
+        notifyListeners(GraphListener::graphRebuilt);
+        OperationMetrics.record(Operation.COMPACT, start);
+    }
+
+    /**
+     * It forces the stores and the matrix to their files, when the graph is built
+     * over file-backed storage, so the graph survives a crash as it is now. A
+     * graph on the heap has nothing to force.
+     */
+    public void force() {
+        donors.force();
+        recipients.force();
+        connections.force();
+    }
+
+    /**
+     * It links a recipient with a willing donor for paired donation, replacing any
+     * link either of them already had.
+     *
+     * @param recipientID the recipient's ID
+     * @param donorID the donor's ID
+     * @return true if both patients exist and were linked, otherwise false
+     */
+    public boolean linkPair(int recipientID, int donorID) {
+        if (!recipients.isLive(recipientID) || !donors.isLive(donorID))
+            return false;
+        long start = OperationMetrics.start();
+        notifyListeners(GraphListener::changing);
+        unlinkRecipient(recipientID);
+        unlinkDonor(donorID);
+        recipients.setPair(recipientID, donorID);
+        donors.setPair(donorID, recipientID);
+        notifyListeners(l -> l.pairLinked(recipientID, donorID));
+        OperationMetrics.record(Operation.LINK_PAIR, start);
+        return true;
+    }
+
+    /**
+     * It removes the paired-donation link of a recipient.
+     *
+     * @param recipientID the recipient's ID
+     * @return true if the recipient had a linked donor, otherwise false
+     */
+    public boolean unlinkPair(int recipientID) {
+        if (getPairedDonor(recipientID) < 0)
+            return false;
+        notifyListeners(GraphListener::changing);
+        unlinkRecipient(recipientID);
+        notifyListeners(l -> l.pairLinked(recipientID, -1));
+        return true;
+    }
+
+    /**
+     * It gets the willing donor linked with a recipient.
+     *
+     * @param recipientID the recipient's ID
+     * @return the linked donor's ID, or -1 if there is none
+     */
+    public int getPairedDonor(int recipientID) {
+        return recipients.isLive(recipientID) ? recipients.getPair(recipientID) : -1;
+    }
+
+    /**
+     * It gets the recipient a donor is willing to donate on behalf of.
+     *
+     * @param donorID the donor's ID
+     * @return the linked recipient's ID, or -1 if there is none
+     */
+    public int getPairedRecipient(int donorID) {
+        return donors.isLive(donorID) ? donors.getPair(donorID) : -1;
+    }
+
+    /**
+     * It registers a listener to be told about every later structural change.
+     *
+     * @param l the listener to add
+     */
+    public void addListener(GraphListener l) {
+        listeners.add(l);
+    }
+
+    /**
+     * It unregisters a listener.
+     *
+     * @param l the listener to remove
+     */
+    public void removeListener(GraphListener l) {
+        listeners.remove(l);
+    }
+
+    /**
+     * It tells every listener about an event. A listener that throws does not keep
+     * the later ones from hearing of it, so derived state such as a matching stays
+     * in step with the graph; the first failure is rethrown once all have been
+     * told, with any others suppressed into it.
+     *
+     * @param event the callback to make on each listener
+     */
+    private void notifyListeners(Consumer<GraphListener> event) {
+        RuntimeException failure = null;
+        for (GraphListener l : listeners) {
+            try {
+                event.accept(l);
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
                 else
-                    connections[i][j] = false;
+                    failure.addSuppressed(e);
             }
         }
+        if (failure != null)
+            throw failure;
     }
 
     /**
-     * An accessor which gets the list of donor patients.
+     * An accessor which gets a view of the donor with the given ID.
      *
-     * @return the list of donors
+     * @param id the donor ID
+     * @return the donor, or null if the ID is not in use
      */
-    public ArrayList<Patient> getDonors() {
+    public Patient getDonor(int id) {
+        return donors.view(id);
+    }
+
+    /**
+     * An accessor which gets a view of the recipient with the given ID.
+     *
+     * @param id the recipient ID
+     * @return the recipient, or null if the ID is not in use
+     */
+    public Patient getRecipient(int id) {
+        return recipients.view(id);
+    }
+
+    /**
+     * It checks if a donor ID is in use, without creating a view.
+     *
+     * @param id the donor ID
+     * @return true if a donor holds the ID, otherwise false
+     */
+    public boolean hasDonor(int id) {
+        return donors.isLive(id);
+    }
+
+    /**
+     * It checks if a recipient ID is in use, without creating a view.
+     *
+     * @param id the recipient ID
+     * @return true if a recipient holds the ID, otherwise false
+     */
+    public boolean hasRecipient(int id) {
+        return recipients.isLive(id);
+    }
+
+    /**
+     * An accessor which gets the columnar store of the donors, for loops that scan
+     * donor attributes without creating views. The store is shared with the
+     * graph, so callers must not modify it.
+     *
+     * @return the donor PatientStore
+     */
+    public PatientStore getDonorStore() {
         return donors;
     }
 
     /**
-     * An accessor which gets the list of recipient patients.
+     * An accessor which gets the columnar store of the recipients, for loops that
+     * scan recipient attributes without creating views. The store is shared with
+     * the graph, so callers must not modify it.
      *
-     * @return the list of recipients
+     * @return the recipient PatientStore
      */
-    public ArrayList<Patient> getRecipients() {
+    public PatientStore getRecipientStore() {
         return recipients;
     }
 
+    /**
+     * It finds every donor with the given name, ignoring case.
+     *
+     * @param name the donor name
+     * @return the matching donors in ID order, empty if there are none
+     */
+    public List<Patient> findDonorByName(String name) {
+        List<Patient> matches = new ArrayList<>();
+        for (int id : donorNames.find(name))
+            matches.add(donors.view(id));
+        return matches;
+    }
+
+    /**
+     * It finds every recipient with the given name, ignoring case.
+     *
+     * @param name the recipient name
+     * @return the matching recipients in ID order, empty if there are none
+     */
+    public List<Patient> findRecipientByName(String name) {
+        List<Patient> matches = new ArrayList<>();
+        for (int id : recipientNames.find(name))
+            matches.add(recipients.view(id));
+        return matches;
+    }
+
+    /**
+     * An accessor which gets views of the donor patients in ID order.
+     *
+     * @return a new list of the current donors
+     */
+    public ArrayList<Patient> getDonors() {
+        return live(donors);
+    }
+
+    /**
+     * An accessor which gets views of the recipient patients in ID order.
+     *
+     * @return a new list of the current recipients
+     */
+    public ArrayList<Patient> getRecipients() {
+        return live(recipients);
+    }
+
+    /**
+     * An accessor which gets views of the donor patients in the given order, ties
+     * broken by ID. The order is read from the compatibility classes and cached
+     * until a patient is added or removed, so nothing is sorted.
+     *
+     * @param key the order
+     * @return a new list of the current donors
+     */
+    public ArrayList<Patient> getDonorsSortedBy(SortKey key) {
+        return views(donors, donorOrder.sortedIDs(key));
+    }
+
+    /**
+     * An accessor which gets views of the recipient patients in the given order,
+     * ties broken by ID. The order is read from the compatibility classes and
+     * cached until a patient is added or removed, so nothing is sorted.
+     *
+     * @param key the order
+     * @return a new list of the current recipients
+     */
+    public ArrayList<Patient> getRecipientsSortedBy(SortKey key) {
+        return views(recipients, recipientOrder.sortedIDs(key));
+    }
+
+    /**
+     * It finds the donors matching a query, from bitset indexes rather than a scan
+     * of the donors.
+     *
+     * @param query the query
+     * @return a new list of views of the matching donors in ID order
+     */
+    public ArrayList<Patient> findDonors(PatientQuery query) {
+        return views(donors, Bits.toArray(query.select(donorIndex)));
+    }
+
+    /**
+     * It finds the recipients matching a query, from bitset indexes rather than a
+     * scan of the recipients.
+     *
+     * @param query the query
+     * @return a new list of views of the matching recipients in ID order
+     */
+    public ArrayList<Patient> findRecipients(PatientQuery query) {
+        return views(recipients, Bits.toArray(query.select(recipientIndex)));
+    }
+
+    /**
+     * It counts the donors matching a query without creating their views.
+     *
+     * @param query the query
+     * @return the number of matching donors
+     */
+    public int countDonors(PatientQuery query) {
+        return Bits.cardinality(query.select(donorIndex));
+    }
+
+    /**
+     * It counts the recipients matching a query without creating their views.
+     *
+     * @param query the query
+     * @return the number of matching recipients
+     */
+    public int countRecipients(PatientQuery query) {
+        return Bits.cardinality(query.select(recipientIndex));
+    }
+
+    /**
+     * An accessor which gets the IDs of removed donors awaiting reuse.
+     *
+     * @return the free donor IDs in push order, the last being reused first
+     */
+    public int[] getFreeDonorIDs() {
+        return freeDonorIDs.toArray();
+    }
+
+    /**
+     * An accessor which gets the IDs of removed recipients awaiting reuse.
+     *
+     * @return the free recipient IDs in push order, the last being reused first
+     */
+    public int[] getFreeRecipientIDs() {
+        return freeRecipientIDs.toArray();
+    }
+
+    /**
+     * An accessor which gets the packed compatibility row of a donor, where bit j
+     * is set if the donor is compatible with recipient j. The array may be shared
+     * with the graph, so callers must not modify it.
+     *
+     * @param donorID the donor ID
+     * @return the row words, possibly shorter than the number of recipient slots
+     */
+    public long[] getConnectionRow(int donorID) {
+        return connections.rowWords(donorID);
+    }
+
+    /**
+     * An accessor which gets the number of current donors.
+     *
+     * @return the donor count
+     */
+    public int getNumDonors() {
+        return donors.getCount();
+    }
+
+    /**
+     * An accessor which gets the number of current recipients.
+     *
+     * @return the recipient count
+     */
+    public int getNumRecipients() {
+        return recipients.getCount();
+    }
+
+    /**
+     * An accessor which gets the number of donor ID slots, including removed ones.
+     * Every donor ID is below this bound.
+     *
+     * @return the number of donor slots
+     */
+    public int getDonorSlots() {
+        return donors.getSlots();
+    }
+
+    /**
+     * An accessor which gets the number of recipient ID slots, including removed ones.
+     * Every recipient ID is below this bound.
+     *
+     * @return the number of recipient slots
+     */
+    public int getRecipientSlots() {
+        return recipients.getSlots();
+    }
+
     /**
      * It checks if the donor with the given ID is compatible with
      * the recipient with the given ID.
@@ -184,76 +788,217 @@ public class TransplantGraph implements Serializable {
      * @return true if compatible, otherwise false
      */
     public boolean isConnected(int donorID, int recipientID) {
-        return connections[donorID][recipientID];
+        return connections.get(donorID, recipientID);
+    }
+
+    /**
+     * It finds the next recipient compatible with the given donor.
+     *
+     * @param donorID the donor’s ID
+     * @param fromRecipientID the recipient ID to start searching from
+     * @return the next compatible recipient ID, or -1 if there is none
+     */
+    public int nextCompatibleRecipient(int donorID, int fromRecipientID) {
+        return connections.nextInRow(donorID, fromRecipientID);
+    }
+
+    /**
+     * It finds the next donor compatible with the given recipient.
+     *
+     * @param recipientID the recipient’s ID
+     * @param fromDonorID the donor ID to start searching from
+     * @return the next compatible donor ID, or -1 if there is none
+     */
+    public int nextCompatibleDonor(int recipientID, int fromDonorID) {
+        return connections.nextInColumn(recipientID, fromDonorID);
     }
 
     /**
      * It returns the number of transplant connections for the given patient,
-     * counting matches with donors or recipients based on donor status.
+     * counting matches with donors or recipients based on donor status. Counts
+     * are maintained as patients are added and removed, so this takes O(1).
      *
      * @param p the Patient whose connections are counted
      * @return the number of connections
      */
     public int getNumConnections(Patient p) {
-        int count = 0;
-        if (p.isDonor()) {
-            int i = p.getID();
-            for (int j = 0; j < recipients.size(); j++) {
-                if (connections[i][j])
-                    count++;
-            }
-        } else {
-            int j = p.getID();
-            for (int i = 0; i < donors.size(); i++) {
-                if (connections[i][j])
-                    count++;
-            }
+        return p.isDonor() ? getDonorDegree(p.getID()) : getRecipientDegree(p.getID());
+    }
+
+    /**
+     * It returns the maintained number of recipients compatible with a donor.
+     *
+     * @param donorID the donor's ID
+     * @return the number of connections
+     */
+    public int getDonorDegree(int donorID) {
+        return connections.rowCount(donorID);
+    }
+
+    /**
+     * It returns the maintained number of donors compatible with a recipient.
+     *
+     * @param recipientID the recipient's ID
+     * @return the number of connections
+     */
+    public int getRecipientDegree(int recipientID) {
+        return connections.columnCount(recipientID);
+    }
+
+    /**
+     * It copies the maintained connection count of every donor, indexed by donor ID.
+     * Removed donors have a count of zero.
+     *
+     * @return the donor connection counts
+     */
+    public int[] getDonorDegrees() {
+        return connections.rowCounts();
+    }
+
+    /**
+     * It copies the maintained connection count of every recipient, indexed by
+     * recipient ID. Removed recipients have a count of zero.
+     *
+     * @return the recipient connection counts
+     */
+    public int[] getRecipientDegrees() {
+        return connections.columnCounts();
+    }
+
+    /**
+     * It sorts patients of one side by their number of connections using a stable
+     * counting sort, since a count can never exceed the size of the other side.
+     *
+     * @param patients the donors or recipients to sort
+     * @return a new list in ascending order of connections, ties kept in input order
+     */
+    public List<Patient> sortByNumConnections(List<Patient> patients) {
+        int[] keys = new int[patients.size()];
+        int max = 0;
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = getNumConnections(patients.get(k));
+            max = Math.max(max, keys[k]);
         }
-        return count;
+        int[] starts = new int[max + 2];
+        for (int key : keys)
+            starts[key + 1]++;
+        for (int d = 1; d < starts.length; d++)
+            starts[d] += starts[d - 1];
+        Patient[] sorted = new Patient[keys.length];
+        for (int k = 0; k < keys.length; k++)
+            sorted[starts[keys[k]]++] = patients.get(k);
+        return new ArrayList<>(Arrays.asList(sorted));
     }
 
     /**
      * It prints a formatted table of all donors, including compatible recipient IDs.
      */
     public void printAllDonors() {
-        System.out.printf("Index | Donor Name         | Age | Organ Donated | Blood Type | Recipient IDs%n");
-        System.out.println("=============================================================================");
-        for (Patient p : donors) {
-            int i = p.getID();
-            System.out.printf("   %d  | %-18s | %2d  | %-13s |     %-6s | ",
-                    i, p.getName(), p.getAge(), p.getOrgan(), p.getBloodType().getType());
-            List<Integer> ids = new ArrayList<>();
-            for (int j = 0; j < recipients.size(); j++) {
-                if (connections[i][j]) ids.add(j);
-            }
-            for (int k = 0; k < ids.size(); k++) {
-                System.out.print(ids.get(k));
-                if (k < ids.size() - 1)
-                    System.out.print(", ");
-            }
-            System.out.println();
-        }
+        PatientTable.print(this, getDonors(), true);
     }
 
     /**
      * It prints a formatted table of all recipients, including compatible donor IDs.
      */
     public void printAllRecipients() {
-        System.out.printf("Index | Recipient Name     | Age | Organ Needed  | Blood Type | Donor IDs%n");
-        System.out.println("==========================================================================");
-        for (Patient p : recipients) {
-            int j = p.getID();
-            System.out.printf("   %d  | %-18s | %2d  | %-13s |     %-6s | ",
-                    j, p.getName(), p.getAge(), p.getOrgan(), p.getBloodType().getType());
-            List<Integer> ids = new ArrayList<>();
-            for (int i = 0; i < donors.size(); i++) {
-                if (connections[i][j]) ids.add(i);
-            }
-            for (int k = 0; k < ids.size(); k++) {
-                System.out.print(ids.get(k));
-                if (k < ids.size() - 1) System.out.print(", ");
-            }
-            System.out.println();
+        PatientTable.print(this, getRecipients(), false);
+    }
+
+    /**
+     * It rebuilds the compatibility classes, with the sorted orders and attribute
+     * indexes over them, and the name indexes from the stores.
+     */
+    private void reindex() {
+        classes = new CompatibilityIndex();
+        donorOrder = new PatientOrder(classes, true);
+        recipientOrder = new PatientOrder(classes, false);
+        donorIndex = new PatientIndex(classes, donors, true);
+        recipientIndex = new PatientIndex(classes, recipients, false);
+        donorNames = new NameIndex();
+        recipientNames = new NameIndex();
+        for (int i = 0; i < donors.getSlots(); i++) {
+            if (donors.isLive(i))
+                indexDonor(i);
+        }
+        for (int j = 0; j < recipients.getSlots(); j++) {
+            if (recipients.isLive(j))
+                indexRecipient(j);
+        }
+    }
+
+    /**
+     * It runs an action for every index below n, across a fork-join pool when
+     * parallelism is above one.
+     *
+     * @param parallelism the number of worker threads
+     * @param n the number of indexes
+     * @param action the action to run per index
+     */
+    private static void forEach(int parallelism, int n, IntConsumer action) {
+        if (parallelism <= 1) {
+            IntStream.range(0, n).forEach(action);
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(action)).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * It clears the paired-donation link of a donor on both ends.
+     *
+     * @param id the donor ID
+     */
+    private void unlinkDonor(int id) {
+        int recipientID = donors.getPair(id);
+        if (recipientID >= 0) {
+            recipients.setPair(recipientID, -1);
+            donors.setPair(id, -1);
+        }
+    }
+
+    /**
+     * It clears the paired-donation link of a recipient on both ends.
+     *
+     * @param id the recipient ID
+     */
+    private void unlinkRecipient(int id) {
+        int donorID = recipients.getPair(id);
+        if (donorID >= 0) {
+            donors.setPair(donorID, -1);
+            recipients.setPair(id, -1);
+        }
+    }
+
+    /**
+     * It creates a view of each of the given slots of a store.
+     *
+     * @param store the donor or recipient store
+     * @param ids the occupied slots, in the order wanted
+     * @return a new list of the patients in that order
+     */
+    private static ArrayList<Patient> views(PatientStore store, int[] ids) {
+        ArrayList<Patient> result = new ArrayList<>(ids.length);
+        for (int id : ids)
+            result.add(store.view(id));
+        return result;
+    }
+
+    /**
+     * It creates a view of every occupied slot of a store.
+     *
+     * @param store the donor or recipient store
+     * @return a new list of the patients in ID order
+     */
+    private static ArrayList<Patient> live(PatientStore store) {
+        ArrayList<Patient> result = new ArrayList<>(store.getCount());
+        for (int id = 0; id < store.getSlots(); id++) {
+            if (store.isLive(id))
+                result.add(store.view(id));
         }
+        return result;
     }
 }
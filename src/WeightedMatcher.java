@@ -0,0 +1,206 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This class computes a maximum-score donor-to-recipient allocation over a
+ * TransplantGraph, scoring each compatible pair with an AllocationScorer. It offers
+ * the Hungarian algorithm for tiny graphs and the AuctionSolver for everything
+ * else, whose Jacobi variant bids in parallel across cores.
+ */
+public class WeightedMatcher {
+    private static final long HUNGARIAN_CELL_LIMIT = 256;
+    private final TransplantGraph graph;
+    private final AllocationScorer scorer;
+    private final int[] donorIDs;
+    private final int[] recipientIDs;
+    private final int[] recipientIndex;
+
+    /**
+     * Constructs a WeightedMatcher over the current donors and recipients of a graph.
+     *
+     * @param graph the TransplantGraph to allocate
+     * @param scorer the scorer for compatible pairs
+     */
+    public WeightedMatcher(TransplantGraph graph, AllocationScorer scorer) {
+        this.graph = graph;
+        this.scorer = scorer;
+        donorIDs = IntStream.range(0, graph.getDonorSlots()).filter(graph::hasDonor).toArray();
+        recipientIDs = IntStream.range(0, graph.getRecipientSlots()).filter(graph::hasRecipient).toArray();
+        recipientIndex = new int[graph.getRecipientSlots()];
+        Arrays.fill(recipientIndex, -1);
+        for (int k = 0; k < recipientIDs.length; k++)
+            recipientIndex[recipientIDs[k]] = k;
+    }
+
+    /**
+     * It computes a maximum-score allocation, using the Hungarian algorithm when the
+     * donor-by-recipient table has at most HUNGARIAN_CELL_LIMIT cells, and the
+     * parallel auction otherwise. The limit comes from AllocationBenchmark on square
+     * graphs of the generated population, about 30% dense: the two solvers tie at
+     * 10 by 10, and from there the auction pulls ahead, by 1.5 times at 25 by 25,
+     * 5 times at 100 by 100 and 45 times at 2000 by 2000, where the Hungarian
+     * algorithm takes 10 s. Sparser graphs only favour the auction further.
+     *
+     * @param graph the TransplantGraph to allocate
+     * @param scorer the scorer for compatible pairs
+     * @return the allocation
+     */
+    public static Matching allocate(TransplantGraph graph, AllocationScorer scorer) {
+        WeightedMatcher matcher = new WeightedMatcher(graph, scorer);
+        long cells = (long) matcher.donorIDs.length * matcher.recipientIDs.length;
+        if (cells <= HUNGARIAN_CELL_LIMIT)
+            return matcher.hungarian();
+        return matcher.auction(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * It sums the scores of every pair in an allocation.
+     *
+     * @param graph the TransplantGraph the allocation was computed over
+     * @param matching the allocation
+     * @param scorer the scorer for compatible pairs
+     * @return the total score
+     */
+    public static long totalScore(TransplantGraph graph, Matching matching, AllocationScorer scorer) {
+        long total = 0;
+        for (int i = 0; i < graph.getDonorSlots(); i++) {
+            int j = matching.getRecipientFor(i);
+            if (j >= 0)
+                total += scorer.score(graph, i, j);
+        }
+        return total;
+    }
+
+    /**
+     * It computes a maximum-score allocation with the Hungarian algorithm in
+     * O(n²·m) time and O(n·m) memory, for n donors and m recipients (or the reverse
+     * when there are more donors). Incompatible pairs score zero and are dropped
+     * from the result.
+     *
+     * @return the allocation
+     */
+    public Matching hungarian() {
+        boolean transpose = donorIDs.length > recipientIDs.length;
+        int n = transpose ? recipientIDs.length : donorIDs.length;
+        int m = transpose ? donorIDs.length : recipientIDs.length;
+        long[][] cost = new long[n + 1][m + 1];
+        for (int a = 0; a < donorIDs.length; a++) {
+            int i = donorIDs[a];
+            for (int j = graph.nextCompatibleRecipient(i, 0); j >= 0; j = graph.nextCompatibleRecipient(i, j + 1)) {
+                int b = recipientIndex[j];
+                long score = scorer.score(graph, i, j);
+                if (transpose)
+                    cost[b + 1][a + 1] = -score;
+                else
+                    cost[a + 1][b + 1] = -score;
+            }
+        }
+
+        long[] u = new long[n + 1];
+        long[] v = new long[m + 1];
+        int[] p = new int[m + 1];
+        int[] way = new int[m + 1];
+        long[] minv = new long[m + 1];
+        boolean[] used = new boolean[m + 1];
+        for (int row = 1; row <= n; row++) {
+            p[0] = row;
+            int j0 = 0;
+            Arrays.fill(minv, Long.MAX_VALUE);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                long delta = Long.MAX_VALUE;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (used[j])
+                        continue;
+                    long cur = cost[i0][j] - u[i0] - v[j];
+                    if (cur < minv[j]) {
+                        minv[j] = cur;
+                        way[j] = j0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] recipientOfDonor = newPairing(graph.getDonorSlots());
+        int[] donorOfRecipient = newPairing(graph.getRecipientSlots());
+        for (int j = 1; j <= m; j++) {
+            if (p[j] == 0 || cost[p[j]][j] == 0)
+                continue;
+            int d = donorIDs[transpose ? j - 1 : p[j] - 1];
+            int r = recipientIDs[transpose ? p[j] - 1 : j - 1];
+            recipientOfDonor[d] = r;
+            donorOfRecipient[r] = d;
+        }
+        return new Matching(graph, recipientOfDonor, donorOfRecipient);
+    }
+
+    /**
+     * It computes a maximum-score allocation with the AuctionSolver, scaling scores
+     * by n + 1 so its one-unit final bid increment guarantees an optimal result.
+     *
+     * @param parallelism the number of worker threads for bidding, or one for
+     *                    sequential bidding
+     * @return the allocation
+     */
+    public Matching auction(int parallelism) {
+        int n = donorIDs.length;
+        int[] start = new int[n + 1];
+        for (int a = 0; a < n; a++)
+            start[a + 1] = start[a] + graph.getDonorDegree(donorIDs[a]);
+        int[] targets = new int[start[n]];
+        long[] values = new long[start[n]];
+        long scale = n + 1L;
+        for (int a = 0; a < n; a++) {
+            int i = donorIDs[a];
+            int e = start[a];
+            for (int j = graph.nextCompatibleRecipient(i, 0); j >= 0; j = graph.nextCompatibleRecipient(i, j + 1), e++) {
+                targets[e] = recipientIndex[j];
+                values[e] = scale * scorer.score(graph, i, j);
+            }
+        }
+        int[] assigned = new AuctionSolver(recipientIDs.length, start, targets, values).solve(parallelism);
+
+        int[] recipientOfDonor = newPairing(graph.getDonorSlots());
+        int[] donorOfRecipient = newPairing(graph.getRecipientSlots());
+        for (int a = 0; a < n; a++) {
+            if (assigned[a] >= 0) {
+                recipientOfDonor[donorIDs[a]] = recipientIDs[assigned[a]];
+                donorOfRecipient[recipientIDs[assigned[a]]] = donorIDs[a];
+            }
+        }
+        return new Matching(graph, recipientOfDonor, donorOfRecipient);
+    }
+
+    /**
+     * It creates an empty pairing array.
+     *
+     * @param slots the number of ID slots
+     * @return an array of the given size filled with -1
+     */
+    private static int[] newPairing(int slots) {
+        int[] pairing = new int[slots];
+        Arrays.fill(pairing, -1);
+        return pairing;
+    }
+}
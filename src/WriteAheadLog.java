@@ -0,0 +1,528 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * This class makes every change to a TransplantGraph durable as it happens by
+ * appending it to a write-ahead log. As a GraphListener it logs each add, removal
+ * and pair link, and returns only once the record has been forced to disk.
+ *
+ * <p>Records are framed by their length and a CRC32C and carry a sequence number.
+ * Add and removal records both carry the patient's attributes, not only its ID,
+ * since IDs are recycled: replaying onto a graph other than the one logged is
+ * caught at the first record whose patient does not match, rather than removing
+ * whoever holds the ID there.
+ * Forcing uses group commit: a thread that needs a record on disk either forces the
+ * log itself, covering every record appended so far, or waits for the force already
+ * in progress, so concurrent writers share one fsync per batch. Every
+ * checkpointInterval records, and after any bulk change, the graph is written to a
+ * GraphSnapshot tagged with the last sequence number it includes and the log is
+ * truncated. On startup, records after the snapshot's sequence number are replayed
+ * and a torn record at the tail, left by a crash mid-append, is discarded. Records
+ * may be appended from several threads, but a checkpoint needs the graph to stay
+ * still, so an explicit checkpoint must run under the writer's lock.</p>
+ *
+ * <p>A record is appended once its change has been made, so a change whose record
+ * cannot be written or forced is in the graph but not in the log. The log then
+ * latches the failure and refuses every later change, before it is made, until a
+ * checkpoint has saved the graph as it is and emptied the log; each refused
+ * change first tries that checkpoint itself, so writing resumes as soon as the
+ * disk recovers.</p>
+ */
+public class WriteAheadLog implements GraphListener, Closeable {
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+    private static final byte ADD_DONOR = 1;
+    private static final byte ADD_RECIPIENT = 2;
+    private static final byte REMOVE_DONOR = 3;
+    private static final byte REMOVE_RECIPIENT = 4;
+    private static final byte LINK_PAIR = 5;
+    private static final int FRAME = 8;
+    private final TransplantGraph graph;
+    private final String snapshotFile;
+    private final FileChannel channel;
+    private final int checkpointInterval;
+    private final int replayed;
+    private final Object lock = new Object();
+    private long appended;
+    private long durable;
+    private boolean syncing;
+    private IOException failure;
+    private volatile boolean syncOnCommit = true;
+    private int sinceCheckpoint;
+
+    /**
+     * Constructs a WriteAheadLog over an open, recovered log channel.
+     *
+     * @param graph the TransplantGraph being logged
+     * @param snapshotFile the path of the snapshot to checkpoint into
+     * @param channel the log channel, positioned at its end
+     * @param sequence the sequence number of the last record already applied
+     * @param checkpointInterval the number of records between checkpoints
+     * @param replayed the number of records replayed on opening
+     */
+    private WriteAheadLog(TransplantGraph graph, String snapshotFile, FileChannel channel, long sequence,
+                          int checkpointInterval, int replayed) {
+        this.graph = graph;
+        this.snapshotFile = snapshotFile;
+        this.channel = channel;
+        this.appended = sequence;
+        this.durable = sequence;
+        this.checkpointInterval = checkpointInterval;
+        this.replayed = replayed;
+    }
+
+    /**
+     * It opens a log with the default checkpoint interval.
+     *
+     * @param logFile the path of the log file
+     * @param snapshotFile the path of the snapshot the graph was loaded from
+     * @param graph the TransplantGraph to recover and log
+     * @return the open log
+     * @throws IOException if an I/O error occurs or a record cannot be replayed
+     */
+    public static WriteAheadLog open(String logFile, String snapshotFile, TransplantGraph graph) throws IOException {
+        return open(logFile, snapshotFile, graph, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * It opens a log, replays onto the graph every record newer than the snapshot,
+     * and starts logging the graph's changes. If records were replayed, or there is
+     * no snapshot yet, it checkpoints straight away. If a record cannot be replayed,
+     * the graph is left holding the records before it and must be discarded, and
+     * the snapshot and the log are left as they were.
+     *
+     * @param logFile the path of the log file
+     * @param snapshotFile the path of the snapshot the graph was loaded from
+     * @param graph the TransplantGraph to recover and log
+     * @param checkpointInterval the number of records between checkpoints
+     * @return the open log
+     * @throws IOException if an I/O error occurs or a record cannot be replayed
+     */
+    public static WriteAheadLog open(String logFile, String snapshotFile, TransplantGraph graph,
+                                     int checkpointInterval) throws IOException {
+        boolean hasSnapshot = new File(snapshotFile).exists();
+        long base = hasSnapshot ? GraphSnapshot.readSequence(snapshotFile) : 0;
+        FileChannel channel = FileChannel.open(Paths.get(logFile), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        WriteAheadLog log;
+        try {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            long sequence = base;
+            int count = 0;
+            int valid = 0;
+            while (data.remaining() >= FRAME) {
+                int length = data.getInt();
+                int crc = data.getInt();
+                if (length < 9 || length > data.remaining())
+                    break;
+                ByteBuffer record = data.slice(data.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+                if (checksum(record) != crc)
+                    break;
+                data.position(data.position() + length);
+                valid = data.position();
+                long lsn = record.getLong();
+                if (lsn <= base)
+                    continue;
+                apply(graph, record, lsn);
+                sequence = lsn;
+                count++;
+            }
+            channel.truncate(valid);
+            channel.position(valid);
+            log = new WriteAheadLog(graph, snapshotFile, channel, sequence, checkpointInterval, count);
+            if (count > 0 || !hasSnapshot)
+                log.checkpoint();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        graph.addListener(log);
+        return log;
+    }
+
+    /**
+     * An accessor which gets the number of records replayed when the log was opened.
+     *
+     * @return the number of replayed records
+     */
+    public int getReplayed() {
+        return replayed;
+    }
+
+    /**
+     * A mutator which sets whether each change waits for its record to reach the
+     * disk before returning. A caller that turns this off, so as to release its own
+     * locks first, must call sync before reporting a change as done.
+     *
+     * @param syncOnCommit true to force each record as it is logged
+     */
+    public void setSyncOnCommit(boolean syncOnCommit) {
+        this.syncOnCommit = syncOnCommit;
+    }
+
+    /**
+     * It waits until every record appended so far is on disk, sharing a force with
+     * any other thread already syncing.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void sync() throws IOException {
+        long lsn;
+        synchronized (lock) {
+            lsn = appended;
+        }
+        try {
+            awaitDurable(lsn);
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * It writes the graph to the snapshot file, tagged with the last sequence
+     * number, and truncates the log if no record was appended meanwhile. That
+     * clears any failure the log has latched, since the snapshot then holds the
+     * changes that were not logged.
+     *
+     * <p>The graph must not change while it is saved, so checkpoint must be called
+     * from the thread that changes the graph or, when it is shared through a
+     * ConcurrentTransplantGraph, inside its write method. A change made during the
+     * save could otherwise be in the snapshot while its record is numbered after
+     * the snapshot's sequence number, and be replayed a second time on opening,
+     * which fails recovery. Checkpoints the log takes by itself, at the interval
+     * and after bulk changes, run inside the change that triggers them, so they
+     * already hold whatever lock the writer holds.</p>
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void checkpoint() throws IOException {
+        long sequence;
+        synchronized (lock) {
+            sequence = appended;
+        }
+        awaitDurable(sequence);
+        GraphSnapshot.save(graph, snapshotFile, sequence);
+        synchronized (lock) {
+            if (appended == sequence) {
+                channel.truncate(0);
+                channel.position(0);
+                failure = null;
+            }
+            sinceCheckpoint = 0;
+        }
+    }
+
+    /**
+     * It stops logging and closes the log file. Changes made afterwards are not
+     * logged.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        graph.removeListener(this);
+        channel.close();
+    }
+
+    /**
+     * It refuses a change while a failure is latched, unless a checkpoint now
+     * succeeds and clears it.
+     *
+     * @throws UncheckedIOException if the log has failed and still cannot be
+     *                              checkpointed
+     */
+    @Override
+    public void changing() {
+        synchronized (lock) {
+            if (failure == null)
+                return;
+        }
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException("The log refuses changes until it can be checkpointed", e);
+        }
+    }
+
+    /**
+     * It logs a new donor.
+     *
+     * @param donorID the new donor's ID
+     */
+    @Override
+    public void donorAdded(int donorID) {
+        commit(patientRecord(ADD_DONOR, graph.getDonor(donorID)));
+    }
+
+    /**
+     * It logs a new recipient.
+     *
+     * @param recipientID the new recipient's ID
+     */
+    @Override
+    public void recipientAdded(int recipientID) {
+        commit(patientRecord(ADD_RECIPIENT, graph.getRecipient(recipientID)));
+    }
+
+    /**
+     * It logs a donor removal.
+     *
+     * @param donorID the removed donor's ID
+     * @param donor the removed donor
+     */
+    @Override
+    public void donorRemoved(int donorID, Patient donor) {
+        commit(patientRecord(REMOVE_DONOR, donor));
+    }
+
+    /**
+     * It logs a recipient removal.
+     *
+     * @param recipientID the removed recipient's ID
+     * @param recipient the removed recipient
+     */
+    @Override
+    public void recipientRemoved(int recipientID, Patient recipient) {
+        commit(patientRecord(REMOVE_RECIPIENT, recipient));
+    }
+
+    /**
+     * It logs a pair link or unlink.
+     *
+     * @param recipientID the recipient's ID
+     * @param donorID the linked donor's ID, or -1
+     */
+    @Override
+    public void pairLinked(int recipientID, int donorID) {
+        commit(newRecord(LINK_PAIR, 8).putInt(recipientID).putInt(donorID));
+    }
+
+    /**
+     * It checkpoints after a bulk change, which is not logged record by record.
+     */
+    @Override
+    public void graphRebuilt() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            throw fail(e);
+        }
+    }
+
+    /**
+     * It encodes a patient for an add or removal record.
+     *
+     * @param op the record type
+     * @param p the added or removed Patient
+     * @return the record, positioned after its last field
+     */
+    private static ByteBuffer patientRecord(byte op, Patient p) {
+        byte[] name = p.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] organ = p.getOrgan().getBytes(StandardCharsets.UTF_8);
+        return newRecord(op, 25 + name.length + organ.length)
+                .putInt(p.getID()).putInt(p.getAge()).put(p.getBloodCode())
+                .putInt(p.getUrgency()).putInt(p.getWaitingDays())
+                .putInt(name.length).put(name).putInt(organ.length).put(organ);
+    }
+
+    /**
+     * It allocates a record with room for its frame, sequence number and type.
+     *
+     * @param op the record type
+     * @param size the size of the fields after the type
+     * @return the record, positioned at its first field
+     */
+    private static ByteBuffer newRecord(byte op, int size) {
+        ByteBuffer record = ByteBuffer.allocate(FRAME + 9 + size).order(ByteOrder.LITTLE_ENDIAN);
+        record.position(FRAME + 8);
+        return record.put(op);
+    }
+
+    /**
+     * It appends a record and, unless syncing is deferred, waits until it is on
+     * disk, checkpointing if the interval has been reached.
+     *
+     * @param record the record, positioned after its last field
+     */
+    private void commit(ByteBuffer record) {
+        long start = OperationMetrics.start();
+        try {
+            long lsn;
+            boolean due;
+            synchronized (lock) {
+                lsn = ++appended;
+                record.flip();
+                record.putInt(0, record.limit() - FRAME);
+                record.putLong(FRAME, lsn);
+                record.putInt(4, checksum(record.slice(FRAME, record.limit() - FRAME)));
+                while (record.hasRemaining())
+                    channel.write(record);
+                due = ++sinceCheckpoint >= checkpointInterval;
+            }
+            if (syncOnCommit)
+                awaitDurable(lsn);
+            OperationMetrics.record(Operation.LOG_APPEND, start);
+            if (due)
+                checkpoint();
+        } catch (IOException e) {
+            throw fail(e);
+        }
+    }
+
+    /**
+     * It latches a failure, so that changes are refused until a checkpoint.
+     *
+     * @param e the failure
+     * @return the failure, wrapped for a listener callback to throw
+     */
+    private UncheckedIOException fail(IOException e) {
+        synchronized (lock) {
+            if (failure == null)
+                failure = e;
+        }
+        return new UncheckedIOException(e);
+    }
+
+    /**
+     * It waits until every record up to the given sequence number is on disk. The
+     * first waiting thread forces the log for everyone appended so far; the others
+     * wait for it and only force again if their record came later.
+     *
+     * @param lsn the sequence number that must be durable
+     * @throws IOException if an I/O error occurs
+     */
+    private void awaitDurable(long lsn) throws IOException {
+        while (true) {
+            long target;
+            synchronized (lock) {
+                while (durable < lsn && syncing) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for the log", e);
+                    }
+                }
+                if (durable >= lsn)
+                    return;
+                syncing = true;
+                target = appended;
+            }
+            boolean forced = false;
+            try {
+                channel.force(false);
+                forced = true;
+            } finally {
+                synchronized (lock) {
+                    syncing = false;
+                    if (forced)
+                        durable = Math.max(durable, target);
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * It applies one replayed record to the graph.
+     *
+     * @param graph the TransplantGraph being recovered
+     * @param record the record, positioned after its sequence number
+     * @param lsn the record's sequence number, for error messages
+     * @throws IOException if the record is unknown or does not apply cleanly
+     */
+    private static void apply(TransplantGraph graph, ByteBuffer record, long lsn) throws IOException {
+        byte op = record.get();
+        boolean applied;
+        switch (op) {
+            case ADD_DONOR, ADD_RECIPIENT -> {
+                Patient p = patient(record, op == ADD_DONOR);
+                int id = p.getID();
+                applied = (op == ADD_DONOR ? graph.addDonor(p) : graph.addRecipient(p)) == id;
+            }
+            case REMOVE_DONOR -> {
+                Patient p = patient(record, true);
+                applied = samePatient(graph.getDonor(p.getID()), p) && graph.removeDonorByID(p.getID());
+            }
+            case REMOVE_RECIPIENT -> {
+                Patient p = patient(record, false);
+                applied = samePatient(graph.getRecipient(p.getID()), p) && graph.removeRecipientByID(p.getID());
+            }
+            case LINK_PAIR -> {
+                int id = record.getInt();
+                int donorID = record.getInt();
+                applied = donorID < 0 ? graph.unlinkPair(id) : graph.linkPair(id, donorID);
+            }
+            default -> throw new IOException("Unknown log record type " + op + " at sequence " + lsn);
+        }
+        if (!applied)
+            throw new IOException("Log record " + lsn + " does not match the snapshot");
+    }
+
+    /**
+     * It decodes the patient of an add or removal record.
+     *
+     * @param record the record, positioned after its type
+     * @param isDonor true for a donor, false for a recipient
+     * @return a standalone Patient with the logged ID and attributes
+     */
+    private static Patient patient(ByteBuffer record, boolean isDonor) {
+        int id = record.getInt();
+        int age = record.getInt();
+        byte blood = record.get();
+        int urgency = record.getInt();
+        int waitingDays = record.getInt();
+        String name = text(record);
+        Patient p = new Patient(id, name, age, text(record), BloodType.fromCode(blood), isDonor);
+        p.setUrgency(urgency);
+        p.setWaitingDays(waitingDays);
+        return p;
+    }
+
+    /**
+     * It checks whether a live patient is the one a removal record describes, by
+     * the attributes that are fixed once a patient is added.
+     *
+     * @param live the patient holding the ID in the graph, or null
+     * @param logged the patient decoded from the record
+     * @return true if they are the same patient, otherwise false
+     */
+    private static boolean samePatient(Patient live, Patient logged) {
+        return live != null && live.getName().equals(logged.getName()) && live.getAge() == logged.getAge()
+                && live.getOrgan().equals(logged.getOrgan()) && live.getBloodCode() == logged.getBloodCode();
+    }
+
+    /**
+     * It reads a length-prefixed UTF-8 string from a record.
+     *
+     * @param record the record
+     * @return the string
+     */
+    private static String text(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * It computes the CRC32C of a buffer's remaining bytes without moving it.
+     *
+     * @param buffer the buffer to checksum
+     * @return the checksum
+     */
+    private static int checksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,214 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * This class runs writers and readers against one ConcurrentTransplantGraph with
+ * an IncrementalMatcher and a WriteAheadLog attached, then checks that the
+ * matrix equals one rebuilt from scratch, that the incremental matching is as
+ * large as a fresh Hopcroft–Karp matching, and that replaying the log onto its
+ * last snapshot reproduces the final graph. Readers hold the read lock for a
+ * whole matching at a time, so a writer starved by them fails the timeout.
+ */
+class ConcurrentTransplantGraphStressTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int OPERATIONS = 1500;
+    private static final int INITIAL = 1500;
+    private static final int CHECKPOINT_INTERVAL = 700;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @Timeout(120)
+    void stayConsistentUnderContention() throws Exception {
+        String logFile = dir.resolve("stress.wal").toString();
+        String snapshotFile = dir.resolve("stress.snap").toString();
+        TransplantGraph graph = new TransplantGraph();
+        graph.addAll(TransplantGraphTest.patients(INITIAL, true, 11),
+                TransplantGraphTest.patients(INITIAL, false, 12));
+        WriteAheadLog log = WriteAheadLog.open(logFile, snapshotFile, graph, CHECKPOINT_INTERVAL);
+        IncrementalMatcher matcher = IncrementalMatcher.attach(graph);
+        ConcurrentTransplantGraph shared = new ConcurrentTransplantGraph(graph);
+        shared.attachLog(log);
+
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] writers = new Thread[WRITERS];
+        for (int w = 0; w < WRITERS; w++) {
+            long seed = 100 + w;
+            writers[w] = new Thread(() -> write(shared, seed, start, failures));
+        }
+        Thread[] readers = new Thread[READERS];
+        for (int r = 0; r < READERS; r++) {
+            long seed = 200 + r;
+            readers[r] = new Thread(() -> read(shared, matcher, seed, start, writing, failures));
+        }
+        for (Thread t : writers)
+            t.start();
+        for (Thread t : readers)
+            t.start();
+        start.countDown();
+        for (Thread t : writers)
+            t.join();
+        writing.set(false);
+        for (Thread t : readers)
+            t.join();
+
+        assertTrue(failures.isEmpty(), () -> failures.size() + " failure(s), first: " + failures.peek());
+        TransplantGraphTest.assertSameMatrix(TransplantGraphTest.rebuilt(graph), graph);
+        assertEquals(HopcroftKarp.match(graph).size(), matcher.size(), "incremental matching size");
+
+        log.close();
+        TransplantGraph recovered = GraphSnapshot.load(snapshotFile);
+        WriteAheadLog.open(logFile, snapshotFile, recovered).close();
+        assertSameGraph(graph, recovered);
+    }
+
+    /**
+     * It makes random adds, removals and pair links, checkpointing now and then.
+     *
+     * @param shared the graph
+     * @param seed the random seed
+     * @param start the latch released once every thread is ready
+     * @param failures where unexpected exceptions are reported
+     */
+    private static void write(ConcurrentTransplantGraph shared, long seed, CountDownLatch start,
+                              Queue<String> failures) {
+        Random random = new Random(seed);
+        List<Patient> donors = TransplantGraphTest.patients(OPERATIONS, true, seed);
+        List<Patient> recipients = TransplantGraphTest.patients(OPERATIONS, false, seed + 1000);
+        try {
+            start.await();
+            for (int k = 0; k < OPERATIONS; k++) {
+                int bound = INITIAL + OPERATIONS;
+                switch (random.nextInt(6)) {
+                    case 0 -> shared.addDonor(donors.get(k));
+                    case 1 -> shared.addRecipient(recipients.get(k));
+                    case 2 -> shared.removeDonorByID(random.nextInt(bound));
+                    case 3 -> shared.removeRecipientByID(random.nextInt(bound));
+                    case 4 -> shared.linkPair(random.nextInt(bound), random.nextInt(bound));
+                    default -> shared.unlinkPair(random.nextInt(bound));
+                }
+                if (k % 500 == 499)
+                    shared.checkpoint();
+            }
+        } catch (Exception e) {
+            failures.add("writer: " + e);
+        }
+    }
+
+    /**
+     * It reads without locks and under the read lock until the writers finish,
+     * checking that every locked read sees a consistent graph.
+     *
+     * @param shared the graph
+     * @param matcher the matcher following the graph
+     * @param seed the random seed
+     * @param start the latch released once every thread is ready
+     * @param writing true while writers are running
+     * @param failures where inconsistencies and unexpected exceptions are reported
+     */
+    private static void read(ConcurrentTransplantGraph shared, IncrementalMatcher matcher, long seed,
+                             CountDownLatch start, AtomicBoolean writing, Queue<String> failures) {
+        Random random = new Random(seed);
+        try {
+            start.await();
+            while (writing.get()) {
+                int bound = INITIAL + OPERATIONS;
+                shared.isConnected(random.nextInt(bound), random.nextInt(bound));
+                shared.getNumDonors();
+                String failure = shared.read(g -> check(g, matcher, random));
+                if (failure != null)
+                    failures.add(failure);
+            }
+        } catch (Exception e) {
+            failures.add("reader: " + e);
+        }
+    }
+
+    /**
+     * It checks, under the read lock, that listings agree with the counts, that a
+     * random live pair is connected exactly when organ and blood type allow it,
+     * and that the incremental matching is maximum.
+     *
+     * @param g the graph
+     * @param matcher the matcher following the graph
+     * @param random the source of randomness
+     * @return a description of the first inconsistency, or null
+     */
+    private static String check(TransplantGraph g, IncrementalMatcher matcher, Random random) {
+        if (g.getDonors().size() != g.getNumDonors() || g.getRecipients().size() != g.getNumRecipients())
+            return "listing size differs from count";
+        int d = random.nextInt(g.getDonorSlots());
+        int r = random.nextInt(g.getRecipientSlots());
+        if (g.hasDonor(d) && g.hasRecipient(r)) {
+            Patient donor = g.getDonor(d);
+            Patient recipient = g.getRecipient(r);
+            boolean expected = donor.getOrganCode() == recipient.getOrganCode()
+                    && BloodType.isCompatible(recipient.getBloodCode(), donor.getBloodCode());
+            if (g.isConnected(d, r) != expected)
+                return "donor " + d + " and recipient " + r + " connected = " + !expected;
+        }
+        int maximum = HopcroftKarp.match(g).size();
+        if (matcher.size() != maximum)
+            return "incremental matching has " + matcher.size() + " pairs, maximum is " + maximum;
+        return null;
+    }
+
+    /**
+     * It asserts that two graphs hold the same patients in the same slots, with the
+     * same free IDs, pair links and matrix.
+     *
+     * @param expected the reference graph
+     * @param actual the graph under test
+     */
+    static void assertSameGraph(TransplantGraph expected, TransplantGraph actual) {
+        TransplantGraphTest.assertSameMatrix(expected, actual);
+        assertArrayEquals(expected.getFreeDonorIDs(), actual.getFreeDonorIDs(), "free donor IDs");
+        assertArrayEquals(expected.getFreeRecipientIDs(), actual.getFreeRecipientIDs(), "free recipient IDs");
+        for (int i = 0; i < expected.getDonorSlots(); i++) {
+            assertEquals(expected.hasDonor(i), actual.hasDonor(i), "donor " + i + " live");
+            if (expected.hasDonor(i)) {
+                assertSamePatient(expected.getDonor(i), actual.getDonor(i));
+                assertEquals(expected.getPairedRecipient(i), actual.getPairedRecipient(i), "pair of donor " + i);
+            }
+        }
+        for (int j = 0; j < expected.getRecipientSlots(); j++) {
+            assertEquals(expected.hasRecipient(j), actual.hasRecipient(j), "recipient " + j + " live");
+            if (expected.hasRecipient(j)) {
+                assertSamePatient(expected.getRecipient(j), actual.getRecipient(j));
+                assertEquals(expected.getPairedDonor(j), actual.getPairedDonor(j), "pair of recipient " + j);
+            }
+        }
+    }
+
+    /**
+     * It asserts that two patients have the same attributes.
+     *
+     * @param expected the reference patient
+     * @param actual the patient under test
+     */
+    private static void assertSamePatient(Patient expected, Patient actual) {
+        String id = expected.getID() + "";
+        assertEquals(expected.getName(), actual.getName(), "name of " + id);
+        assertEquals(expected.getAge(), actual.getAge(), "age of " + id);
+        assertEquals(expected.getOrgan(), actual.getOrgan(), "organ of " + id);
+        assertEquals(expected.getBloodType(), actual.getBloodType(), "blood type of " + id);
+        assertEquals(expected.getUrgency(), actual.getUrgency(), "urgency of " + id);
+        assertEquals(expected.getWaitingDays(), actual.getWaitingDays(), "waiting days of " + id);
+    }
+}
@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * This class checks that a GraphSnapshot restores every slot, link and connection
+ * of the graph it saved, that a damaged file is rejected rather than loaded, and
+ * that a save goes through a temporary file so a failed one leaves the old
+ * snapshot as it was.
+ */
+class GraphSnapshotTest {
+    private static final int SECTIONS = 24;
+
+    @TempDir
+    Path dir;
+
+    private TransplantGraph graph;
+    private Path file;
+
+    @BeforeEach
+    void save() throws IOException {
+        List<Patient> donors = TransplantGraphTest.patients(200, true, 1);
+        donors.get(7).setName("José Ñúñez");
+        List<Patient> recipients = TransplantGraphTest.patients(150, false, 2);
+        recipients.get(3).setName("李小龍");
+        graph = new TransplantGraph();
+        graph.addAll(donors, recipients);
+        for (int id = 0; id < 200; id += 9)
+            graph.removeDonorByID(id);
+        for (int id = 1; id < 150; id += 11)
+            graph.removeRecipientByID(id);
+        graph.linkPair(3, 7);
+        graph.linkPair(5, 8);
+        file = dir.resolve("graph.snap");
+        GraphSnapshot.save(graph, file.toString(), 42);
+    }
+
+    @Test
+    void restoresTheSavedGraph() throws IOException {
+        ConcurrentTransplantGraphStressTest.assertSameGraph(graph, GraphSnapshot.load(file.toString()));
+        assertEquals(42, GraphSnapshot.readSequence(file.toString()));
+        assertFalse(Files.exists(dir.resolve("graph.snap.tmp")), "temporary file left behind");
+    }
+
+    @Test
+    void rejectsASectionWhoseChecksumDiffers() throws IOException {
+        for (int section = 0; section < 4; section++) {
+            Path copy = Files.copy(file, dir.resolve("corrupt" + section + ".snap"));
+            long offset = sectionOffset(copy, section) + 5;
+            try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer b = ByteBuffer.allocate(1);
+                channel.read(b, offset);
+                b.put(0, (byte) (b.get(0) ^ 0x10)).rewind();
+                channel.write(b, offset);
+            }
+            IOException e = assertThrows(IOException.class, () -> GraphSnapshot.load(copy.toString()));
+            assertTrue(e.getMessage().contains("corrupt"), e.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsATruncatedFile() throws IOException {
+        long adjacency = sectionOffset(file, 3);
+        for (long size : new long[] {adjacency + 4, sectionOffset(file, 2) + 1, 20}) {
+            Path copy = dir.resolve("truncated" + size + ".snap");
+            Files.copy(file, copy);
+            try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            }
+            assertThrows(IOException.class, () -> GraphSnapshot.load(copy.toString()), "truncated to " + size);
+        }
+    }
+
+    @Test
+    void leavesTheOldSnapshotWhenASaveFails() throws IOException {
+        byte[] saved = Files.readAllBytes(file);
+        Path blocker = Files.createDirectories(dir.resolve("graph.snap.tmp")).resolve("keep");
+        Files.createFile(blocker);
+        graph.removeDonorByID(1);
+        assertThrows(IOException.class, () -> GraphSnapshot.save(graph, file.toString(), 43));
+        assertEquals(42, GraphSnapshot.readSequence(file.toString()));
+        assertArrayEquals(saved, Files.readAllBytes(file), "snapshot changed by a failed save");
+
+        Files.delete(blocker);
+        Files.delete(blocker.getParent());
+        Files.writeString(dir.resolve("graph.snap.tmp"), "left over from a crash during a save");
+        GraphSnapshot.save(graph, file.toString(), 43);
+        ConcurrentTransplantGraphStressTest.assertSameGraph(graph, GraphSnapshot.load(file.toString()));
+    }
+
+    /**
+     * It reads the offset of a section from a snapshot's directory.
+     *
+     * @param file the snapshot file
+     * @param section the section number
+     * @return the file offset of the section
+     * @throws IOException if the file cannot be read
+     */
+    private static long sectionOffset(Path file, int section) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        return header.getLong(SECTIONS + section * 24);
+    }
+}
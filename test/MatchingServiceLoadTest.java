@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class measures the sustained throughput and latency of a MatchingService.
+ * It starts a service on a synthetic graph and runs a number of clients, each on a
+ * virtual thread, that send a mix of compatibility queries, adds, removals and
+ * matching requests back to back for a fixed time, then prints requests per second
+ * and latency percentiles. It is a program run by the loadTest task rather than a
+ * unit test, and like the service's own launcher it turns off Nagle's algorithm
+ * unless told otherwise.
+ */
+public class MatchingServiceLoadTest {
+    private static final String[] ORGANS = {"Kidney", "Liver", "Heart", "Lung", "Pancreas"};
+
+    /**
+     * Main method which runs the load test.
+     *
+     * @param args optional number of clients, seconds to run, and patients per side
+     * @throws Exception if the service cannot be started or a client fails
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int patients = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        if (System.getProperty(MatchingService.NO_DELAY) == null)
+            System.setProperty(MatchingService.NO_DELAY, "true");
+
+        Random random = new Random(1);
+        TransplantGraph base = new TransplantGraph();
+        List<Patient> donors = new ArrayList<>();
+        List<Patient> recipients = new ArrayList<>();
+        for (int k = 0; k < patients; k++) {
+            donors.add(randomPatient(random, "Donor " + k, true));
+            recipients.add(randomPatient(random, "Recipient " + k, false));
+        }
+        base.addAll(donors, recipients);
+        IncrementalMatcher matcher = IncrementalMatcher.attach(base);
+        MatchingService service = new MatchingService(new ConcurrentTransplantGraph(base), matcher);
+        service.start(0);
+        String root = "http://localhost:" + service.getPort();
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+
+        System.out.println("Warming up...");
+        run(client, root, clients, 2, patients);
+        System.out.println("Running " + clients + " clients for " + seconds + " s over " + patients
+                + " donors and recipients...");
+        long start = System.nanoTime();
+        long[] latencies = run(client, root, clients, seconds, patients);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        service.stop();
+
+        Arrays.sort(latencies);
+        System.out.printf("%d requests, %.0f requests/s%n", latencies.length, latencies.length / elapsed);
+        System.out.printf("latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.90),
+                percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+    }
+
+    /**
+     * It runs the clients for a number of seconds.
+     *
+     * @param client the HTTP client
+     * @param root the service's base URL
+     * @param clients the number of concurrent clients
+     * @param seconds the time to run for
+     * @param patients the number of patients per side, bounding the IDs queried
+     * @return the latency of every request in nanoseconds
+     * @throws Exception if a client fails
+     */
+    private static long[] run(HttpClient client, String root, int clients, int seconds, int patients)
+            throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Future<long[]>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                long seed = c;
+                results.add(executor.submit(() -> client(client, root, deadline, patients, new Random(seed))));
+            }
+        }
+        int total = 0;
+        for (Future<long[]> result : results)
+            total += result.get().length;
+        long[] latencies = new long[total];
+        int at = 0;
+        for (Future<long[]> result : results) {
+            long[] part = result.get();
+            System.arraycopy(part, 0, latencies, at, part.length);
+            at += part.length;
+        }
+        return latencies;
+    }
+
+    /**
+     * It sends requests from one client until the deadline. Of every twenty
+     * requests, fourteen are compatibility queries, three add a patient, two remove
+     * one, and one fetches the matching.
+     *
+     * @param client the HTTP client
+     * @param root the service's base URL
+     * @param deadline the System.nanoTime at which to stop
+     * @param patients the number of patients per side, bounding the IDs queried
+     * @param random the source of request choices
+     * @return the latency of every request in nanoseconds
+     * @throws IOException if a request fails
+     * @throws InterruptedException if interrupted while waiting for a response
+     */
+    private static long[] client(HttpClient client, String root, long deadline, int patients, Random random)
+            throws IOException, InterruptedException {
+        long[] latencies = new long[1024];
+        int count = 0;
+        while (System.nanoTime() < deadline) {
+            String side = random.nextBoolean() ? "/donors" : "/recipients";
+            int choice = random.nextInt(20);
+            HttpRequest.Builder request;
+            if (choice < 14) {
+                request = HttpRequest.newBuilder(URI.create(root + side + "/" + random.nextInt(patients) + "/compatible"));
+            } else if (choice < 17) {
+                Patient p = randomPatient(random, "Walk-in", side.equals("/donors"));
+                String body = "{\"name\":\"" + p.getName() + "\",\"age\":" + p.getAge() + ",\"organ\":\""
+                        + p.getOrgan() + "\",\"bloodType\":\"" + p.getBloodType().getType() + "\"}";
+                request = HttpRequest.newBuilder(URI.create(root + side)).POST(HttpRequest.BodyPublishers.ofString(body));
+            } else if (choice < 19) {
+                request = HttpRequest.newBuilder(URI.create(root + side + "/" + random.nextInt(patients))).DELETE();
+            } else {
+                request = HttpRequest.newBuilder(URI.create(root + "/match"));
+            }
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            long latency = System.nanoTime() - start;
+            if (response.statusCode() >= 500)
+                throw new IOException("Request failed with status " + response.statusCode());
+            if (count == latencies.length)
+                latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = latency;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    /**
+     * It creates a patient with a random age, organ and blood type.
+     *
+     * @param random the source of values
+     * @param name the patient's name
+     * @param isDonor true for a donor, false for a recipient
+     * @return the Patient
+     */
+    private static Patient randomPatient(Random random, String name, boolean isDonor) {
+        return new Patient(0, name, 18 + random.nextInt(60), ORGANS[random.nextInt(ORGANS.length)],
+                BloodType.values()[random.nextInt(BloodType.values().length)], isDonor);
+    }
+
+    /**
+     * It reads a percentile from sorted latencies.
+     *
+     * @param sorted the latencies in nanoseconds, in ascending order
+     * @param fraction the percentile as a fraction
+     * @return the latency in milliseconds
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,121 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class checks that a MatchingService serves only the routes it documents,
+ * answers 500 when the graph fails, and leaves the JVM's socket settings alone.
+ */
+class MatchingServiceTest {
+    private TransplantGraph base;
+    private MatchingService service;
+    private HttpClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        base = new TransplantGraph();
+        base.addAll(TransplantGraphTest.patients(20, true, 1), TransplantGraphTest.patients(20, false, 2));
+        service = new MatchingService(new ConcurrentTransplantGraph(base), IncrementalMatcher.attach(base));
+        service.start(0);
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stop() {
+        service.stop();
+    }
+
+    @Test
+    void servesDocumentedRoutes() throws Exception {
+        assertEquals(200, get("/donors"));
+        assertEquals(200, get("/recipients"));
+        assertEquals(200, get("/donors/3/compatible"));
+        assertEquals(200, get("/recipients/3/compatible"));
+        assertEquals(200, get("/match"));
+    }
+
+    @Test
+    void rejectsPathsThatOnlyStartWithARoute() throws Exception {
+        assertEquals(404, get("/donorsX"));
+        assertEquals(404, get("/recipientsX/3/compatible"));
+        assertEquals(404, get("/donors/"));
+        assertEquals(404, get("/donors/3/compatible/"));
+        assertEquals(404, get("/donors/3/compatibleX"));
+        assertEquals(404, get("/matchX"));
+        assertEquals(404, get("/match/"));
+    }
+
+    @Test
+    void answersServerErrorWhenTheGraphFails() throws Exception {
+        base.addListener(new GraphListener() {
+            @Override
+            public void changing() {
+            }
+
+            @Override
+            public void donorAdded(int donorID) {
+                throw new IllegalStateException("listener failed");
+            }
+
+            @Override
+            public void recipientAdded(int recipientID) {
+            }
+
+            @Override
+            public void donorRemoved(int donorID, Patient donor) {
+            }
+
+            @Override
+            public void recipientRemoved(int recipientID, Patient recipient) {
+            }
+
+            @Override
+            public void pairLinked(int recipientID, int donorID) {
+            }
+
+            @Override
+            public void graphRebuilt() {
+            }
+        });
+        String body = "{\"name\":\"Walk-in\",\"age\":40,\"organ\":\"Kidney\",\"bloodType\":\"O+\"}";
+        HttpRequest request = HttpRequest.newBuilder(uri("/donors"))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        assertEquals(500, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        assertEquals(200, get("/donors"));
+    }
+
+    @Test
+    void leavesNoDelayToTheLauncher() {
+        assertNull(System.getProperty(MatchingService.NO_DELAY));
+    }
+
+    /**
+     * It sends a GET request.
+     *
+     * @param path the path
+     * @return the response status
+     * @throws Exception if the request fails
+     */
+    private int get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(path)).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * It resolves a path against the service.
+     *
+     * @param path the path
+     * @return the URI
+     */
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + service.getPort() + path);
+    }
+}
@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * This class checks that a directory kept by OffHeapStorage is open for writing
+ * by one graph or read-only by any number, never both, whether the other graph
+ * is in this process or in another one.
+ */
+class OffHeapStorageTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void refusesReadersWhileThisProcessWrites() throws IOException {
+        TransplantGraph writer = OffHeapStorage.open(dir);
+        writer.addAll(TransplantGraphTest.patients(50, true, 1), TransplantGraphTest.patients(50, false, 2));
+        writer.force();
+        assertThrows(IOException.class, () -> OffHeapStorage.openReadOnly(dir));
+        assertThrows(IOException.class, () -> OffHeapStorage.open(dir));
+    }
+
+    @Test
+    @Timeout(60)
+    void releasesTheDirectoryWhenACopyIsRefused() throws Exception {
+        Process child = holdForWriting(dir, 10);
+        child.getOutputStream().close();
+        assertEquals(0, child.waitFor());
+        TransplantGraph source = new TransplantGraph();
+        source.addAll(TransplantGraphTest.patients(20, true, 5), TransplantGraphTest.patients(20, false, 6));
+        assertThrows(IllegalArgumentException.class, () -> OffHeapStorage.copy(source, dir));
+        assertEquals(10, OffHeapStorage.openReadOnly(dir).getNumDonors());
+    }
+
+    @Test
+    @Timeout(60)
+    void sharesTheDirectoryBetweenReaders() throws Exception {
+        Process child = holdForWriting(dir, 80);
+        try {
+            assertThrows(IOException.class, () -> OffHeapStorage.openReadOnly(dir));
+        } finally {
+            child.getOutputStream().close();
+            assertEquals(0, child.waitFor());
+        }
+        TransplantGraph first = OffHeapStorage.openReadOnly(dir);
+        TransplantGraph second = OffHeapStorage.openReadOnly(dir);
+        assertEquals(80, first.getNumDonors());
+        TransplantGraphTest.assertSameMatrix(first, second);
+        assertThrows(IOException.class, () -> OffHeapStorage.open(dir));
+    }
+
+    /**
+     * It starts another JVM that fills a directory and keeps it open for writing
+     * until its standard input is closed.
+     *
+     * @param directory the directory
+     * @param n the number of donors and of recipients to add
+     * @return the process, once it holds the directory
+     * @throws IOException if the process cannot be started or fails to open it
+     */
+    private static Process holdForWriting(Path directory, int n) throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                OffHeapStorageTest.class.getName(), directory.toString(), Integer.toString(n))
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        BufferedReader out = new BufferedReader(new InputStreamReader(child.getInputStream()));
+        String line = out.readLine();
+        if (!"open".equals(line)) {
+            child.destroyForcibly();
+            throw new IOException("writer process failed: " + line);
+        }
+        return child;
+    }
+
+    /**
+     * It opens a directory for writing, adds patients, reports "open" and holds
+     * the directory until its standard input is closed.
+     *
+     * @param args the directory and the number of donors and of recipients
+     * @throws Exception if the graph cannot be opened
+     */
+    public static void main(String[] args) throws Exception {
+        int n = Integer.parseInt(args[1]);
+        TransplantGraph graph = OffHeapStorage.open(Path.of(args[0]));
+        graph.addAll(TransplantGraphTest.patients(n, true, 3), TransplantGraphTest.patients(n, false, 4));
+        graph.force();
+        System.out.println("open");
+        System.out.flush();
+        while (System.in.read() >= 0) {
+            // hold the lock until the parent closes the pipe
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * This class checks that PatientFileReader parses lines as String.trim and
+ * String.split would, including non-ASCII text and lines split across its read
+ * buffer, and that it records malformed lines instead of loading them.
+ */
+class PatientFileReaderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void keepsNonAsciiNames() throws IOException {
+        List<Patient> patients = read(true,
+                "1,José,40,Kidney,O+",
+                "2,李,35,Liver,A-",
+                "3, Ñandú Pérez ,50,Heart,AB+",
+                "4,Zoë Ågren,28,Lung,B-");
+        assertEquals(List.of("José", "李", "Ñandú Pérez", "Zoë Ågren"),
+                patients.stream().map(Patient::getName).toList());
+    }
+
+    @Test
+    void parsesFieldsAsTrimAndSplitWould() throws IOException {
+        List<Patient> patients = read(false,
+                "7 , Ada Byron , 36 , Kidney , ab+ , 2 , 140\r",
+                "",
+                "8,Alan,41,Liver, o- ",
+                "  ",
+                "9,Grace,85,Heart,A,-1,+12");
+        assertEquals(3, patients.size());
+        Patient ada = patients.get(0);
+        assertEquals(7, ada.getID());
+        assertEquals("Ada Byron", ada.getName());
+        assertEquals(36, ada.getAge());
+        assertEquals("Kidney", ada.getOrgan());
+        assertEquals(BloodType.AB_POS, ada.getBloodType());
+        assertEquals(2, ada.getUrgency());
+        assertEquals(140, ada.getWaitingDays());
+        assertEquals(BloodType.O_NEG, patients.get(1).getBloodType());
+        assertEquals(0, patients.get(1).getUrgency());
+        assertEquals(BloodType.A_POS, patients.get(2).getBloodType());
+        assertEquals(-1, patients.get(2).getUrgency());
+        assertEquals(12, patients.get(2).getWaitingDays());
+    }
+
+    @Test
+    void recordsMalformedLinesWithTheirNumbers() throws IOException {
+        Path file = dir.resolve("recipients.txt");
+        Files.writeString(file, String.join("\n",
+                "1,Ok,30,Kidney,O+",
+                "2,Short,30,Kidney",
+                "x,BadID,30,Kidney,O+",
+                "3, ,30,Kidney,O+",
+                "4,Old,-2,Kidney,O+",
+                "5,NoOrgan,30, ,O+",
+                "6,Blood,30,Kidney,C+",
+                "7,Urgent,30,Kidney,O+,high",
+                "8,Waiting,30,Kidney,O+,1,99999999999",
+                "9,Ok,30,Liver,B-,3,10"), StandardCharsets.UTF_8);
+        PatientFileReader reader = new PatientFileReader();
+        List<Patient> patients = reader.read(file.toString(), false);
+        assertEquals(List.of(1, 9), patients.stream().map(Patient::getID).toList());
+        assertEquals(List.of(
+                file + ":2: expected at least 5 comma-separated fields",
+                file + ":3: invalid ID",
+                file + ":4: missing name",
+                file + ":5: invalid age",
+                file + ":6: missing organ",
+                file + ":7: invalid blood type",
+                file + ":8: invalid urgency",
+                file + ":9: invalid waiting days"), reader.getErrors());
+    }
+
+    @Test
+    void readsLinesAcrossBufferBoundaries() throws IOException {
+        StringBuilder text = new StringBuilder();
+        int n = 60_000;
+        for (int k = 0; k < n; k++)
+            text.append(k).append(",Zoë ").append(k).append(',').append(20 + k % 50).append(",Kidney,A-\n");
+        text.append("x".repeat(1_100_000)).append('\n');
+        text.append(n).append(",Last,33,Lung,B+");
+        Path file = dir.resolve("donors.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        PatientFileReader reader = new PatientFileReader();
+        List<Patient> patients = reader.read(file.toString(), true);
+        assertEquals(n + 1, patients.size());
+        for (int k = 0; k < n; k++)
+            assertEquals("Zoë " + k, patients.get(k).getName());
+        assertEquals("Last", patients.get(n).getName());
+        assertEquals(List.of(file + ":" + (n + 1) + ": line is longer than " + (1 << 20) + " bytes"),
+                reader.getErrors());
+    }
+
+    /**
+     * It writes lines to a file and reads them back, asserting that none was
+     * rejected.
+     *
+     * @param isDonor true if the lines are donors, false for recipients
+     * @param lines the lines of the file
+     * @return the patients read
+     * @throws IOException if the file cannot be written or read
+     */
+    private List<Patient> read(boolean isDonor, String... lines) throws IOException {
+        Path file = dir.resolve(isDonor ? "donors.txt" : "recipients.txt");
+        Files.writeString(file, String.join("\n", lines), StandardCharsets.UTF_8);
+        PatientFileReader reader = new PatientFileReader();
+        List<Patient> patients = reader.read(file.toString(), isDonor);
+        assertTrue(reader.getErrors().isEmpty(), () -> "errors: " + reader.getErrors());
+        return patients;
+    }
+}
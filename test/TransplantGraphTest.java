@@ -0,0 +1,133 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class checks that every way of building a TransplantGraph's compatibility
+ * matrix agrees: adding patients one at a time, a bulk add rebuilt on one thread
+ * or across a pool, and a direct check of organ and blood type for each pair.
+ */
+class TransplantGraphTest {
+    private static final String[] ORGANS = {"Kidney", "Liver", "Heart", "Lung"};
+    private static final BloodType[] BLOOD_TYPES = BloodType.values();
+
+    @Test
+    void repeatedAddsMatchBulkRebuild() {
+        List<Patient> donors = patients(700, true, 1);
+        List<Patient> recipients = patients(900, false, 2);
+        TransplantGraph incremental = new TransplantGraph();
+        for (Patient p : donors)
+            incremental.addDonor(p.copy());
+        for (Patient p : recipients)
+            incremental.addRecipient(p.copy());
+        TransplantGraph sequential = new TransplantGraph();
+        sequential.addAll(copies(donors), copies(recipients), 1);
+        TransplantGraph parallel = new TransplantGraph();
+        parallel.addAll(copies(donors), copies(recipients), 4);
+        assertSameMatrix(sequential, incremental);
+        assertSameMatrix(sequential, parallel);
+    }
+
+    @Test
+    void matrixFollowsOrganAndBloodType() {
+        List<Patient> donors = patients(300, true, 3);
+        List<Patient> recipients = patients(400, false, 4);
+        TransplantGraph graph = new TransplantGraph();
+        graph.addAll(copies(donors), copies(recipients));
+        for (Patient d : donors) {
+            for (Patient r : recipients) {
+                boolean expected = d.getOrgan().equals(r.getOrgan())
+                        && BloodType.isCompatible(r.getBloodType(), d.getBloodType());
+                assertEquals(expected, graph.isConnected(d.getID(), r.getID()),
+                        "donor " + d.getID() + ", recipient " + r.getID());
+            }
+        }
+    }
+
+    @Test
+    void removalsLeaveTheSameMatrixAsARebuild() {
+        TransplantGraph graph = new TransplantGraph();
+        graph.addAll(patients(200, true, 5), patients(250, false, 6));
+        Random random = new Random(7);
+        for (int k = 0; k < 100; k++) {
+            graph.removeDonorByID(random.nextInt(200));
+            graph.removeRecipientByID(random.nextInt(250));
+        }
+        for (Patient p : patients(60, true, 8))
+            graph.addDonor(p);
+        assertSameMatrix(rebuilt(graph), graph);
+    }
+
+    /**
+     * It restores a copy of a graph's patients with the matrix rebuilt from
+     * scratch, as a reference for the matrix the graph maintained itself.
+     *
+     * @param graph the graph to copy
+     * @return the rebuilt copy
+     */
+    static TransplantGraph rebuilt(TransplantGraph graph) {
+        List<Patient> donorSlots = new ArrayList<>();
+        for (int i = 0; i < graph.getDonorSlots(); i++)
+            donorSlots.add(graph.hasDonor(i) ? graph.getDonor(i).copy() : null);
+        List<Patient> recipientSlots = new ArrayList<>();
+        for (int j = 0; j < graph.getRecipientSlots(); j++)
+            recipientSlots.add(graph.hasRecipient(j) ? graph.getRecipient(j).copy() : null);
+        return TransplantGraph.restore(donorSlots, recipientSlots,
+                graph.getFreeDonorIDs(), graph.getFreeRecipientIDs(), null);
+    }
+
+    /**
+     * It asserts that two graphs have the same rows and degrees. Rows are compared
+     * word by word up to the number of recipient slots, since the arrays holding
+     * them may have different spare capacity.
+     *
+     * @param expected the reference graph
+     * @param actual the graph under test
+     */
+    static void assertSameMatrix(TransplantGraph expected, TransplantGraph actual) {
+        assertEquals(expected.getDonorSlots(), actual.getDonorSlots(), "donor slots");
+        assertEquals(expected.getRecipientSlots(), actual.getRecipientSlots(), "recipient slots");
+        int words = (expected.getRecipientSlots() + 63) >>> 6;
+        for (int i = 0; i < expected.getDonorSlots(); i++)
+            assertArrayEquals(Arrays.copyOf(expected.getConnectionRow(i), words),
+                    Arrays.copyOf(actual.getConnectionRow(i), words), "row of donor " + i);
+        assertArrayEquals(expected.getDonorDegrees(), actual.getDonorDegrees(), "donor degrees");
+        assertArrayEquals(expected.getRecipientDegrees(), actual.getRecipientDegrees(), "recipient degrees");
+    }
+
+    /**
+     * It generates patients with random organs, blood types and ages.
+     *
+     * @param n the number of patients
+     * @param isDonor true for donors, false for recipients
+     * @param seed the random seed
+     * @return the patients, with IDs 0 to n - 1
+     */
+    static List<Patient> patients(int n, boolean isDonor, long seed) {
+        Random random = new Random(seed);
+        List<Patient> patients = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            patients.add(new Patient(k, (isDonor ? "Donor " : "Recipient ") + k, 1 + random.nextInt(80),
+                    ORGANS[random.nextInt(ORGANS.length)], BLOOD_TYPES[random.nextInt(BLOOD_TYPES.length)], isDonor));
+        }
+        return patients;
+    }
+
+    /**
+     * It copies patients, so that one generated list can seed several graphs.
+     *
+     * @param patients the patients
+     * @return a new list of standalone copies
+     */
+    static List<Patient> copies(List<Patient> patients) {
+        List<Patient> copies = new ArrayList<>(patients.size());
+        for (Patient p : patients)
+            copies.add(p.copy());
+        return copies;
+    }
+}
@@ -0,0 +1,28 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class checks that the auction, which allocate now uses for all but tiny
+ * graphs, reaches the same total score as the Hungarian algorithm.
+ */
+class WeightedMatcherTest {
+    @Test
+    void auctionScoresAsWellAsHungarian() {
+        AllocationScorer scorer = new PriorityScorer();
+        for (long seed = 1; seed <= 3; seed++) {
+            List<Patient> recipients = TransplantGraphTest.patients(150, false, -seed);
+            for (Patient p : recipients) {
+                p.setUrgency((int) (p.getID() * seed % 4));
+                p.setWaitingDays((int) (p.getID() * 37 * seed % 2000));
+            }
+            TransplantGraph graph = new TransplantGraph();
+            graph.addAll(TransplantGraphTest.patients(120, true, seed), recipients);
+            WeightedMatcher matcher = new WeightedMatcher(graph, scorer);
+            long expected = WeightedMatcher.totalScore(graph, matcher.hungarian(), scorer);
+            assertEquals(expected, WeightedMatcher.totalScore(graph, matcher.auction(1), scorer), "sequential auction");
+            assertEquals(expected, WeightedMatcher.totalScore(graph, matcher.auction(4), scorer), "parallel auction");
+        }
+    }
+}
@@ -0,0 +1,201 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * This class checks that a WriteAheadLog recovers the graph it logged, that a torn
+ * or corrupt record ends replay at the last intact one, and that it neither loses
+ * nor replays a change when the disk or the log file fails.
+ */
+class WriteAheadLogTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysEveryChangeSinceTheSnapshot() throws IOException {
+        String logFile = dir.resolve("graph.wal").toString();
+        String snapshotFile = dir.resolve("graph.snap").toString();
+        TransplantGraph graph = new TransplantGraph();
+        WriteAheadLog log = WriteAheadLog.open(logFile, snapshotFile, graph, 1000);
+        int changes = changeAtRandom(graph, 300, 1);
+        log.close();
+
+        TransplantGraph recovered = GraphSnapshot.load(snapshotFile);
+        WriteAheadLog reopened = WriteAheadLog.open(logFile, snapshotFile, recovered);
+        assertEquals(changes, reopened.getReplayed());
+        reopened.close();
+        ConcurrentTransplantGraphStressTest.assertSameGraph(graph, recovered);
+        assertRecovers(graph, logFile, snapshotFile);
+    }
+
+    @Test
+    void discardsATornRecordAtTheTail() throws IOException {
+        Path logFile = dir.resolve("graph.wal");
+        String snapshotFile = dir.resolve("graph.snap").toString();
+        TransplantGraph graph = new TransplantGraph();
+        WriteAheadLog log = WriteAheadLog.open(logFile.toString(), snapshotFile, graph, 1000);
+        changeAtRandom(graph, 100, 2);
+        TransplantGraph expected = copy(graph);
+        long intact = Files.size(logFile);
+        graph.addDonor(TransplantGraphTest.patients(1, true, 3).get(0));
+        log.close();
+        truncate(logFile, intact + (Files.size(logFile) - intact) / 2);
+
+        TransplantGraph recovered = GraphSnapshot.load(snapshotFile);
+        WriteAheadLog.open(logFile.toString(), snapshotFile, recovered).close();
+        ConcurrentTransplantGraphStressTest.assertSameGraph(expected, recovered);
+        assertEquals(0, Files.size(logFile), "log after the checkpoint that follows replay");
+    }
+
+    @Test
+    void stopsReplayAtACorruptRecord() throws IOException {
+        Path logFile = dir.resolve("graph.wal");
+        String snapshotFile = dir.resolve("graph.snap").toString();
+        TransplantGraph graph = new TransplantGraph();
+        WriteAheadLog log = WriteAheadLog.open(logFile.toString(), snapshotFile, graph, 1000);
+        changeAtRandom(graph, 80, 4);
+        TransplantGraph expected = copy(graph);
+        long corrupt = Files.size(logFile) + 20;
+        changeAtRandom(graph, 120, 5);
+        log.close();
+        byte[] bytes = Files.readAllBytes(logFile);
+        bytes[(int) corrupt] ^= 0x01;
+        Files.write(logFile, bytes);
+
+        TransplantGraph recovered = GraphSnapshot.load(snapshotFile);
+        WriteAheadLog reopened = WriteAheadLog.open(logFile.toString(), snapshotFile, recovered);
+        assertEquals(80, reopened.getReplayed());
+        reopened.close();
+        ConcurrentTransplantGraphStressTest.assertSameGraph(expected, recovered);
+    }
+
+    @Test
+    void refusesChangesAfterAFailureUntilACheckpoint() throws IOException {
+        String logFile = dir.resolve("graph.wal").toString();
+        String snapshotFile = dir.resolve("graph.snap").toString();
+        TransplantGraph graph = new TransplantGraph();
+        WriteAheadLog log = WriteAheadLog.open(logFile, snapshotFile, graph);
+        IncrementalMatcher matcher = IncrementalMatcher.attach(graph);
+        Path blocker = Files.createDirectories(dir.resolve("graph.snap.tmp")).resolve("keep");
+        Files.createFile(blocker);
+
+        assertThrows(UncheckedIOException.class, () -> graph.addAll(TransplantGraphTest.patients(30, true, 1),
+                TransplantGraphTest.patients(30, false, 2)));
+        assertEquals(HopcroftKarp.match(graph).size(), matcher.size(), "matcher after the failed checkpoint");
+        assertThrows(UncheckedIOException.class, () -> graph.removeDonorByID(0));
+        assertEquals(30, graph.getNumDonors());
+
+        Files.delete(blocker);
+        Files.delete(blocker.getParent());
+        assertTrue(graph.removeDonorByID(0));
+        log.close();
+        assertRecovers(graph, logFile, snapshotFile);
+    }
+
+    @Test
+    void rejectsARemovalReplayedOntoAnotherPatient() throws IOException {
+        String logFile = dir.resolve("graph.wal").toString();
+        TransplantGraph graph = new TransplantGraph();
+        graph.addAll(TransplantGraphTest.patients(5, true, 1), TransplantGraphTest.patients(5, false, 2));
+        WriteAheadLog log = WriteAheadLog.open(logFile, dir.resolve("graph.snap").toString(), graph);
+        graph.removeDonorByID(0);
+        log.close();
+
+        String otherSnapshot = dir.resolve("other.snap").toString();
+        TransplantGraph other = new TransplantGraph();
+        other.addAll(TransplantGraphTest.patients(5, true, 3), TransplantGraphTest.patients(5, false, 4));
+        GraphSnapshot.save(other, otherSnapshot);
+        byte[] logged = Files.readAllBytes(Path.of(logFile));
+        TransplantGraph base = GraphSnapshot.load(otherSnapshot);
+        IOException e = assertThrows(IOException.class, () -> WriteAheadLog.open(logFile, otherSnapshot, base));
+        assertTrue(e.getMessage().contains("does not match"), e.getMessage());
+        assertTrue(base.hasDonor(0), "donor 0 of the other graph");
+        assertArrayEquals(logged, Files.readAllBytes(Path.of(logFile)), "log after the failed replay");
+    }
+
+    /**
+     * It makes random adds, removals and pair links that each change the graph.
+     *
+     * @param graph the graph
+     * @param count the number of changes
+     * @param seed the random seed
+     * @return the number of changes made
+     */
+    private static int changeAtRandom(TransplantGraph graph, int count, long seed) {
+        Random random = new Random(seed);
+        List<Patient> donors = TransplantGraphTest.patients(count, true, seed);
+        List<Patient> recipients = TransplantGraphTest.patients(count, false, seed + 1);
+        int made = 0;
+        for (int k = 0; made < count; k++) {
+            boolean changed = switch (random.nextInt(5)) {
+                case 0 -> graph.addDonor(donors.get(k % count).copy()) >= 0;
+                case 1 -> graph.addRecipient(recipients.get(k % count).copy()) >= 0;
+                case 2 -> graph.getDonorSlots() > 0 && graph.removeDonorByID(random.nextInt(graph.getDonorSlots()));
+                case 3 -> graph.getRecipientSlots() > 0
+                        && graph.removeRecipientByID(random.nextInt(graph.getRecipientSlots()));
+                default -> graph.getDonorSlots() > 0 && graph.getRecipientSlots() > 0
+                        && graph.linkPair(random.nextInt(graph.getRecipientSlots()),
+                                random.nextInt(graph.getDonorSlots()));
+            };
+            if (changed)
+                made++;
+        }
+        return made;
+    }
+
+    /**
+     * It copies a graph, with its pair links, through a snapshot outside the log.
+     *
+     * @param graph the graph
+     * @return the copy
+     * @throws IOException if the snapshot cannot be written or read
+     */
+    private TransplantGraph copy(TransplantGraph graph) throws IOException {
+        String file = Files.createTempFile(dir, "copy", ".snap").toString();
+        GraphSnapshot.save(graph, file);
+        return GraphSnapshot.load(file);
+    }
+
+    /**
+     * It cuts a file short.
+     *
+     * @param file the file
+     * @param size the new size
+     * @throws IOException if the file cannot be truncated
+     */
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    /**
+     * It reopens a logged graph from its snapshot and log and asserts that it
+     * matches the graph that was logged.
+     *
+     * @param expected the graph that was logged
+     * @param logFile the path of the log file
+     * @param snapshotFile the path of the snapshot file
+     * @return the recovered graph
+     * @throws IOException if the graph cannot be recovered
+     */
+    static TransplantGraph assertRecovers(TransplantGraph expected, String logFile, String snapshotFile)
+            throws IOException {
+        TransplantGraph recovered = GraphSnapshot.load(snapshotFile);
+        WriteAheadLog.open(logFile, snapshotFile, recovered).close();
+        ConcurrentTransplantGraphStressTest.assertSameGraph(expected, recovered);
+        return recovered;
+    }
+}